@@ -2,6 +2,7 @@ import components.DatabaseEngine;
 import components.StorageManager;
 import parsers.DDL;
 import parsers.DML;
+import tableData.StringPool;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -46,8 +47,11 @@ public class Main {
             System.out.println("Opening database at " + databaseDir.getAbsolutePath());
         }
 
+        // Store every table in a single tablespace file. Only has an effect when the database is created
+        boolean tablespace = Arrays.asList(args).contains("--tablespace");
+
         // Init storage components
-        storageManager = new StorageManager(databaseDir, pageSize, bufferSize, indexing);
+        storageManager = new StorageManager(databaseDir, pageSize, bufferSize, indexing, tablespace);
         DatabaseEngine databaseEngine = new DatabaseEngine(storageManager);
         System.out.println("Indexing is "+((storageManager.isIndexingEnabled()) ? "" : "not ") + "enabled");
         // Init parsers
@@ -66,6 +70,33 @@ public class Main {
         if (devArgs.contains("--nuke")) {
             storageManager.toggleNUKE_MODE();
         }
+        // String pool size, with 0 turning off interning of decoded Strings
+        int internIndex = devArgs.indexOf("--intern");
+        if (internIndex != -1) {
+            if (internIndex == devArgs.size() - 1) {
+                System.err.println("`--intern` arg missing pool size");
+                return;
+            }
+            StringPool.capacity = Integer.parseInt(devArgs.get(internIndex + 1));
+        }
+        // Vacuum tables automatically once this fraction of their file is free space
+        int autovacuumIndex = devArgs.indexOf("--autovacuum");
+        if (autovacuumIndex != -1) {
+            if (autovacuumIndex == devArgs.size() - 1) {
+                System.err.println("`--autovacuum` arg missing threshold");
+                return;
+            }
+            databaseEngine.setAutovacuum(Double.parseDouble(devArgs.get(autovacuumIndex + 1)));
+        }
+        // Number of pages table and index files grow by at once
+        int extentIndex = devArgs.indexOf("--extent");
+        if (extentIndex != -1) {
+            if (extentIndex == devArgs.size() - 1) {
+                System.err.println("`--extent` arg missing page count");
+                return;
+            }
+            storageManager.setExtentPages(Integer.parseInt(devArgs.get(extentIndex + 1)));
+        }
         // Custom n force
         int customNIndex = devArgs.indexOf("-n");
         if(customNIndex != -1){
@@ -171,6 +202,8 @@ public class Main {
             case "alter" -> ddl.alter(cmd);
             case "create" -> ddl.create(cmd);
             case "drop" -> ddl.drop(cmd);
+            case "vacuum" -> ddl.vacuum(cmd);
+            case "reindex" -> ddl.reindex(cmd);
             // DML commands
             case "display" -> dml.display(cmd);
             case "insert" -> dml.insert(cmd);
@@ -1,17 +1,24 @@
 package bplus;
 
 import exceptions.CustomExceptions;
-import tableData.Attribute;
 import tableData.Bufferable;
+import tableData.IndexSchema;
 import tableData.TableSchema;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class BPlusNode<T extends Comparable<T>> extends Bufferable {
 
     private final TableSchema schema;
-    private final ArrayList<BPlusPointer<T>> pointers;
+    private final Class<?> keyClass;  // The class of the values of this node's pointers
+    // Each pointer is spread across the same index of these arrays, so a node holds no object per pointer
+    private final NodeKeys keys;   // The value of every pointer but the null pointer
+    private int[] pageIndices;     // The page (or child node) each pointer points to
+    private int[] recordIndices;   // The record each pointer points to; -1 in internal nodes and null pointers
+    private int size;              // The number of pointers, including the null pointer
+    private boolean terminated;    // Whether the last pointer is the null pointer
     public int parent;
     public final int n;
 
@@ -25,12 +32,16 @@ public class BPlusNode<T extends Comparable<T>> extends Bufferable {
     public BPlusNode(TableSchema schema, int nodeIndex, ArrayList<BPlusPointer<T>> pointers, int parentIndex) {
         this.schema = schema;
         this.index = nodeIndex;
-        this.pointers = pointers;
         this.parent = parentIndex;
-        Attribute pk = schema.getPrimaryKey();
-        int availablePageSpace = (schema.pageSize - Integer.BYTES); // Parent pointer takes up 4 bytes
-        int bppSize = (pk.byteLength() + Integer.BYTES + Integer.BYTES);  // value + page pointer + record pointer
-        n = (availablePageSpace / bppSize);
+        this.keyClass = keyClass(schema);
+        n = maxPointers(schema);
+        int capacity = Math.max(n, pointers.size()) + 1;  // A node holds one pointer too many until it is split
+        keys = NodeKeys.of(schema, capacity);
+        pageIndices = new int[capacity];
+        recordIndices = new int[capacity];
+        for (BPlusPointer<T> pointer : pointers) {
+            add(size, pointer.getValue(), pointer.getPageIndex(), pointer.getRecordIndex());
+        }
     }
 
     /**
@@ -46,28 +57,49 @@ public class BPlusNode<T extends Comparable<T>> extends Bufferable {
     public BPlusNode(TableSchema schema, int nodeIndex, ArrayList<BPlusPointer<?>> pointers, int parentIndex, boolean isThisDumb){
         this.schema = schema;
         this.index = nodeIndex;
-        this.pointers = new ArrayList<>();
+        this.parent = parentIndex;
+        this.keyClass = keyClass(schema);
+        n = maxPointers(schema);
+        int capacity = Math.max(n, pointers.size()) + 1;  // A node holds one pointer too many until it is split
+        keys = NodeKeys.of(schema, capacity);
+        pageIndices = new int[capacity];
+        recordIndices = new int[capacity];
         for (BPlusPointer<?> pointer : pointers) {
-            this.pointers.add(castPointer(pointer));
+            add(size, cast(pointer.getValue()), pointer.getPageIndex(), pointer.getRecordIndex());
         }
-        this.parent = parentIndex;
-
-        Attribute pk = schema.getPrimaryKey();
-        int availablePageSpace = (schema.pageSize - Integer.BYTES); // Parent pointer takes up 4 bytes
-        int bppSize = (pk.length + Integer.BYTES + Integer.BYTES);  // value + page pointer + record pointer
-        n = (availablePageSpace / bppSize);
 
         if (!isThisDumb) {
             System.err.println("Yes it is");
         }
     }
 
+    /**
+     * Calculates the number of pointers that fit in a node of a table's B+ tree
+     * @param schema The TableSchema of the table being indexed
+     * @return The maximum number of pointers in a node
+     */
+    public static int maxPointers(TableSchema schema) {
+        int keySize = (schema instanceof IndexSchema index) ? index.keyLength() : schema.getPrimaryKey().byteLength();
+        int availablePageSpace = (schema.pageSize - Integer.BYTES); // Parent pointer takes up 4 bytes
+        int bppSize = (keySize + Integer.BYTES + Integer.BYTES);  // value + page pointer + record pointer
+        return (availablePageSpace / bppSize);
+    }
+
+    /**
+     * Gets the class of the values in a B+ tree's pointers
+     * @param schema The TableSchema of the table being indexed, or the IndexSchema of a secondary index
+     * @return The class of the table's primary key, or IndexKey for a secondary index
+     */
+    private static Class<?> keyClass(TableSchema schema) {
+        return (schema instanceof IndexSchema) ? IndexKey.class : schema.getPrimaryKey().type.javaClass();
+    }
+
     /**
      * Returns the number of pointers in the node
      * @return the number of pointers in the node
      */
     public int size() {
-        return pointers.size();
+        return size;
     }
 
     /**
@@ -83,7 +115,7 @@ public class BPlusNode<T extends Comparable<T>> extends Bufferable {
      * @return `true` if this object is a leaf node; `false` if this object is an internal node
      */
     public boolean isLeafNode() {
-        return pointers.isEmpty() || pointers.getFirst().isRecordPointer();
+        return size == 0 || recordIndices[0] >= 0;
     }
 
     /**
@@ -102,26 +134,138 @@ public class BPlusNode<T extends Comparable<T>> extends Bufferable {
      * no pointer matches the given value
      */
     public BPlusPointer<T> get(Object obj) {
-        T value = cast(obj);
-        if (pointers.isEmpty()) {
+        cast(obj);
+        if (size == 0) {
             return null;
         }
-        // Searches through all pointers until it finds the value. If it finds
-        // a larger value or the loop exists, a matching record does not exist
-        for (BPlusPointer<T> bpp : pointers) {
-            // Last pointer of internal nodes has a null value, meaning you did not find a match
-            // Leaf nodes return `null` since there was no match
-            // Internal nodes return the pointer to follow
-            if (bpp.getValue() == null) {
-                return (isLeafNode()) ? null : bpp;
-            }
-            if (bpp.getValue().compareTo(value) > 0) {
-                return bpp.isRecordPointer() ? null : bpp;  // Found matching branch
+        // Leaf nodes return `null` since there was no match
+        // Internal nodes return the pointer to follow
+        return isLeafNode() ? null : getPointer(childPosition(obj));
+    }
+
+    /**
+     * Finds the position of the pointer to the child whose branch a value should be in. In a leaf node, this is
+     * the position of the first pointer with a greater value
+     * @param obj The value being searched for
+     * @return The position of the pointer in this node
+     */
+    public int childPosition(Object obj) {
+        // Find the first pointer with a larger value. If there is none, that is the null pointer
+        int i = search(cast(obj), false);
+        if (i == size) {
+            // It shouldn't be possible to have no null pointer in an internal node
+            throw new InternalError("Escaped pointer search in get() while looking for `" +
+                    obj + "` in table `" + schema.name + "` with node `" + index + "`");
+        }
+        return i;
+    }
+
+    /**
+     * Finds where a value falls among the values of this node's pointers with a binary search. Every pointer but
+     * the trailing null pointer has a value, and their values are in increasing order
+     * @param value The value being searched for
+     * @param inclusive `true` to find the first value greater than or equal to the value; `false` to find the first
+     *                  value greater than it
+     * @return The index of the first such pointer; the index of the null pointer (or the size of the node, if it
+     * does not have one yet) if no value is large enough
+     */
+    private int search(T value, boolean inclusive) {
+        return keys.search(value, terminated ? size - 1 : size, inclusive);
+    }
+
+    /**
+     * Checks if a position in this node holds the null pointer
+     * @param i The position
+     * @return `true` if the pointer at that position has no value
+     */
+    private boolean isNull(int i) {
+        return terminated && i == size - 1;
+    }
+
+    /**
+     * Gets the pointer at a position in this node
+     * @param i The position of the pointer
+     * @return A BPlusPointer holding that pointer's value and indices
+     */
+    public BPlusPointer<T> getPointer(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Pointer " + i + " is out of bounds for node of size " + size);
+        }
+        return new BPlusPointer<>(isNull(i) ? null : keys.get(i), pageIndices[i], recordIndices[i]);
+    }
+
+    /**
+     * Gets the page index of the pointer at a position in this node. For internal nodes, this is the index of a
+     * child BPlusNode
+     * @param i The position of the pointer
+     * @return The pointer's page index
+     */
+    public int getPageIndex(int i) {
+        return pageIndices[i];
+    }
+
+    /**
+     * Inserts a pointer at a position in this node, moving the pointers after it back
+     * @param i The position of the new pointer
+     * @param value The value of the pointer; `null` for the null pointer, which must be last
+     * @param pageIndex The page index of the pointer
+     * @param recordIndex The record index of the pointer
+     */
+    private void add(int i, Object value, int pageIndex, int recordIndex) {
+        open(i);
+        set(i, value, pageIndex, recordIndex);
+    }
+
+    /**
+     * Makes room for a pointer at a position in this node by moving the pointers after it back. The pointer at
+     * that position must be set before the node is used
+     * @param i The position
+     */
+    private void open(int i) {
+        if (size + 1 > pageIndices.length) {
+            int capacity = pageIndices.length * 2;
+            pageIndices = Arrays.copyOf(pageIndices, capacity);
+            recordIndices = Arrays.copyOf(recordIndices, capacity);
+            keys.ensureCapacity(capacity);
+        }
+        System.arraycopy(pageIndices, i, pageIndices, i + 1, size - i);
+        System.arraycopy(recordIndices, i, recordIndices, i + 1, size - i);
+        keys.move(i, i + 1, size - i);
+        size += 1;
+    }
+
+    /**
+     * Replaces the pointer at a position in this node
+     * @param i The position of the pointer
+     * @param value The new value of the pointer; `null` for the null pointer, which must be last
+     * @param pageIndex The new page index of the pointer
+     * @param recordIndex The new record index of the pointer
+     */
+    private void set(int i, Object value, int pageIndex, int recordIndex) {
+        if (value == null) {
+            terminated = true;
+        } else {
+            if (isNull(i)) {
+                terminated = false;
             }
+            keys.set(i, value);
         }
-        // It shouldn't be possible to exit the for-loop in an internal node
-        throw new InternalError("Escaped pointer iterator in get() while looking for `" +
-                obj + "` in table `" + schema.name + "` with node `" + index + "`");
+        pageIndices[i] = pageIndex;
+        recordIndices[i] = recordIndex;
+    }
+
+    /**
+     * Removes the pointer at a position in this node, moving the pointers after it forward
+     * @param i The position of the pointer
+     */
+    private void remove(int i) {
+        if (isNull(i)) {
+            terminated = false;
+        }
+        System.arraycopy(pageIndices, i + 1, pageIndices, i, size - i - 1);
+        System.arraycopy(recordIndices, i + 1, recordIndices, i, size - i - 1);
+        keys.move(i + 1, i, size - i - 1);
+        size -= 1;
     }
 
     /**
@@ -129,81 +273,173 @@ public class BPlusNode<T extends Comparable<T>> extends Bufferable {
      * @return The null pointer's page index
      */
     public int nullPointer() {
-        return pointers.getLast().getPageIndex();
+        return pageIndices[size - 1];
     }
 
     /**
-     * Inserts a pointer into the BPlus node. All following pointers from the same page will
-     * have their record index incremented
-     * @param obj The value being inserted
-     * @return The B+ pointer where this record was inserted
+     * Gets the number of pointers to records in this leaf node, which come before its null pointer
+     * @return The number of record pointers
      */
-    public BPlusPointer<T> insertRecord(Object obj) {
+    public int recordCount() {
+        return terminated ? size - 1 : size;
+    }
+
+    /**
+     * Gets the index of the leaf node after this one, which holds the next greater values
+     * @return The index of the next leaf node; -1 if this is the last leaf
+     */
+    public int nextLeaf() {
+        return terminated ? pageIndices[size - 1] : -1;
+    }
+
+    /**
+     * Finds the first record pointer of this leaf node whose value is not below a lower bound
+     * @param obj The lower bound
+     * @param inclusive `true` if a pointer with the lower bound's value is included; `false` to skip it
+     * @return The position of the pointer; recordCount() if every value is below the bound
+     */
+    public int lowerBound(Object obj, boolean inclusive) {
+        return search(cast(obj), inclusive);
+    }
+
+    /**
+     * Gets the value of the pointer at a position in this node
+     * @param i The position of the pointer, which must not be the null pointer
+     * @return The pointer's value
+     */
+    public Object getValue(int i) {
+        return keys.get(i);
+    }
+
+    /**
+     * Gets the record index of the pointer at a position in this leaf node, which is the ID of the record in its page
+     * @param i The position of the pointer
+     * @return The pointer's record index
+     */
+    public int getRecordIndex(int i) {
+        return recordIndices[i];
+    }
+
+    /**
+     * Finds the record a new record goes next to in the table, which is the record with the next greater value in
+     * this leaf node, or the record with the greatest value if there is none
+     * @param obj The value of the new record
+     * @return The pointer to the neighbouring record, which the new record goes before if its value is greater
+     * and after otherwise; `null` if this leaf is empty
+     * @throws IllegalArgumentException If this leaf already has a pointer with the value
+     */
+    public BPlusPointer<T> neighbor(Object obj) throws IllegalArgumentException {
         if (!isLeafNode()) {
             throw new IllegalArgumentException("node is not leaf. failed.");
         }
         T value = cast(obj);
-        if (pointers.isEmpty()) {
-            BPlusPointer<T> firstRecord = new BPlusPointer<>(value, 0, 0);
-            pointers.add(firstRecord);
-            pointers.add(new BPlusPointer<>(null, -1));
-            return firstRecord;
+        if (size == 0) {
+            return null;
         }
-        // Find the index where the record should be inserted, i.e. the index of the first
-        // record with a greater value. If no record is larger, insert at the end
-        BPlusPointer<T> newBPP = null;
-        for (int i = 0; i < pointers.size(); i++) {
-            BPlusPointer<T> bpp = pointers.get(i);
-            if (bpp.getValue() == null && newBPP == null) {
-                // Insert after last non-null pointer
-                BPlusPointer<T> prevPointer = pointers.get(i - 1);
-                newBPP = new BPlusPointer<>(value, prevPointer.getPageIndex(), prevPointer.getRecordIndex() + 1);
-                pointers.add(i, newBPP);
-            } else if (newBPP != null) {
-                if (bpp.getPageIndex() != newBPP.getPageIndex()) {
-                    break; // Reached the next page of records
-                }
-                if (bpp.getValue() != null) {
-                    pointers.set(i, new BPlusPointer<>(bpp.getValue(), bpp.getPageIndex(), bpp.getRecordIndex() + 1));
-                }
-            } else {
-                int cmp = bpp.getValue().compareTo(value);
-                if (cmp > 0) {
-                    // New BPP goes takes the spot of the first pointer with a larger value
-                    newBPP = new BPlusPointer<>(value, bpp.getPageIndex(), bpp.getRecordIndex());
-                    pointers.add(i, newBPP);
-                } else if (cmp == 0) {
-                    throw new IllegalArgumentException("Duplicate key: " + value);
-                }
-            }
+        int i = search(value, false);
+        if (i > 0 && keys.compare(i - 1, value) == 0) {
+            throw new IllegalArgumentException("Duplicate key: " + value);
         }
-        return newBPP;
+        return getPointer(isNull(i) ? i - 1 : i);
     }
 
     /**
-     * Increments the record counter for all records in
-     * @param pageIndex The page index whose records are being updated
-     * @param startingRecord The record after which pointers should be
-     * @return `true` if the next leaf node needs to be examined as well
+     * Inserts the pointer to a new record into this leaf node. Since records are pointed to by their record ID,
+     * which does not change when records are added around them, no other pointer changes
+     * @param obj The value of the record
+     * @param pageIndex The index of the page the record was added to
+     * @param recordId The ID of the record in its page
+     * @throws IllegalArgumentException If this leaf already has a pointer with the value
      */
-    public boolean incrementPointers(int pageIndex, int startingRecord) {
-        for (int i = 0; i < pointers.size(); i++) {
-            BPlusPointer<T> bpp = pointers.get(i);
-            if (bpp.getValue() == null) {
-                return bpp.getPageIndex() != -1;
-            }
-            if (bpp.getPageIndex() != pageIndex) {
-                return false;
-            }
-            if (bpp.getRecordIndex() >= startingRecord) {
-                pointers.set(i, new BPlusPointer<>(bpp.getValue(), bpp.getPageIndex(), bpp.getRecordIndex() + 1));
-            }
+    public void insertRecord(Object obj, int pageIndex, int recordId) throws IllegalArgumentException {
+        if (!isLeafNode()) {
+            throw new IllegalArgumentException("node is not leaf. failed.");
+        }
+        T value = cast(obj);
+        if (size == 0) {
+            add(0, value, pageIndex, recordId);
+            add(1, null, -1, -1);
+            return;
+        }
+        // Insert before the first record with a greater value, or at the end if no record is larger
+        int i = search(value, false);
+        if (i > 0 && keys.compare(i - 1, value) == 0) {
+            throw new IllegalArgumentException("Duplicate key: " + value);
+        }
+        add(i, value, pageIndex, recordId);
+    }
 
+    /**
+     * Removes the pointer for a value from this leaf node. The pointers of other records do not change, since
+     * deleted records leave a tombstone in their slot
+     * @param obj The value being removed
+     * @return The pointer that was removed; `null` if no pointer matched the value
+     */
+    public BPlusPointer<T> removeRecord(Object obj) {
+        T value = cast(obj);
+        int i = search(value, true);
+        if (i < size && !isNull(i) && keys.compare(i, value) == 0) {
+            BPlusPointer<T> removed = getPointer(i);
+            remove(i);
+            return removed;
+        }
+        return null;
+    }
+
+    /**
+     * Points the pointer for a value in this leaf node at a different page. Used for secondary index entries whose
+     * record was moved to another page by a split, keeping its record ID
+     * @param obj The value of the pointer
+     * @param pageIndex The index of the page the record is now in
+     * @return `true` if a pointer matched the value; `false` otherwise
+     */
+    public boolean repoint(Object obj, int pageIndex) {
+        T value = cast(obj);
+        int i = search(value, true);
+        if (i < size && !isNull(i) && keys.compare(i, value) == 0) {
+            pageIndices[i] = pageIndex;
+            return true;
         }
         return false;
     }
 
+    /**
+     * Points this leaf node's null pointer at a different next leaf
+     * @param nodeIndex The index of the next leaf node; -1 if this is the last leaf
+     */
+    public void setNextLeaf(int nodeIndex) {
+        set(size - 1, null, nodeIndex, -1);
+    }
+
+    /**
+     * Removes the pointer to a child from this internal node. Values that were in the child's range fall into
+     * the range of the child after it, or the child before it if it was the last child
+     * @param childIndex The index of the child node being removed
+     */
+    public void removeChild(int childIndex) {
+        for (int i = 0; i < size; i++) {
+            if (pageIndices[i] != childIndex) {
+                continue;
+            }
+            remove(i);
+            if (i == size && i > 0) {
+                // The last child was removed, so the one before it takes the null pointer
+                set(i - 1, null, pageIndices[i - 1], -1);
+            }
+            return;
+        }
+        throw new IllegalArgumentException("Node " + childIndex + " is not a child of " + this);
+    }
+
+    /**
+     * Copies this node's pointers into a list. Changes to the list do not affect the node
+     * @return A new list of BPlusPointers holding the values and indices of this node's pointers
+     */
     public ArrayList<BPlusPointer<T>> getPointers() {
+        ArrayList<BPlusPointer<T>> pointers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            pointers.add(getPointer(i));
+        }
         return pointers;
     }
 
@@ -217,84 +453,50 @@ public class BPlusNode<T extends Comparable<T>> extends Bufferable {
         ByteArrayInputStream inStream = new ByteArrayInputStream(nodeData);
         DataInputStream in = new DataInputStream(inStream);
         int parentIndex = in.readInt();
-        Attribute pk = schema.getPrimaryKey();
-        int pageIndex = 0;
-        int recordIndex = 0;
-        switch (pk.type) {
-            case INT:
-                ArrayList<BPlusPointer<Integer>> intPointers = new ArrayList<>();
-                while (pageIndex >= 0) {
-                    pageIndex = in.readInt();
-                    recordIndex = in.readInt();
-                    if (pageIndex == -1) {  // null pointer
-                        intPointers.add(new BPlusPointer<>(null, recordIndex));
-                        break;
-                    }
-                    int value = in.readInt();
-                    intPointers.add(new BPlusPointer<>(value, pageIndex, recordIndex));
-                }
-                return new BPlusNode<>(schema, nodeIndex, intPointers, parentIndex);
-            case DOUBLE:
-                ArrayList<BPlusPointer<Double>> doublePointers = new ArrayList<>();
-                while (pageIndex >= 0) {
-                    pageIndex = in.readInt();
-                    recordIndex = in.readInt();
-                    if (pageIndex == -1) {  // null pointer
-                        doublePointers.add(new BPlusPointer<>(null, recordIndex));
-                        break;
-                    }
-                    double value = in.readDouble();
-                    doublePointers.add(new BPlusPointer<>(value, pageIndex, recordIndex));
-                }
-                return new BPlusNode<>(schema, nodeIndex, doublePointers, parentIndex);
-            case VARCHAR, CHAR:
-                ArrayList<BPlusPointer<String>> strPointers = new ArrayList<>();
-                while (pageIndex >= 0) {
-                    pageIndex = in.readInt();
-                    recordIndex = in.readInt();
-                    if (pageIndex == -1) {  // null pointer
-                        strPointers.add(new BPlusPointer<>(null, recordIndex));
-                        break;
-                    }
-                    String value = in.readUTF();
-                    strPointers.add(new BPlusPointer<>(value, pageIndex, recordIndex));
-                }
-                return new BPlusNode<>(schema, nodeIndex, strPointers, parentIndex);
-            case BOOLEAN:
-                // Who is going to index on a boolean?????
-                ArrayList<BPlusPointer<Boolean>> boolPointers = new ArrayList<>();
-                while (pageIndex >= 0) {
-                    pageIndex = in.readInt();
-                    recordIndex = in.readInt();
-                    if (pageIndex == -1) {  // null pointer
-                        boolPointers.add(new BPlusPointer<>(null, recordIndex));
-                        break;
-                    }
-                    boolean value = in.readBoolean();
-                    boolPointers.add(new BPlusPointer<>(value, pageIndex, recordIndex));
-                }
-                return new BPlusNode<>(schema, nodeIndex, boolPointers, parentIndex);
+        BPlusNode<?> node = new BPlusNode<>(schema, nodeIndex, new ArrayList<>(), parentIndex);
+        while (true) {
+            int pageIndex = in.readInt();
+            int recordIndex = in.readInt();
+            if (pageIndex == -1) {  // null pointer
+                node.add(node.size, null, recordIndex, -1);
+                return node;
+            }
+            // Read the value straight into the node's keys, so it is never boxed
+            int i = node.size;
+            node.open(i);
+            node.pageIndices[i] = pageIndex;
+            node.recordIndices[i] = recordIndex;
+            node.keys.read(i, in);
         }
-        return null;
     }
 
     @Override
     public void save() throws IOException {
         // Verify table exists
-        File indexFile = schema.indexFile();
+        File indexFile = schema.nodeFile();
         if (!indexFile.exists()) {
             throw new IOException("Could not find index file `" + indexFile.getAbsolutePath() + "`");
         }
+        long offset = schema.nodeOffset(index);
+        if (offset == -1) {
+            throw new IOException("No space has been allocated for node " + index + " of table `" + schema.name + "`");
+        }
         // Write data
         try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
-            long offset = ((long) index * schema.pageSize);  // Page count + pageIndex offset
             raf.seek(offset);
             // Create output byte array
             ByteArrayOutputStream bs = new ByteArrayOutputStream();
             DataOutputStream out = new DataOutputStream(bs);
             out.writeInt(parent);
-            for (BPlusPointer<T> pointer : pointers) {
-                out.write(pointer.encode(schema));
+            for (int i = 0; i < size; i++) {
+                if (isNull(i)) {
+                    out.writeInt(-1);
+                    out.writeInt(pageIndices[i]);  // The null pointer is written backwards, like BPlusPointer.encode()
+                } else {
+                    out.writeInt(pageIndices[i]);
+                    out.writeInt(recordIndices[i]);
+                    keys.write(i, out);
+                }
             }
             byte[] pageData = bs.toByteArray();
             if (pageData.length > schema.pageSize) {
@@ -316,15 +518,13 @@ public class BPlusNode<T extends Comparable<T>> extends Bufferable {
      */
     public void splitPointer(Object rightObj, int rightIndex) {
         T rightValue = cast(rightObj);
-        for (int i = 0; i < pointers.size(); i++) {
-            BPlusPointer<T> bpp = pointers.get(i);
-            // if bpp's value is null or greater than rightValue, that's the ptr that is splitting
-            if (bpp.getValue() == null || bpp.getValue().compareTo(rightValue) > 0) {
-                BPlusPointer<T> newBPP = new BPlusPointer<>(bpp.getValue(), rightIndex);
-                pointers.set(i, new BPlusPointer<>(rightValue, bpp.getPageIndex()));
-                pointers.add(i + 1, newBPP);
-                return;
-            }
+        // The first ptr whose value is null or greater than rightValue is the ptr that is splitting
+        int i = search(rightValue, false);
+        if (i < size) {
+            // The new pointer takes over the split pointer's range above rightValue, including its value
+            add(i + 1, isNull(i) ? null : keys.get(i), rightIndex, -1);
+            set(i, rightValue, pageIndices[i], -1);
+            return;
         }
         throw new InternalError("Escaped for-loop in splitPointer() while adding value `" +
                 rightValue + "` and index `" + rightIndex + "` to " + this);
@@ -335,23 +535,21 @@ public class BPlusNode<T extends Comparable<T>> extends Bufferable {
      * @param newPtr The pointer being inserted
      */
     public void insertPointer(BPlusPointer<?> newPtr) {
-        BPlusPointer<T> bpp = castPointer(newPtr);
+        T value = cast(newPtr.getValue());
         // If adding a null pointer, stick it in and return
-        if (bpp.getValue() == null) {
-            if (pointers.getLast().getValue() == null) {
+        if (value == null) {
+            if (terminated) {
                 throw new IllegalArgumentException("BPlusNodes cannot have two null pointers");
             }
-            pointers.add(bpp);
+            add(size, null, newPtr.getPageIndex(), newPtr.getRecordIndex());
             return;
         }
-        // Iterate through the list of pointers to find where it should go and insert it
-        for (int i = 0; i < pointers.size(); i++) {
-            BPlusPointer<T> currPtr = pointers.get(i);
-            // Since the new ptr isn't null (that was already checked for), it must go before the null ptr
-            if (currPtr.getValue() == null || currPtr.getValue().compareTo(bpp.getValue()) > 0) {
-                pointers.add(i, bpp);
-                return;
-            }
+        // Search the list of pointers for where it should go and insert it. Since the new ptr isn't null (that was
+        // already checked for), it must go before the null ptr
+        int i = search(value, false);
+        if (i < size) {
+            add(i, value, newPtr.getPageIndex(), newPtr.getRecordIndex());
+            return;
         }
         throw new InternalError("Escaped for-loop in insertPointer() while inserting " +
                 newPtr + " into " + this);
@@ -362,51 +560,39 @@ public class BPlusNode<T extends Comparable<T>> extends Bufferable {
      * @param newPointers The list of new pointers
      */
     public void replacePointers(ArrayList<BPlusPointer<?>> newPointers) {
-        pointers.clear();
+        size = 0;
+        terminated = false;
         for (BPlusPointer<?> bpp : newPointers) {
-            pointers.add(castPointer(bpp));
+            add(size, cast(bpp.getValue()), bpp.getPageIndex(), bpp.getRecordIndex());
         }
     }
 
     /**
-     * Updates all the BPlusPointers for records which were transferred to a new page
-     * following a page split
+     * Points the pointers of records which were moved to a new page by a page split at the new page. Records keep
+     * their record ID when they move, so only the page index of each pointer changes
      * @param splitObj The key value of the first record on the new page
      * @param parentIndex The index of the parent page that was split
      * @param splitIndex The index of the new page
-     * @param startingRecIndex The index of the first record to check
-     * @return The record index for the last pointer updated. The update needs to continue on
-     * the next node starting at that value + 1; -1 if the end of the parent page was reached
-     * and the update is complete
+     * @return `true` if the moved records may continue into the next leaf node; `false` if the end of the parent
+     * page was reached and the update is complete
      */
-    public int pageSplit(Object splitObj, int parentIndex, int splitIndex, int startingRecIndex) {
+    public boolean pageSplit(Object splitObj, int parentIndex, int splitIndex) {
         T splitValue = cast(splitObj);
-        int recIndex = startingRecIndex;
-        // Iterate through the records until you find a value at (or after) the split point
-        for (int i = 0; i < pointers.size() - 1; i++) {
-            BPlusPointer<T> bpp = pointers.get(i);
-            int cmp = bpp.getValue().compareTo(splitValue);
-            if (cmp > 0 && bpp.getPageIndex() != parentIndex) {
-                return -1; // Last record of prev node was the last record in the split page
-            } else if (cmp >= 0) {
-                // Once you've found the split point, loop over the remaining records and replace
-                // their pointers with ones to the new page, resetting their recordPointers to
-                // start from startingRecIndex
-                while (bpp.getValue() != null) {
-                    if (bpp.getPageIndex() != parentIndex) {
-                        return -1;  // Reached the end of the page
-                    }
-                    pointers.set(i, new BPlusPointer<>(bpp.getValue(), splitIndex, recIndex));
-                    recIndex += 1;
-                    i += 1;
-                    bpp = pointers.get(i);
-                }
-                return recIndex;  // Reached the end of the pointer list without finding the end of the page
+        // Search the records for the first value at (or after) the split point
+        int i = search(splitValue, true);
+        if (i >= size - 1) {
+            // If you didn't find the split point, pageSplit() was somehow called on the wrong node
+            throw new IllegalArgumentException("Failed to locate valid record while performing pageSplit(). " +
+                    "Obj: " + splitObj + ", pI: " + parentIndex + ", sI: " + splitIndex + ", node: " + this);
+        }
+        // Once you've found the split point, repoint the remaining records of the parent page
+        for (; !isNull(i); i++) {
+            if (pageIndices[i] != parentIndex) {
+                return false;  // Reached the end of the page
             }
+            pageIndices[i] = splitIndex;
         }
-        // If you didn't find the split point, pageSplit() was somehow called on the wrong node
-        throw new IllegalArgumentException("Failed to locate valid record while performing pageSplit(). " +
-                "Obj: " + splitObj + ", pI: " + parentIndex + ", sI: " + splitIndex + ", node: " + this);
+        return true;  // Reached the end of the pointer list without finding the end of the page
     }
 
     /**
@@ -419,26 +605,18 @@ public class BPlusNode<T extends Comparable<T>> extends Bufferable {
         if (obj == null) {
             return null;
         }
-        try {
-            return (T) obj;
-        } catch (ClassCastException cce) {
+        // Generic casts are unchecked, so check the type by hand. Keys of different types would otherwise be
+        // compared without any error
+        if (!keyClass.isInstance(obj)) {
             throw new CustomExceptions.IncompatibleTypeComparisonException("Incompatible index type `" +
                     obj.getClass() + "` for table `" + schema.name + " (Expected: " +
                     schema.attributes.get(schema.primaryKey).type + ")");
         }
-    }
-
-    /**
-     * Casts a B+ pointer to this node's generic type
-     * @param pointer The pointer being cast
-     * @return A pointer of this node's type with the same indices as the passed in pointer
-     */
-    private BPlusPointer<T> castPointer(BPlusPointer<?> pointer) {
-        return new BPlusPointer<>(cast(pointer.getValue()), pointer.getPageIndex(), pointer.getRecordIndex());
+        return (T) obj;
     }
 
     @Override
     public String toString() {
-        return "(NODE " + index + " <" + parent + "> " + pointers + ")";
+        return "(NODE " + index + " <" + parent + "> " + getPointers() + ")";
     }
 }
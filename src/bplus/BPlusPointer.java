@@ -1,6 +1,7 @@
 package bplus;
 
 import tableData.Attribute;
+import tableData.KeyNormalizer;
 import tableData.TableSchema;
 
 import java.io.ByteArrayOutputStream;
@@ -12,6 +13,7 @@ public class BPlusPointer<T extends Comparable<T>> {
     private final T value;
     private final int pageIndex;
     private final int recordIndex;
+    private byte[] key;  // The normalized form of value, computed the first time it is compared
 
     /**
      * Creates a BPlus record pointer
@@ -45,6 +47,27 @@ public class BPlusPointer<T extends Comparable<T>> {
         return value;
     }
 
+    /**
+     * Gets the pointer's value as a normalized key, which can be compared with KeyNormalizer.compare()
+     * @return The normalized value of this pointer; `null` if this pointer has no value
+     */
+    public byte[] getKey() {
+        if (key == null && value != null) {
+            key = KeyNormalizer.normalize(value);
+        }
+        return key;
+    }
+
+    /**
+     * Compares this pointer's value to a normalized key
+     * @param otherKey The normalized key being compared
+     * @return a negative integer, zero, or a positive integer as this pointer's value is less than, equal to,
+     * or greater than the key
+     */
+    public int compareKey(byte[] otherKey) {
+        return KeyNormalizer.compare(getKey(), otherKey);
+    }
+
     /**
      * Gets the page pointer. For parent nodes, this is the index of the next BPlusNode.
      * For leaf nodes, this is the index of the page the value is stored on.
@@ -79,7 +102,7 @@ public class BPlusPointer<T extends Comparable<T>> {
      * is less than, equal to, or greater than the passed RecordPointer
      */
     public int compareTo(BPlusPointer<T> o) {
-        return value.compareTo(o.getValue());
+        return compareKey(o.getKey());
     }
 
     /**
@@ -93,7 +116,7 @@ public class BPlusPointer<T extends Comparable<T>> {
         if (value == null) {
             return true;
         }
-        return value.compareTo(o) > 0;
+        return compareKey(KeyNormalizer.normalize(o)) > 0;
     }
 
     /**
@@ -0,0 +1,42 @@
+package bplus;
+
+/**
+ * The key of an entry in a secondary index: the value of the indexed attribute, followed by the primary key of the
+ * record it came from. Since primary keys are unique, so are index keys, even when many records share a value. The
+ * entries for one value are next to each other in the tree's leaves, in primary key order, and make up that value's
+ * posting list.
+ * <br>
+ * A `null` primary key stands for the start of a value's posting list, and comes before every entry with that value.
+ * Indexed values are never `null`, since records with a `null` value are not indexed
+ * @param value The value of the indexed attribute
+ * @param primaryKey The primary key of the record; `null` for the start of the value's posting list
+ */
+public record IndexKey(Object value, Object primaryKey) implements Comparable<IndexKey> {
+
+    /**
+     * Creates the key that comes before every entry with a value
+     * @param value The value
+     * @return The key of the start of the value's posting list
+     */
+    public static IndexKey first(Object value) {
+        return new IndexKey(value, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int compareTo(IndexKey other) {
+        int comparison = ((Comparable<Object>) value).compareTo(other.value);
+        if (comparison != 0 || primaryKey == other.primaryKey) {
+            return comparison;
+        }
+        if (primaryKey == null || other.primaryKey == null) {
+            return (primaryKey == null) ? -1 : 1;
+        }
+        return ((Comparable<Object>) primaryKey).compareTo(other.primaryKey);
+    }
+
+    @Override
+    public String toString() {
+        return value + "|" + primaryKey;
+    }
+}
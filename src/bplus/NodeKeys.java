@@ -0,0 +1,363 @@
+package bplus;
+
+import tableData.AttributeType;
+import tableData.IndexSchema;
+import tableData.TableSchema;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The values of a B+ tree node's pointers, stored in a primitive array chosen by the type of the table's primary key
+ * so nodes do not hold an object for every pointer. INT, DOUBLE and BOOLEAN keys are stored as longs whose signed
+ * order matches the order of the values. CHAR and VARCHAR keys are stored as the Strings themselves, which compare
+ * in the same order as their normalized keys. Secondary index keys are stored as a pair of NodeKeys, one for the
+ * indexed values and one for the primary keys.
+ * <br>
+ * NodeKeys does not track how many of its entries are used; the node that owns it does.
+ */
+abstract class NodeKeys {
+
+    /**
+     * Creates an empty NodeKeys for the keys of a B+ tree
+     * @param schema The TableSchema of the table being indexed, or the IndexSchema of a secondary index
+     * @param capacity The number of keys to make room for
+     * @return The NodeKeys
+     */
+    static NodeKeys of(TableSchema schema, int capacity) {
+        if (schema instanceof IndexSchema index) {
+            return new IndexKeys(of(index.valueType(), capacity), of(index.getPrimaryKey().type, capacity));
+        }
+        return of(schema.getPrimaryKey().type, capacity);
+    }
+
+    /**
+     * Creates an empty NodeKeys for a primary key type
+     * @param type The type of the table's primary key
+     * @param capacity The number of keys to make room for
+     * @return The NodeKeys
+     */
+    static NodeKeys of(AttributeType type, int capacity) {
+        return switch (type) {
+            case CHAR, VARCHAR -> new StringKeys(capacity);
+            default -> new LongKeys(type, capacity);
+        };
+    }
+
+    /**
+     * Gets a key
+     * @param i The index of the key
+     * @return The key's value
+     */
+    abstract Object get(int i);
+
+    /**
+     * Sets a key
+     * @param i The index of the key
+     * @param value The new value, of the node's type
+     */
+    abstract void set(int i, Object value);
+
+    /**
+     * Moves a range of keys, like System.arraycopy() within the same array
+     * @param from The index of the first key being moved
+     * @param to The index the first key is moved to
+     * @param length The number of keys being moved
+     */
+    abstract void move(int from, int to, int length);
+
+    /**
+     * Makes room for at least a given number of keys, keeping the keys already stored
+     * @param capacity The number of keys
+     */
+    abstract void ensureCapacity(int capacity);
+
+    /**
+     * Compares a key to a value
+     * @param i The index of the key
+     * @param value The value, of the node's type
+     * @return a negative integer, zero, or a positive integer as the key is less than, equal to, or greater than
+     * the value
+     */
+    abstract int compare(int i, Object value);
+
+    /**
+     * Finds where a value falls among the first keys with a binary search. Those keys must be in increasing order
+     * @param value The value, of the node's type
+     * @param count The number of keys to search
+     * @param inclusive `true` to find the first key greater than or equal to the value; `false` to find the first
+     *                  key greater than it
+     * @return The index of the first such key; `count` if no key is large enough
+     */
+    abstract int search(Object value, int count, boolean inclusive);
+
+    /**
+     * Reads a key from a node's encoding
+     * @param i The index to store the key at
+     * @param in The input positioned at the key
+     * @throws IOException If the key could not be read
+     */
+    abstract void read(int i, DataInput in) throws IOException;
+
+    /**
+     * Writes a key in a node's encoding
+     * @param i The index of the key
+     * @param out The output to write the key to
+     * @throws IOException If the key could not be written
+     */
+    abstract void write(int i, DataOutput out) throws IOException;
+
+    /**
+     * Keys of the fixed size types, as longs whose signed order matches the order of their values
+     */
+    private static final class LongKeys extends NodeKeys {
+
+        private final AttributeType type;
+        private long[] keys;
+
+        LongKeys(AttributeType type, int capacity) {
+            this.type = type;
+            this.keys = new long[capacity];
+        }
+
+        private long encode(Object value) {
+            return switch (type) {
+                case INT -> (Integer) value;
+                case DOUBLE -> sortableBits((Double) value);
+                case BOOLEAN -> ((Boolean) value) ? 1 : 0;
+                default -> throw new IllegalArgumentException("Cannot store " + type + " keys as longs");
+            };
+        }
+
+        private Object decode(long key) {
+            return switch (type) {
+                case INT -> (int) key;
+                case DOUBLE -> unsortableBits(key);
+                case BOOLEAN -> key != 0;
+                default -> throw new IllegalArgumentException("Cannot store " + type + " keys as longs");
+            };
+        }
+
+        // Flipping every bit but the sign of a negative double makes the bits of doubles order like Double.compare()
+        private static long sortableBits(double value) {
+            long bits = Double.doubleToLongBits(value);
+            return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+
+        private static double unsortableBits(long key) {
+            return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+        }
+
+        @Override
+        Object get(int i) {
+            return decode(keys[i]);
+        }
+
+        @Override
+        void set(int i, Object value) {
+            keys[i] = encode(value);
+        }
+
+        @Override
+        void move(int from, int to, int length) {
+            System.arraycopy(keys, from, keys, to, length);
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > keys.length) {
+                long[] grown = new long[Math.max(capacity, keys.length * 2)];
+                System.arraycopy(keys, 0, grown, 0, keys.length);
+                keys = grown;
+            }
+        }
+
+        @Override
+        int compare(int i, Object value) {
+            return Long.compare(keys[i], encode(value));
+        }
+
+        @Override
+        int search(Object value, int count, boolean inclusive) {
+            long key = encode(value);
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] > key || (inclusive && keys[mid] == key)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        void read(int i, DataInput in) throws IOException {
+            keys[i] = switch (type) {
+                case INT -> in.readInt();
+                case DOUBLE -> sortableBits(in.readDouble());
+                case BOOLEAN -> in.readBoolean() ? 1 : 0;
+                default -> throw new IllegalArgumentException("Cannot store " + type + " keys as longs");
+            };
+        }
+
+        @Override
+        void write(int i, DataOutput out) throws IOException {
+            switch (type) {
+                case INT -> out.writeInt((int) keys[i]);
+                case DOUBLE -> out.writeDouble(unsortableBits(keys[i]));
+                case BOOLEAN -> out.writeBoolean(keys[i] != 0);
+                default -> throw new IllegalArgumentException("Cannot store " + type + " keys as longs");
+            }
+        }
+    }
+
+    /**
+     * Keys of the string types
+     */
+    private static final class StringKeys extends NodeKeys {
+
+        private String[] keys;
+
+        StringKeys(int capacity) {
+            this.keys = new String[capacity];
+        }
+
+        @Override
+        Object get(int i) {
+            return keys[i];
+        }
+
+        @Override
+        void set(int i, Object value) {
+            keys[i] = (String) value;
+        }
+
+        @Override
+        void move(int from, int to, int length) {
+            System.arraycopy(keys, from, keys, to, length);
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > keys.length) {
+                String[] grown = new String[Math.max(capacity, keys.length * 2)];
+                System.arraycopy(keys, 0, grown, 0, keys.length);
+                keys = grown;
+            }
+        }
+
+        @Override
+        int compare(int i, Object value) {
+            return keys[i].compareTo((String) value);
+        }
+
+        @Override
+        int search(Object value, int count, boolean inclusive) {
+            String key = (String) value;
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int cmp = keys[mid].compareTo(key);
+                if (cmp > 0 || (inclusive && cmp == 0)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        void read(int i, DataInput in) throws IOException {
+            keys[i] = in.readUTF();
+        }
+
+        @Override
+        void write(int i, DataOutput out) throws IOException {
+            out.writeUTF(keys[i]);
+        }
+    }
+
+    /**
+     * Keys of a secondary index, stored as the indexed values and the primary keys they came from, each in their
+     * own NodeKeys. Keys are ordered by value, then by primary key
+     */
+    private static final class IndexKeys extends NodeKeys {
+
+        private final NodeKeys values;
+        private final NodeKeys primaryKeys;
+
+        IndexKeys(NodeKeys values, NodeKeys primaryKeys) {
+            this.values = values;
+            this.primaryKeys = primaryKeys;
+        }
+
+        @Override
+        Object get(int i) {
+            return new IndexKey(values.get(i), primaryKeys.get(i));
+        }
+
+        @Override
+        void set(int i, Object value) {
+            IndexKey key = (IndexKey) value;
+            values.set(i, key.value());
+            primaryKeys.set(i, key.primaryKey());
+        }
+
+        @Override
+        void move(int from, int to, int length) {
+            values.move(from, to, length);
+            primaryKeys.move(from, to, length);
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            values.ensureCapacity(capacity);
+            primaryKeys.ensureCapacity(capacity);
+        }
+
+        @Override
+        int compare(int i, Object value) {
+            IndexKey key = (IndexKey) value;
+            int comparison = values.compare(i, key.value());
+            if (comparison != 0) {
+                return comparison;
+            }
+            // The start of a posting list comes before every entry in it
+            return (key.primaryKey() == null) ? 1 : primaryKeys.compare(i, key.primaryKey());
+        }
+
+        @Override
+        int search(Object value, int count, boolean inclusive) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(mid, value);
+                if (cmp > 0 || (inclusive && cmp == 0)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        void read(int i, DataInput in) throws IOException {
+            values.read(i, in);
+            primaryKeys.read(i, in);
+        }
+
+        @Override
+        void write(int i, DataOutput out) throws IOException {
+            values.write(i, out);
+            primaryKeys.write(i, out);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package components;
 
 import bplus.BPlusNode;
-import exceptions.CustomExceptions.*;
 import tableData.Bufferable;
 import tableData.Catalog;
 import tableData.Page;
@@ -45,13 +44,14 @@ public class Buffer {
     }
 
     /**
-     * Inserts an item into the buffer, popping another element if the buffer is full
+     * Inserts an item into the buffer, popping another element if the buffer is full. Frozen elements are never
+     * popped, so if every element is frozen the buffer holds more than its size until some of them are unfrozen
      * @param page The element to insert
      * @throws IOException if the popped element could not be written back to disk
      */
     public void insert(Bufferable page) throws IOException {
-        // See if we need to make room in the buffer
-        if (buffer.size() >= bufferSize) {
+        // See if we need to make room in the buffer. It can be over size if everything in it was frozen
+        while (buffer.size() >= bufferSize) {
             ArrayList<Bufferable> pageStack = new ArrayList<>();
             Bufferable old = buffer.removeLast();
             // Loop until you either find an unfrozen page or empty the buffer
@@ -64,15 +64,20 @@ public class Buffer {
                 old = buffer.removeLast();
             }
             if (old.isFrozen()) {
-                // If every page in the buffer is frozen, there's nothing you can do
-                throw new PageFreezeException("Attempted to insert a page into a buffer, but all pages were frozen");
+                // If every page in the buffer is frozen, none can be written out. A deep B+ tree can freeze more
+                // nodes than a small buffer holds, so keep them all rather than lose their changes
+                pageStack.add(old);
+                old = null;
             }
-            old.save();
             // Push the stack back into the buffer in order
             while (!pageStack.isEmpty()) {
                 // Add to the front so you don't encounter this page immediately again on next call
                 buffer.addLast(pageStack.removeLast());
             }
+            if (old == null) {
+                break;
+            }
+            old.save();
         }
         buffer.push(page);
     }
@@ -129,8 +134,8 @@ public class Buffer {
      * @throws IndexOutOfBoundsException if pageIndex is outside the bounds of the table file
      */
     public Page loadPage(TableSchema schema, int pageIndex) throws IndexOutOfBoundsException {
-        byte[] pageData = new byte[pageSize];
-        File tableFile = schema.tableFile();
+        byte[] pageData = new byte[schema.pageSize];
+        File tableFile = schema.pageFile();
         if (!tableFile.exists()) {
             System.err.println("Could not find table file.");
             return null;
@@ -144,9 +149,8 @@ public class Buffer {
 
         // Read in the data
         try (RandomAccessFile raf = new RandomAccessFile(tableFile, "r")) {
-            long offset = Integer.BYTES + ((long) pageIndex * pageSize);  // Page count + pageIndex offset
-            raf.seek(offset);
-            if (raf.read(pageData) != pageSize) {
+            raf.seek(schema.pageOffset(pageIndex));
+            if (raf.read(pageData) != schema.pageSize) {
                 System.err.println("WARNING: Read fewer bytes than expected while loading page from `" +
                         tableFile.getAbsolutePath() + "`");
             }
@@ -156,8 +160,7 @@ public class Buffer {
         }
         // Parse the page data and return it
         try {
-            int pageNum = schema.getPageNumber(pageIndex);
-            Page newPage = new Page(pageIndex, pageNum, pageData, schema);
+            Page newPage = new Page(pageIndex, pageData, schema);
             insert(newPage);
             return newPage;
         } catch (IOException ioe) {
@@ -167,26 +170,6 @@ public class Buffer {
         }
     }
 
-    /**
-     * Verifies that all pages in the buffer have the appropriate page number for their index.
-     * Used after inserting/removing a page from a table, which shifts page numbers
-     * @param schema The TableSchema of the table the pages being updated belong to
-     */
-    public void refreshPageNumbers(TableSchema schema) {
-        for (int i = 0; i < buffer.size(); i++) {
-            Bufferable bPage = buffer.pop(); // Pop next page
-            if (bPage.getClass() != Page.class) {
-                buffer.addLast(bPage);
-                continue;
-            }
-            Page page = (Page) bPage;
-            if (page.matchesSchema(schema)) {
-                page.pageNumber = schema.getPageNumber(page.index);
-            }
-            buffer.addLast(page);
-        }
-    }
-
     //endregion
 
     // ====================================================================================
@@ -231,24 +214,25 @@ public class Buffer {
      * @throws IndexOutOfBoundsException if pageIndex exceeds the size of the table file
      */
     public BPlusNode<?> loadNode(TableSchema schema, int nodeIndex) throws IndexOutOfBoundsException {
-        byte[] nodeData = new byte[pageSize];
-        File indexFile = schema.indexFile();
+        byte[] nodeData = new byte[schema.pageSize];
+        File indexFile = schema.nodeFile();
         if (!indexFile.exists()) {
             System.err.println("Could not find table file.");
             return null;
         }
+        if (nodeIndex < 0) {
+            throw new IndexOutOfBoundsException("Invalid node index `" + nodeIndex + "`");
+        }
         // Make sure index is within the bounds of the file
-        if ((nodeIndex + 1) > indexFile.length() / pageSize) {  // This breaks if pageSize is less than the table offset
+        long offset = schema.nodeOffset(nodeIndex);
+        if (offset == -1 || offset + schema.pageSize > indexFile.length()) {
             System.out.println("Index file length: " + indexFile.length());
             return null;
-        } else if (nodeIndex < 0) {
-            throw new IndexOutOfBoundsException("Invalid node index `" + nodeIndex + "`");
         }
         // Read in the data
         try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
-            long offset = (long) nodeIndex * pageSize;  // Page count + nodeIndex offset
             raf.seek(offset);
-            if (raf.read(nodeData) != pageSize) {
+            if (raf.read(nodeData) != schema.pageSize) {
                 System.err.println("WARNING: Read fewer bytes than expected while loading node from `" +
                         indexFile.getAbsolutePath() + "`");
             }
@@ -287,6 +271,33 @@ public class Buffer {
         buffer = newBuffer;
     }
 
+    /**
+     * Removes all B+ tree nodes belonging to a given table from the buffer without saving them to disk. The
+     * table's Pages are kept
+     * @param tableName The name of the table whose nodes are being dropped from the buffer
+     */
+    public void removeNodes(String tableName) {
+        buffer.removeIf(item -> item instanceof BPlusNode<?> && item.getTableName().equals(tableName));
+    }
+
+    /**
+     * Writes every page of a table out to disk and removes them from the buffer
+     * @param tableName The name of the table whose pages are being written
+     * @throws IOException if a problem occurred while writing to disk
+     */
+    public void saveTable(String tableName) throws IOException {
+        ArrayDeque<Bufferable> newBuffer = new ArrayDeque<>(buffer.size());
+        while (!buffer.isEmpty()) {
+            Bufferable currPage = buffer.removeLast();
+            if (currPage.getTableName().equals(tableName)) {
+                currPage.save();
+                continue;
+            }
+            newBuffer.push(currPage);
+        }
+        buffer = newBuffer;
+    }
+
     /**
      * Unfreezes all pages in the buffer
      */
@@ -299,12 +310,26 @@ public class Buffer {
     }
 
     /**
-     * Writes the contents of this buffer out to disk. Calling this method empties the buffer
-     * @throws IOException if a problem occurred while writing to disk
+     * Writes the contents of this buffer out to disk. Calling this method empties the buffer. Every item is written
+     * even if an earlier one fails, so one bad page does not lose the changes to everything after it
+     * @throws IOException if a problem occurred while writing to disk; the first problem, with any later ones
+     * suppressed
      */
     public void save() throws IOException {
+        IOException failure = null;
         while (!buffer.isEmpty()) {
-            buffer.pop().save();
+            try {
+                buffer.pop().save();
+            } catch (IOException ioe) {
+                if (failure == null) {
+                    failure = ioe;
+                } else {
+                    failure.addSuppressed(ioe);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
         }
     }
 }
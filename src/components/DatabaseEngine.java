@@ -3,6 +3,7 @@ import tableData.*;
 import tableData.Record;
 
 import where.Evaluator;
+import where.KeyRange;
 import exceptions.CustomExceptions.*;
 
 import java.io.IOException;
@@ -14,6 +15,7 @@ import java.util.*;
 public class DatabaseEngine {
 
     private final StorageManager storageManager;
+    private double autovacuumThreshold = -1;  // The free fraction of a table that triggers a vacuum. -1 if off
 
     /**
      * Creates a Database engine
@@ -31,9 +33,16 @@ public class DatabaseEngine {
      * Creates a table from a sequence of strings
      * @param tableName The name of the table
      * @param attributeList A list of token lists, with each sublist representing all the keywords of an attribute
-     * @throws IllegalArgumentException if there is a sequence of strings which does not represent a valid attribute
+     * @param options The table options which followed the attribute list, mapped from option name to value
+     * @throws IllegalArgumentException if there is a sequence of strings which does not represent a valid attribute,
+     * or an option which is not valid
      */
-    public void createTable(String tableName, ArrayList<ArrayList<String>> attributeList) {
+    public void createTable(String tableName, ArrayList<ArrayList<String>> attributeList, HashMap<String, String> options) {
+        // Validate table options
+        TableOptions tableOptions = new TableOptions();
+        for (String option : options.keySet()) {
+            tableOptions.set(option, options.get(option));
+        }
         //Building out attribute objects using constraints
         ArrayList<Attribute> allAttributes = new ArrayList<>();
         boolean hasPrimaryKey = false;
@@ -77,7 +86,10 @@ public class DatabaseEngine {
             return;
         }
         try {
-            storageManager.createTable(tableName, allAttributes);
+            TableSchema schema = storageManager.createTable(tableName, allAttributes, tableOptions);
+            if (storageManager.isIndexingEnabled()) {
+                storageManager.createUniqueIndexes(schema);
+            }
         } catch (Exception e) {
             System.err.println(e.getMessage());
         }
@@ -118,23 +130,48 @@ public class DatabaseEngine {
         // Indexing implementation
         if (storageManager.isIndexingEnabled()){
             try{
-                TableSchema tempSchema = storageManager.createTable(storageManager.getTempTableName(), schema.attributes);
+                TableSchema tempSchema = storageManager.createTable(storageManager.getTempTableName(), schema.attributes, schema.options());
+                // Unless the primary key is being updated, the records stay in key order and can be bulk loaded
+                boolean keyOrdered = attributeIndex != schema.primaryKey;
                 boolean failed = false;
+                // Every matching record is given the same value, so a unique attribute can only be given it once
+                boolean checkUnique = keyOrdered && attribute.unique;
+                boolean givenValue = false;
                 while (page != null) {
                     int i = 0;
                     while (i < page.recordCount()){
                         page = storageManager.getPage(schema, pageNumber);
 
-                        Record oldRecord = page.records.get(i);
+                        Record oldRecord = page.getRecords().get(i);
                         Record updatedRecord = oldRecord;
 
                         if (eval.evaluateRecord(updatedRecord) && !failed) {
                             updatedRecord = oldRecord.duplicate();
                             updatedRecord.update(attributeIndex, castToAttrType(newValue, attribute));
+                            if (checkUnique && updatedRecord.get(attributeIndex) != null) {
+                                if (givenValue) {
+                                    StorageManager.printDuplicate(schema, updatedRecord, attributeIndex);
+                                    failed = true;
+                                } else if (!storageManager.checkUnique(schema, updatedRecord, attributeIndex)) {
+                                    failed = true;
+                                }
+                                givenValue = true;
+                                if (failed) {
+                                    updatedRecord = oldRecord;
+                                }
+                            }
+                            // Bulk loaded records skip insertRecord(), so they are checked for size here
+                            if (keyOrdered && !failed && !StorageManager.checkFits(schema, updatedRecord)) {
+                                failed = true;
+                                updatedRecord = oldRecord;
+                            }
+                        }
+                        if (keyOrdered) {
+                            storageManager.loadRecord(tempSchema, updatedRecord);
                         }
                         // Attempt to insert the updated record. If this fails, insert the old record instead
                         // and begin inserting the
-                        if (!storageManager.insertRecord(tempSchema, updatedRecord, schema.primaryKey)) {
+                        else if (!storageManager.insertRecord(tempSchema, updatedRecord, schema.primaryKey)) {
                             failed = true;
                             if (!updatedRecord.equals(oldRecord)) {
                                 storageManager.insertRecord(tempSchema, oldRecord, schema.primaryKey);
@@ -145,6 +182,9 @@ public class DatabaseEngine {
                     pageNumber += 1;
                     page = storageManager.getPage(schema, pageNumber);
                 }
+                if (keyOrdered) {
+                    storageManager.finishLoad(tempSchema);
+                }
                 storageManager.replaceTable(schema, tempSchema);
 
             } catch (IOException e){
@@ -152,17 +192,23 @@ public class DatabaseEngine {
             }
 
         } else {
+            // Pages which cannot contain a matching record are left untouched
+            page = nextCandidatePage(schema, eval, 0);
             while (page != null) {
+                int pageIndex = page.index;
                 int i = 0;
                 while (i < page.recordCount()) {
-                    page = storageManager.getPage(schema, pageNumber);
-                    Record oldRecord = page.records.get(i);
+                    Record oldRecord = page.getRecords().get(i);
                     if (eval.evaluateRecord(oldRecord)) {    // if the record passes the where
                         Record updatedRecord = oldRecord.duplicate();   // copy record to test if insertion works
                         updatedRecord.update(attributeIndex, castToAttrType(newValue, attribute));
-                        if (!oldRecord.equals(updatedRecord)) {  // don't run swap logic if update changes nothing
-                            page.records.remove(i);             // need to remove old record temporarily to see if new is valid to insert
-                            schema.decrementRecordCount();      // necessary to validate some checks that can't be done yet
+                        if (!oldRecord.equals(updatedRecord) && schema.heap) {
+                            // Heap records don't need to stay in key order, so they can be replaced where they are
+                            if (!storageManager.updateHeapRecord(schema, page, i, updatedRecord)) {
+                                return;
+                            }
+                        } else if (!oldRecord.equals(updatedRecord)) {  // don't run swap logic if update changes nothing
+                            storageManager.deleteRecord(schema, page, i);  // need to remove old record temporarily to see if new is valid to insert
                             if (!storageManager.insertRecord(schema, updatedRecord, schema.primaryKey)) {
                                 storageManager.insertRecord(schema, oldRecord, schema.primaryKey);
                                 return;
@@ -170,17 +216,21 @@ public class DatabaseEngine {
                         }
                     }
                     i += 1;
+                    // Moving a record can evict this page and read it back in, or insert the record back into it,
+                    // so always continue with the copy of the page that is in the buffer
+                    page = storageManager.getPageByIndex(schema, pageIndex);
                 }
-                // If only record in page delete the page
+                // If the page is now empty, remove it. The next page then takes its page number
+                pageNumber = page.pageNumber();
                 if (page.recordCount() == 0) {
                     storageManager.dropPage(page);
+                } else {
+                    pageNumber += 1;
                 }
-                pageNumber += 1;
-                page = storageManager.getPage(schema, pageNumber);
+                page = nextCandidatePage(schema, eval, pageNumber);
             }
         }
-
-
+        autovacuum(tableName);
     }
 
     /**
@@ -218,31 +268,13 @@ public class DatabaseEngine {
         }
         if (schema.getAttributeIndex(attributeName) == schema.primaryKey) {
             System.err.println("Cannot drop primary key `" + attributeName + "` from table `" + schema.name + "`");
+            return;
         }
-        // Create a temporary table to transfer the updated info into
-        TableSchema newSchema;
         try {
-            String tempName = storageManager.getTempTableName();
-            ArrayList<Attribute> newAttrList = new ArrayList<>(schema.attributes);
-            newAttrList.remove(dropIndex);
-            newSchema = storageManager.createTable(tempName, newAttrList);
+            storageManager.dropAttribute(schema, dropIndex);
         } catch (IOException ioe) {
-            System.err.println("Encountered error while cloning table: " + ioe + " : " + ioe.getMessage());
-            return;
-        }
-        // Iterate over all records, dropping the attribute and inserting it into the new table
-        Page currPage = storageManager.getPage(schema, 0);
-        int currPageNumber = 0;
-        while (currPage != null) {
-            for (Record r : currPage.records) {
-                Record updatedRec = r.duplicate();
-                updatedRec.rowData.remove(dropIndex);
-                storageManager.fastInsert(newSchema, updatedRec);
-            }
-            currPageNumber += 1;
-            currPage = storageManager.getPage(schema, currPageNumber);
+            System.err.println("Encountered error while dropping attribute: " + ioe.getMessage());
         }
-        storageManager.replaceTable(schema, newSchema);
     }
 
     /**
@@ -284,7 +316,9 @@ public class DatabaseEngine {
                 System.err.println("Invalid attribute length `" + attributeLength +
                         "`. Length must be a positive integer");
                 return;
-            } else if (attributeLength > schema.pageSize) {
+            } else if (attributeLength > schema.pageSize &&
+                    (attrType == AttributeType.CHAR || schema.layout != PageLayout.ROW)) {
+                // Long VARCHARs in ROW tables are moved to the overflow file, but everything else must fit in a page
                 System.err.println("Attribute length `" + attributeLength + "` exceeds page size (" +
                         schema.pageSize + ").");
                 return;
@@ -307,31 +341,11 @@ public class DatabaseEngine {
                 false,
                 attributeLength,
                 defaultObj);
-        // Create a temporary table to transfer the updated info into
-        TableSchema newSchema;
         try {
-            String tempTable = storageManager.getTempTableName();
-            ArrayList<Attribute> newAttrList = new ArrayList<>(schema.attributes);
-            newAttrList.add(newAttribute);
-            newSchema = storageManager.createTable(tempTable, newAttrList);
+            storageManager.addAttribute(schema, newAttribute);
         } catch (IOException ioe) {
-            System.err.println("Encountered error while cloning table: " + ioe + " : " + ioe.getMessage());
-            return;
+            System.err.println("Encountered error while adding attribute: " + ioe.getMessage());
         }
-        // Iterate over all records, adding the attribute and inserting them into the new table
-        Page currPage = storageManager.getPage(schema, 0);
-        int currPageNum = 0;
-        while (currPage != null) {
-            for (Record r : currPage.records) {
-                Record updatedRec = r.duplicate();
-                updatedRec.rowData.add(defaultObj);
-                storageManager.fastInsert(newSchema, updatedRec);
-            }
-            currPageNum += 1;
-            currPage = storageManager.getPage(schema, currPageNum);
-        }
-        // Once the all records have been updated, swap the temp table with the real one
-        storageManager.replaceTable(schema, newSchema);
     }
 
     /**
@@ -370,75 +384,79 @@ public class DatabaseEngine {
             }
         }
 
-        // Join all tables together
-        TableSchema schema = storageManager.getTableSchema(tables.getFirst());
+        // Join all tables together. Joined relations only refer to the tables' records, which are not read until
+        // the where clause is evaluated or the result is printed
+        TempRelation relation = new TempRelation(storageManager, storageManager.getTableSchema(tables.getFirst()));
         for (String table: tables.subList(1, tables.size())) {
-            schema = cartesianJoin(schema, storageManager.getTableSchema(table));
-            if (schema == null) {
+            relation = cartesianJoin(relation, new TempRelation(storageManager, storageManager.getTableSchema(table)));
+            if (relation == null) {
                 return;
             }
         }
 
         /*
             we only need to look at the record data if there's a where clause or an orderBy attribute
-            if so, we make another temp table and run the necessary checks on all records
+            if so, we keep references to the records that pass the where clause and sort them if needed
         */
         if (!whereClause.isEmpty() || orderBy != null){
-            Evaluator eval = new Evaluator(whereClause, schema);
+            boolean hasWhere = !whereClause.isEmpty();
+            Evaluator eval = new Evaluator(whereClause, relation.schema);
             int orderIndex = -1;
             if (orderBy != null) {
-                orderIndex = schema.getAttributeIndex(orderBy);
+                orderIndex = relation.schema.getAttributeIndex(orderBy);
                 if (orderIndex == -1) {
                     throw new InvalidAttributeException("Attribute `" + orderBy + "` does not exist");
                 }
             }
-
-            // Create temp table
-            TableSchema temp;
-            try{
-                temp = storageManager.createTable(storageManager.getTempTableName(), schema.attributes);
-            } catch (IOException e) {
-                System.err.println("Encountered error while creating temp table: " + e);
-                return;
-            }
-            // Fill the temp table only with where-passing values (empty `where` makes eval.evaluate always return true)
-            int pageNumber = 0;
-            Page page = storageManager.getPage(schema, 0);
-            while (page != null) {
-                for (Record r : page.records) {
-                    if (eval.evaluateRecord(r)) {
-                        if (orderIndex == -1){
-                            storageManager.fastInsert(temp, r);
-                        }
-                        else{
-                            storageManager.insertRecord(temp, r, orderIndex);
+            // The rows of a single table are read in primary key order if it has an index or is kept sorted
+            boolean keyOrdered = tables.size() == 1 &&
+                    (storageManager.isIndexingEnabled() || !relation.schema.heap);
+            // Records are only decoded as far as the where clause needs, and are not copied
+            if (hasWhere) {
+                // A range of primary keys is read from the B+ tree, skipping every page outside of it
+                if (tables.size() == 1 && storageManager.isIndexingEnabled()) {
+                    KeyRange range = eval.keyRange(relation.schema.primaryKey);
+                    if (range.isBounded()) {
+                        relation = relation.keyRange(range);
+                    } else {
+                        // Otherwise, a range of an indexed attribute is read from its index
+                        for (IndexSchema index : storageManager.getTableSchema(tables.getFirst()).indexes()) {
+                            range = eval.keyRange(index.column);
+                            if (range.isBounded()) {
+                                relation = relation.indexRange(index, range);
+                                break;
+                            }
                         }
                     }
                 }
-                pageNumber++;
-                page = storageManager.getPage(schema, pageNumber);
+                relation = relation.filter(eval);
+            }
+            // Sorting needs the records themselves, so the filtered rows are copied into a temp table and sorted
+            // in one pass rather than inserting each one in order
+            if (orderIndex != -1 && !(keyOrdered && orderIndex == relation.schema.primaryKey)) {
+                try {
+                    TableSchema sorted = new ExternalSorter(storageManager).sort(relation.materialize(), orderIndex);
+                    relation = new TempRelation(storageManager, sorted);
+                } catch (IOException e) {
+                    System.err.println("Encountered error while sorting by `" + orderBy + "`: " + e);
+                    return;
+                }
             }
-            schema = temp;
         }
 
         // If attributes list is not '*', create a projection
         if(!attributes.contains("*")) {
-            schema = projection(schema, attributes);
-            if (schema == null) {
+            relation = projection(relation, attributes);
+            if (relation == null) {
                 return;
             }
         }
 
         // Print table
+        TableSchema schema = relation.schema;
         System.out.println(headerToString(schema, 10));
         try {
-            int pageNumber = 0;
-            Page currPage = storageManager.getPage(schema, pageNumber);
-            while (currPage != null) {
-                System.out.println(tableToString(currPage.records, 10));
-                pageNumber += 1;
-                currPage = storageManager.getPage(schema, pageNumber);
-            }
+            relation.forEachBatch(records -> System.out.println(tableToString(records, 10)));
         }
         catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
@@ -460,57 +478,39 @@ public class DatabaseEngine {
     public void deleteWhere(String tableName, ArrayList<String> whereClause) {
         TableSchema schema = storageManager.getTableSchema(tableName);
         Evaluator eval = new Evaluator(whereClause, schema);
-        int pageNumber = 0;
-        Page page = storageManager.getPage(schema, 0);
-
-        if (storageManager.isIndexingEnabled()){
-           try {
-               TableSchema tempSchema = storageManager.createTable(storageManager.getTempTableName(), schema.attributes);
-               //Add code
-               while (page != null) {
-                   int i = 0;
-                   while (i < page.recordCount()) {
-                       page = storageManager.getPage(schema, pageNumber);
-                       Record currRecord = page.records.get(i);
-                       if (!eval.evaluateRecord(currRecord)) {
-                           storageManager.insertRecord(tempSchema, currRecord, schema.primaryKey);
-                       }
-
-                       i += 1;
-                   }
-                   // If only record in page delete the page
-                   if (page.recordCount() == 0) {
-                       storageManager.dropPage(page);
-                   }
-                   pageNumber += 1;
-                   page = storageManager.getPage(schema, pageNumber);
-               }
-               storageManager.replaceTable(schema, tempSchema);
-           } catch (Exception e){
-
-            }
-           //Create a temp tree, run the eval and build a new table, swap.
-
-        } else {
-            while (page != null) {
-                int i = 0;
-                // Iterate over all records. If a record matches the evaluator, remove it
-                while (i < page.recordCount()) {
-                    if (eval.evaluateRecord(page.records.get(i))) {
-                        page.records.remove(i);
-                        schema.decrementRecordCount();
-                    }
+        boolean indexing = storageManager.isIndexingEnabled();
+        // Pages which cannot contain a matching record are left untouched
+        Page page = nextCandidatePage(schema, eval, 0);
+        while (page != null) {
+            int pageNumber = page.pageNumber();
+            page.freeze();  // Deleting from the B+ tree can fill the buffer
+            int i = 0;
+            // Iterate over all records. If a record matches the evaluator, remove it
+            while (i < page.slotCount()) {
+                Record record = page.slotRecord(i);
+                if (record == null || !eval.evaluateRecord(record)) {
                     i += 1;
+                } else {
+                    storageManager.deleteRecord(schema, page, i);
+                    // Indexed tables leave a tombstone so the B+ tree pointers to the rest of the page stay valid
+                    if (indexing) {
+                        i += 1;
+                    }
                 }
-                // If the page is now empty, remove it
-                if (page.recordCount() == 0) {
-                    storageManager.dropPage(page);
+            }
+            page.unfreeze();
+            // If the page is now empty, remove it. The next page then takes its page number
+            if (page.recordCount() == 0) {
+                storageManager.dropPage(page);
+            } else {
+                if (page.deadSlots() >= page.slotCount() * StorageManager.COMPACT_FRACTION) {
+                    storageManager.compactPage(schema, page);
                 }
                 pageNumber += 1;
-                page = storageManager.getPage(schema, pageNumber);
             }
+            page = nextCandidatePage(schema, eval, pageNumber);
         }
-
+        autovacuum(tableName);
     }
 
     public void deleteWithIndexing(String tablename, ArrayList<String> whereQueries){
@@ -540,6 +540,132 @@ public class DatabaseEngine {
         return storageManager.insertRecord(schema, record, schema.primaryKey);
     }
 
+    /**
+     * Vacuums a table, rewriting its file in page order with full pages and rebuilding its index
+     * @param tableName The name of the table
+     */
+    public void vacuum(String tableName) {
+        try {
+            storageManager.vacuum(storageManager.getTableSchema(tableName));
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds a table's B+ tree from the bottom up
+     * @param tableName The name of the table
+     */
+    public void reindex(String tableName) {
+        if (!storageManager.isIndexingEnabled()) {
+            System.err.println("Cannot reindex table '" + tableName + "': indexing is not enabled.");
+            return;
+        }
+        try {
+            storageManager.reindex(storageManager.getTableSchema(tableName));
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a secondary index on an attribute of a table, which selects use to find records by that attribute
+     * @param indexName The name of the index
+     * @param tableName The name of the table
+     * @param attributeName The name of the attribute being indexed
+     */
+    public void createIndex(String indexName, String tableName, String attributeName) {
+        if (!storageManager.isIndexingEnabled()) {
+            System.err.println("Cannot create index '" + indexName + "': indexing is not enabled.");
+            return;
+        }
+        TableSchema schema = storageManager.getTableSchema(tableName);
+        int column = schema.getAttributeIndex(attributeName);
+        if (column == -1) {
+            System.err.println("No attribute `" + attributeName + "` on table `" + schema.name + "`");
+            return;
+        }
+        if (column == schema.primaryKey) {
+            System.err.println("Cannot create index on primary key `" + attributeName + "` of table `" +
+                    schema.name + "`, which already has one");
+            return;
+        }
+        try {
+            storageManager.createIndex(schema, indexName, column, false);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Drops a secondary index from a table
+     * @param indexName The name of the index
+     * @param tableName The name of the table
+     */
+    public void dropIndex(String indexName, String tableName) {
+        TableSchema schema = storageManager.getTableSchema(tableName);
+        IndexSchema index = schema.getIndexSchema(indexName);
+        if (index == null) {
+            System.err.println("No index `" + indexName + "` on table `" + schema.name + "`");
+            return;
+        }
+        if (index.unique) {
+            System.err.println("Cannot drop index `" + indexName + "`, which backs unique attribute `" +
+                    schema.attributes.get(index.column).name + "`");
+            return;
+        }
+        try {
+            storageManager.dropIndex(schema, index);
+        } catch (IOException ioe) {
+            System.err.println("Encountered error while dropping index: " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Turns on autovacuum, which vacuums a table after a delete or update leaves enough of its file free
+     * @param threshold The fraction of the table file, from 0 to 1, which must be free space to trigger a vacuum
+     */
+    public void setAutovacuum(double threshold) {
+        autovacuumThreshold = threshold;
+    }
+
+    /**
+     * Vacuums a table if autovacuum is on and the table's free space has reached the threshold
+     * @param tableName The name of the table
+     */
+    private void autovacuum(String tableName) {
+        if (autovacuumThreshold < 0) {
+            return;
+        }
+        TableSchema schema = storageManager.getTableSchema(tableName);
+        if (schema.pageCount() > 1 && schema.freeSpace().freeFraction() >= autovacuumThreshold) {
+            vacuum(tableName);
+        }
+    }
+
+    /**
+     * Fetches the first page at or after a given page number which could contain a record passing a where clause.
+     * Pages are first checked against their zone map, so pages which can be ruled out that way are never read
+     * @param schema The schema of the table being scanned
+     * @param eval The evaluator for the where clause
+     * @param pageNumber The page number to start from
+     * @return The first page which could not be skipped; `null` if there are no such pages left
+     */
+    private Page nextCandidatePage(TableSchema schema, Evaluator eval, int pageNumber) {
+        int pageIndex = schema.getIndex(pageNumber);
+        while (pageIndex != -1) {
+            if (!eval.canSkip(schema.getZoneMap(pageIndex))) {
+                Page page = storageManager.getPageByIndex(schema, pageIndex);
+                if (!eval.canSkip(page)) {
+                    return page;
+                }
+            }
+            pageNumber++;
+            pageIndex = schema.getIndex(pageNumber);
+        }
+        return null;
+    }
+
     //endregion
 
     // ====================================================================================
@@ -574,74 +700,48 @@ public class DatabaseEngine {
     }
 
     /**
-     * Performs a cartesian join on two tables and returns the TableSchema pointing to the
-     * table which contains the resulting records
-     * @param table_1 The first table
-     * @param table_2 The second table
-     * @return The TableSchema of the resulting table. This should be dropped after use
+     * Performs a cartesian join on two relations. No records are read or copied; the result refers to the
+     * records of both relations
+     * @param relation_1 The first relation
+     * @param relation_2 The second relation
+     * @return The joined relation; `null` if the relations could not be joined
      */
-    private TableSchema cartesianJoin(TableSchema table_1, TableSchema table_2)  {
-        TableSchema larger;
-        TableSchema smaller;
-        if (table_1.pageCount() >= table_2.pageCount()) {
-            larger = table_1.duplicate();
-            smaller = table_2.duplicate();
-        } else {
-            larger = table_2.duplicate();
-            smaller = table_1.duplicate();
-        }
+    private TempRelation cartesianJoin(TempRelation relation_1, TempRelation relation_2)  {
+        // The larger relation is read in the outer loop. Its schema is duplicated so renaming its attributes does
+        // not rename those of the table it refers to
+        TempRelation larger = (relation_1.pageCount() >= relation_2.pageCount()) ? relation_1 : relation_2;
+        TempRelation smaller = (larger == relation_1) ? relation_2 : relation_1;
+        TableSchema largerNames = larger.schema.duplicate();
+        TableSchema smallerNames = smaller.schema.duplicate();
         // Check for duplicate attr names
-        dedupeAttrNames(larger, smaller);
+        dedupeAttrNames(largerNames, smallerNames);
         // Create the joined list of attributes
         ArrayList<Attribute> concatAttr = new ArrayList<>();
-        concatAttr.addAll(larger.attributes);
-        concatAttr.addAll(smaller.attributes);
+        concatAttr.addAll(largerNames.attributes);
+        concatAttr.addAll(smallerNames.attributes);
         for (Attribute attr : concatAttr) {
             if (attr.primaryKey) {
                 attr.primaryKey = false;
                 attr.notNull = true;
             }
         }
-        // Create the temp table
-        TableSchema combinedSchema;
         try {
-            combinedSchema = storageManager.createTable(storageManager.getTempTableName(), concatAttr);
-        } catch (IOException e) {
-            System.err.println("Encountered error while creating temp table: " + e);
+            return TempRelation.product(storageManager.getTempTableName(), concatAttr, larger, smaller);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Encountered error while joining tables: " + e.getMessage());
             return null;
         }
-        if (combinedSchema != null) {
-            // Block nested loop join
-            int largerNumber = 0;
-            Page largerPage = storageManager.getPage(larger, 0);
-            while (largerPage != null) {
-                int smallerNumber = 0;
-                Page smallerPage = storageManager.getPage(smaller, 0);
-                while (smallerPage != null) {
-                    for (Record lRec : largerPage.getRecords()) {
-                        for (Record rRec : smallerPage.getRecords()) {
-                            ArrayList<Object> rowData = new ArrayList<>(lRec.rowData);
-                            rowData.addAll(rRec.rowData);
-                            storageManager.fastInsert(combinedSchema, new Record(rowData));
-                        }
-                    }
-                    smallerNumber++;
-                    smallerPage = storageManager.getPage(smaller, smallerNumber);
-                }
-                largerNumber++;
-                largerPage = storageManager.getPage(larger, largerNumber);
-            }
-        }
-        return combinedSchema;
     }
 
     /**
-     * Takes in the schema of a table and returns a TableSchema containing a subset of its columns
-     * @param schema The TableSchema of the table being projected
+     * Takes in a relation and returns a relation containing a subset of its columns. The projection shares the
+     * rows of the relation, so no records are copied
+     * @param relation The relation being projected
      * @param attrs The attributes to include in the projection
-     * @return The TableSchema of the projection
+     * @return The projection
      */
-    private TableSchema projection(TableSchema schema, ArrayList<String> attrs) {
+    private TempRelation projection(TempRelation relation, ArrayList<String> attrs) {
+        TableSchema schema = relation.schema;
         // Translate and validate parameters
         if (containsDuplicates(attrs)) {
             System.err.println("Invalid select: duplicate attribute names found - "+String.join(", ", attrs));
@@ -658,34 +758,16 @@ public class DatabaseEngine {
                 return null;
             }
         }
-        // Create projection schema
-        TableSchema projSchema;
+        ArrayList<Attribute> projAttrList = new ArrayList<>();
+        for (int i : attrIndices) {
+            projAttrList.add(new Attribute(schema.attributes.get(i)));
+        }
         try {
-            String projName = storageManager.getTempTableName();
-            ArrayList<Attribute> projAttrList = new ArrayList<>();
-            for (int i : attrIndices) {
-                projAttrList.add(new Attribute(schema.attributes.get(i)));
-            }
-            projSchema = storageManager.createTable(projName, projAttrList);
-        } catch (IOException ioe) {
-            System.err.println("Encountered error while cloning table: " + ioe + " : " + ioe.getMessage());
+            return relation.project(storageManager.getTempTableName(), attrIndices, projAttrList);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Encountered error while projecting: " + e.getMessage());
             return null;
         }
-        // Fill projection table
-        Page currPage = storageManager.getPage(schema, 0);
-        int currPageNumber = 0;
-        while (currPage != null) {
-            for (Record r : currPage.records) {
-                Record projRec = new Record();
-                for (int index : attrIndices) {
-                    projRec.rowData.add(r.rowData.get(index));
-                }
-                storageManager.fastInsert(projSchema, projRec);
-            }
-            currPageNumber += 1;
-            currPage = storageManager.getPage(schema, currPageNumber);
-        }
-        return projSchema;
     }
 
     public boolean ambiguous(ArrayList<String> tableNames,  String attribute){
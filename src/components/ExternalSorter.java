@@ -0,0 +1,146 @@
+package components;
+
+import tableData.KeyNormalizer;
+import tableData.Page;
+import tableData.Record;
+import tableData.TableSchema;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the records of a table by a single attribute with an external merge sort. The table is read in runs
+ * small enough to sort in memory, each sorted run is written to its own temp table, and the runs are then merged
+ * into a final temp table. Records are compared by their normalized keys, so no comparison needs to know the type
+ * of the attribute. The sort is stable.
+ */
+public class ExternalSorter {
+
+    private final StorageManager storageManager;
+
+    /**
+     * A record paired with the normalized key it is being sorted by
+     */
+    private static class KeyedRecord {
+        final long prefix;
+        final byte[] key;
+        final Record record;
+
+        KeyedRecord(Record record, int attrIndex) {
+            this.record = record;
+            this.key = KeyNormalizer.normalize(record.get(attrIndex));
+            this.prefix = KeyNormalizer.prefix(key);
+        }
+    }
+
+    /// Orders KeyedRecords by their prefix, only comparing the full keys if the prefixes are equal
+    private static final Comparator<KeyedRecord> KEY_ORDER = (first, second) -> {
+        int cmp = Long.compareUnsigned(first.prefix, second.prefix);
+        return (cmp != 0) ? cmp : KeyNormalizer.compare(first.key, second.key);
+    };
+
+    /**
+     * Reads the records of one sorted run in order
+     */
+    private class RunCursor {
+        final TableSchema run;
+        final int runIndex;
+        final int attrIndex;
+        int pageNumber = 0;
+        int recordIndex = 0;
+        KeyedRecord current;
+
+        RunCursor(TableSchema run, int runIndex, int attrIndex) {
+            this.run = run;
+            this.runIndex = runIndex;
+            this.attrIndex = attrIndex;
+            advance();
+        }
+
+        /**
+         * Moves to the next record in the run. `current` is null once the run is exhausted
+         */
+        void advance() {
+            Page page = storageManager.getPage(run, pageNumber);
+            while (page != null && recordIndex >= page.recordCount()) {
+                pageNumber++;
+                recordIndex = 0;
+                page = storageManager.getPage(run, pageNumber);
+            }
+            current = (page == null) ? null : new KeyedRecord(page.getRecords().get(recordIndex++), attrIndex);
+        }
+    }
+
+    /**
+     * Creates an ExternalSorter
+     * @param storageManager The storage manager holding the tables being sorted
+     */
+    public ExternalSorter(StorageManager storageManager) {
+        this.storageManager = storageManager;
+    }
+
+    /**
+     * Sorts a table by one of its attributes into a new temp table. `null` values come first
+     * @param schema The schema of the table being sorted
+     * @param attrIndex The index of the attribute to sort by
+     * @return The schema of a temp table containing the sorted records
+     * @throws IOException If a temp table could not be created
+     */
+    public TableSchema sort(TableSchema schema, int attrIndex) throws IOException {
+        // Leave one page of the buffer free for the run being written
+        int runPages = Math.max(1, storageManager.bufferSize() - 1);
+        ArrayList<TableSchema> runs = new ArrayList<>();
+        int pageNumber = 0;
+        Page page = storageManager.getPage(schema, pageNumber);
+        while (page != null) {
+            ArrayList<KeyedRecord> runRecords = new ArrayList<>();
+            for (int i = 0; i < runPages && page != null; i++) {
+                for (Record record : page.getRecords()) {
+                    runRecords.add(new KeyedRecord(record, attrIndex));
+                }
+                pageNumber++;
+                page = storageManager.getPage(schema, pageNumber);
+            }
+            runRecords.sort(KEY_ORDER);  // List.sort() is stable
+            TableSchema run = createTempTable(schema);
+            for (KeyedRecord keyedRecord : runRecords) {
+                storageManager.fastInsert(run, keyedRecord.record);
+            }
+            runs.add(run);
+        }
+        if (runs.size() == 1) {
+            return runs.getFirst();
+        }
+
+        // Merge the runs, breaking ties by run order to keep the sort stable
+        TableSchema sorted = createTempTable(schema);
+        PriorityQueue<RunCursor> cursors = new PriorityQueue<>(Math.max(1, runs.size()), (first, second) -> {
+            int cmp = KEY_ORDER.compare(first.current, second.current);
+            return (cmp != 0) ? cmp : Integer.compare(first.runIndex, second.runIndex);
+        });
+        for (int i = 0; i < runs.size(); i++) {
+            RunCursor cursor = new RunCursor(runs.get(i), i, attrIndex);
+            if (cursor.current != null) {
+                cursors.add(cursor);
+            }
+        }
+        while (!cursors.isEmpty()) {
+            RunCursor cursor = cursors.poll();
+            storageManager.fastInsert(sorted, cursor.current.record);
+            cursor.advance();
+            if (cursor.current != null) {
+                cursors.add(cursor);
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Creates an empty temp table with the same attributes and storage options as another table
+     */
+    private TableSchema createTempTable(TableSchema schema) throws IOException {
+        return storageManager.createTable(storageManager.getTempTableName(), schema.attributes, schema.options());
+    }
+}
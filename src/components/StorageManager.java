@@ -3,6 +3,7 @@ import bplus.*;
 import exceptions.CustomExceptions.*;
 import tableData.*;
 import tableData.Record;
+import where.KeyRange;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -15,9 +16,16 @@ import java.util.concurrent.TimeUnit;
 public class StorageManager {
     private boolean NUKE_MODE = false;
     private final Buffer buffer;
+    /// The fraction of each page and B+ tree node which is filled when a table is vacuumed, leaving room for inserts
+    public static final double VACUUM_FILL = 0.9;
+    /// The fraction of a page's slots which must be tombstones before deletes compact the page
+    public static final double COMPACT_FRACTION = 0.5;
+    /// The default number of pages that table and index files grow by at once
+    public static final int DEFAULT_EXTENT_PAGES = 8;
     Catalog catalog;
     int nextTempID;
     int n = -1;
+    private int extentPages = DEFAULT_EXTENT_PAGES;
 
     /**
      * Creates a StorageManager object
@@ -29,11 +37,32 @@ public class StorageManager {
      * @throws IOException If there are problems accessing or modifying the catalog and table files
      */
     public StorageManager(File databaseDir, int pageSize, int bufferSize, boolean indexing) throws IOException {
+        this(databaseDir, pageSize, bufferSize, indexing, false);
+    }
+
+    /**
+     * Creates a StorageManager object
+     * @param databaseDir A File object pointing to the directory where the database files are stored
+     * @param pageSize The page size used. If a catalog already exists, the page size of that catalog
+     *                 will be used instead
+     * @param bufferSize The size of the page buffer
+     * @param indexing `true` if indexing is turned on; `false` otherwise
+     * @param tablespace `true` if a new database should store every table in a single tablespace file. If a
+     *                   catalog already exists, the catalog's setting will be used instead
+     * @throws IOException If there are problems accessing or modifying the catalog and table files
+     */
+    public StorageManager(File databaseDir, int pageSize, int bufferSize, boolean indexing, boolean tablespace) throws IOException {
         File catalogFile = new File(databaseDir, "catalog.bin");
-        catalog = new Catalog(catalogFile, pageSize, indexing);
+        catalog = new Catalog(catalogFile, pageSize, indexing, tablespace ? DEFAULT_EXTENT_PAGES : 0);
         buffer = new Buffer(catalog, bufferSize, catalog.pageSize());
         wipeTempTables();
         nextTempID = 0;
+        // Tables made before unique indexes existed, or while indexing was off, are given them now
+        if (isIndexingEnabled()) {
+            for (String tableName : catalog.getTableNames()) {
+                createUniqueIndexes(catalog.getTableSchema(tableName));
+            }
+        }
     }
 
     /**
@@ -44,6 +73,14 @@ public class StorageManager {
         return catalog.indexingEnabled();
     }
 
+    /**
+     * Gets the number of pages the buffer can hold at once
+     * @return The buffer size
+     */
+    public int bufferSize() {
+        return buffer.size();
+    }
+
     /**
      * Returns a name for a temporary table
      * @return The name of a temporary table
@@ -121,21 +158,41 @@ public class StorageManager {
      */
     public boolean insertRecord(TableSchema schema, Record record, int attrIndex) {
         try{
-            insertRecordTry(schema, record, attrIndex);
+            return insertRecordTry(schema, record, attrIndex);
         } catch (InternalError | IOException | IllegalArgumentException e) {
             System.err.println(e.getMessage());
             return false;
         }
-        return true;
+    }
+
+    /**
+     * Compares two attribute values of the same type, ordering `null` before every other value
+     * @param first The first value
+     * @param second The second value
+     * @return A negative number if first comes before second, 0 if they are equal, or a positive number otherwise
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object first, Object second) {
+        if (first == null || second == null) {
+            return (first == null ? 0 : 1) - (second == null ? 0 : 1);
+        }
+        return ((Comparable<Object>) first).compareTo(second);
     }
 
     public boolean insertRecordTry(TableSchema schema, Record record, int attrIndex) throws IOException {
+        if (!checkFits(schema, record)) {
+            return false;
+        }
+        // Heap tables are not kept in order, so the record only needs to go somewhere with room for it
+        if (schema.heap && !isIndexingEnabled()) {
+            return insertHeapRecord(schema, record);
+        }
         // Generate the BPlusPointer for where the record needs to be inserted
         Object value = record.get(attrIndex);
         // If table has no pages, make a new page and insert it into the buffer
         if (schema.rootIndex == -1) {
-            Page firstPage = new Page(0, 0, schema);
             try {
+                Page firstPage = new Page(allocatePage(schema, -1), 0, schema);
                 firstPage.save();
                 buffer.insert(firstPage);
             } catch (IOException ioe) {
@@ -144,8 +201,8 @@ public class StorageManager {
             }
             try {
                 if (isIndexingEnabled()) {
-                    schema.treeRoot=addPage(schema.indexFile());
-                    BPlusNode<?> root = new BPlusNode<>(schema, schema.rootIndex, new ArrayList<>(), -1);
+                    schema.treeRoot=allocateNode(schema);
+                    BPlusNode<?> root = new BPlusNode<>(schema, schema.treeRoot, new ArrayList<>(), -1);
                     root.save();
                     buffer.insert(root);
                 }
@@ -155,23 +212,65 @@ public class StorageManager {
         }
         int targetPageIndex = -1;
         int targetRecordIndex = -1;
-        if(!isIndexingEnabled()) {
+        BPlusNode<?> leaf = null;
+        // With no index, a primary key sorted table can find its insert point from the first key of each page
+        int directoryPageNumber = -1;
+        if (!isIndexingEnabled() && attrIndex == schema.primaryKey) {
+            // Unique attributes other than the primary key can be anywhere in the table, so check them by hash
+            if (hasSecondaryUniques(schema)) {
+                int conflict = uniqueKeys(schema).conflict(record);
+                if (conflict != -1) {
+                    printDuplicate(schema, record, conflict);
+                    return false;
+                }
+            }
+            directoryPageNumber = findPageNumber(schema, value);
+        }
+        if (directoryPageNumber != -1) {
+            // Any record with the same primary key would have to be in this page
+            Page page = getPage(schema, directoryPageNumber);
+            targetPageIndex = page.index;
+            targetRecordIndex = page.recordCount();
+            for (int i = 0; i < page.recordCount(); i++) {
+                int comparison = compareValues(value, page.getField(i, attrIndex));
+                if (comparison == 0) {
+                    printDuplicate(schema, record, attrIndex);
+                    return false;
+                }
+                if (comparison < 0) {
+                    targetRecordIndex = i;
+                    break;
+                }
+            }
+            // Like a scan, put a record greater than every key in the page before the first record of the next one
+            if (targetRecordIndex == page.recordCount() && directoryPageNumber < schema.pageCount() - 1) {
+                targetPageIndex = schema.getIndex(directoryPageNumber + 1);
+                targetRecordIndex = 0;
+            }
+        }
+        else if(!isIndexingEnabled()) {
+            // Only the unique attributes and the attribute being ordered by need to be read from existing records
+            ArrayList<Integer> uniqueAttrs = new ArrayList<>();
+            for (int a = 0; a < schema.attributes.size(); a++) {
+                Attribute attr = schema.attributes.get(a);
+                if ((attr.unique || attr.primaryKey) && record.get(a) != null) {
+                    uniqueAttrs.add(a);
+                }
+            }
             // Verify record is unique. While looping, find and remember the insertion point
             int pageNum = 0;
             Page currPage = getPage(schema, pageNum);
             while (currPage != null) {
                 for (int i = 0; i < currPage.recordCount(); i++) {
-                    Record existingRec = currPage.records.get(i);
                     // Check for duplicate
-                    int matchAttr = record.isEquivalent(existingRec, schema);
-                    if (matchAttr != -1) {
-                        System.err.println("Invalid new tuple (" + record + "): the value '" + record.get(matchAttr) +
-                                "' already exists in " + ((schema.attributes.get(matchAttr).primaryKey ? "primary key " : "unique ")
-                                + "column '" + schema.attributes.get(matchAttr).name + "'."));
-                        return false;
+                    for (int matchAttr : uniqueAttrs) {
+                        if (currPage.fieldEquals(i, matchAttr, record.get(matchAttr))) {
+                            printDuplicate(schema, record, matchAttr);
+                            return false;
+                        }
                     }
                     // Check for insertion point
-                    if (targetPageIndex == -1 && !record.greaterThan(existingRec, schema, attrIndex)) {
+                    if (targetPageIndex == -1 && compareValues(value, currPage.getField(i, attrIndex)) < 0) {
                         targetPageIndex = currPage.index;
                         targetRecordIndex = i;
                     }
@@ -185,90 +284,81 @@ public class StorageManager {
             }
         }
         else{   //Indexing enabled. Do B+ tree stuff
-            BPlusNode<?> root = buffer.getNode(schema, schema.treeRoot);
-
-            // Traverse tree until you find leaf node where the record will be inserted
-            BPlusPointer<?> bpp = root.get(value);
-            BPlusNode<?> targetNode = root;
-            while (bpp != null) {
-                if (targetNode.isLeafNode()) {
-                    throw new IllegalArgumentException("Duplicate record: " + record);
+            // Unique attributes other than the primary key are checked through their unique indexes
+            for (IndexSchema index : schema.indexes()) {
+                if (index.unique && isTaken(index, record.get(index.column), null)) {
+                    printDuplicate(schema, record, index.column);
+                    return false;
+                }
+            }
+            // Find the leaf node where the record will be inserted, and the record it goes next to
+            leaf = findLeaf(schema, value);
+            BPlusPointer<?> neighbor = leaf.neighbor(value);
+            // Loading the page can fill the buffer, so keep the leaf in it until the record has been indexed
+            leaf.freeze();
+            if (neighbor == null) {
+                targetPageIndex = schema.getIndex(0);
+                targetRecordIndex = 0;
+            } else {
+                targetPageIndex = neighbor.getPageIndex();
+                Page page = getPageByIndex(schema, targetPageIndex);
+                targetRecordIndex = pointedSlot(schema, page, targetPageIndex, neighbor.getRecordIndex());
+                if (compareValues(value, neighbor.getValue()) > 0) {
+                    targetRecordIndex += 1;
                 }
-                targetNode = buffer.getNode(schema, bpp.getPageIndex());
-                bpp = targetNode.get(value);
-            }
-
-            // Insert the record into the node
-            BPlusPointer<?> insertPointer = targetNode.insertRecord(value);
-            if (targetNode.getPointers().get(targetNode.size() - 2).getPageIndex() == insertPointer.getPageIndex()) {
-                boolean needsUpdate = true;
-                int nextPtr = targetNode.nullPointer();
-                while (needsUpdate && nextPtr != -1) {
-                    BPlusNode<?> currNode = buffer.getNode(schema, nextPtr);
-                    needsUpdate = currNode.incrementPointers(insertPointer.getPageIndex(), insertPointer.getRecordIndex());
-                    nextPtr = currNode.nullPointer();
+                if (targetRecordIndex < page.slotCount()) {
+                    page.useRecordIds();  // The records after the new one are about to move
                 }
             }
-            targetPageIndex = insertPointer.getPageIndex();
-            targetRecordIndex = insertPointer.getRecordIndex();
-
+        }
+        // Insert record into target page/index
+        Page targetPage = getPageByIndex(schema, targetPageIndex);
+        int fillBytes = schema.fillBytes();
+        boolean fits = targetPage.hasRoomFor(record, schema.pageSize - fillBytes);
+        int recordId = targetPage.addRecord(targetRecordIndex, record);
+        schema.incrementRecordCount();
+        if (leaf != null) {
+            // Inserting into the tree can load other nodes, so keep the page in the buffer until it is done
+            targetPage.freeze();
+            leaf.insertRecord(value, targetPageIndex, recordId);
             /*
                 n (the big parenthetical representing the max number of pointers a node can have) is calculated as follows:
                 page size / (primary key size + page pointer size + record pointer size)
                     - page pointer is an index that refers to the page (or node) number in the table (or b+ tree)
-                    - record pointer is an index that refers to the index of the record in the page of the table (or -1 in an internal node)
+                    - record pointer is the ID of the record in the page of the table (or -1 in an internal node)
              */
-            targetNode.freeze();
-            if(isInvalid(schema, targetNode)){
-                validate(schema, targetNode, ((this.n != -1) ? this.n : targetNode.n));
+            if(isInvalid(schema, leaf)){
+                validate(schema, leaf, ((this.n != -1) ? this.n : leaf.n));
             }
-            targetNode.unfreeze();
-        }
-        // Insert record into target page/index
-        Page targetPage = getPageByIndex(schema, targetPageIndex);
-        if (targetRecordIndex == -1) {
-            targetPage.records.add(record);
-
-        } else {
-            targetPage.records.add(targetRecordIndex, record);
+            leaf.unfreeze();
+            targetPage.unfreeze();
         }
-        schema.incrementRecordCount();
 
-        // If the page is now oversize, split
-        if (targetPage.pageDataSize() > catalog.pageSize()) {
-            int childIndex = schema.getFirstPageGap();
-            if (childIndex == -1) {
-                try {
-                    childIndex = addPage(schema.tableFile());
-                } catch (IOException e) {
-                    // If there was a failure, undo the record insert and abort
-                    System.err.println(e.getMessage());
-                    targetPage.records.remove(targetRecordIndex);
-                    return false;
-                }
-            }
-            Page child = targetPage.split(childIndex);
-            // Insert the new page into the buffer and catalog
+        // If the page might now be filled past the table's fill factor, measure it and split if it is
+        Page child = null;
+        if (!fits && targetPage.recordCount() > 1 && targetPage.pageDataSize() > fillBytes) {
             try {
-                buffer.insert(child);
-                schema.insertPage(child.pageNumber, childIndex);
-                child.save();
-            } catch (IOException ioe) {
-                System.err.println("Failed to write split page to file. Error: " + ioe.getMessage());
+                child = splitPage(schema, targetPage);
+            } catch (IOException e) {
+                // If there was a failure, undo the record insert and abort
+                System.err.println(e.getMessage());
+                targetPage.removeRecord(targetRecordIndex);
+                return false;
             }
-            buffer.refreshPageNumbers(schema); // Resync pageNumber for pages in buffer
+            int childIndex = child.index;
 
             if (isIndexingEnabled()) {
-                Object firstKey = child.records.getFirst().get(schema.primaryKey);
+                Object firstKey = child.getRecords().getFirst().get(schema.primaryKey);
                 BPlusNode<?> currNode = buffer.getNode(schema, schema.treeRoot);
                 BPlusPointer<?> currPtr = currNode.get(firstKey);
                 while (!currNode.isLeafNode()) {
                     currNode = buffer.getNode(schema, currPtr.getPageIndex());
                     currPtr = currNode.get(firstKey);
                 }
-                int recStartIndex = -1;
+                // The moved records keep their record IDs, so only their page changes
+                boolean moreRecords = false;
                 try {
-                    recStartIndex = currNode.pageSplit(firstKey, targetPageIndex, childIndex, 0);
+                    moreRecords = currNode.pageSplit(firstKey, targetPageIndex, childIndex);
                 } catch (IllegalArgumentException iae) {
                     System.err.println(iae.getMessage());
                     for (StackTraceElement elm : iae.getStackTrace()) {
@@ -278,14 +368,14 @@ public class StorageManager {
                     System.exit(-1);
                 }
 
-                while (recStartIndex != -1) {
-                    int nextPtr = currNode.getPointers().getLast().getPageIndex();
+                while (moreRecords) {
+                    int nextPtr = currNode.nullPointer();
                     if (nextPtr == -1) {
                         break; // Reached end of records
                     }
                     currNode = buffer.getNode(schema, nextPtr);
                     try {
-                        recStartIndex = currNode.pageSplit(firstKey, targetPageIndex, childIndex, recStartIndex);
+                        moreRecords = currNode.pageSplit(firstKey, targetPageIndex, childIndex);
                     } catch (IllegalArgumentException iae) {
                         System.err.println(iae.getMessage());
                         for (StackTraceElement elm : iae.getStackTrace()) {
@@ -297,10 +387,614 @@ public class StorageManager {
                 }
             }
         }
+        // The page is only indexed once it is back under the page size, since indexing it can push it out of the buffer
+        if (leaf != null) {
+            for (IndexSchema index : schema.indexes()) {
+                insertIndexEntry(schema, index, record, targetPageIndex, recordId);
+            }
+            if (child != null) {
+                moveIndexEntries(schema, child);
+            }
+        }
+        if (schema.uniqueKeys() != null) {
+            schema.uniqueKeys().add(record);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the page a primary key belongs in by binary searching the first key of each page, which is the
+     * smallest primary key in the page's zone map. Pages without a zone map are read instead, which is cheap
+     * for the pages most likely to have changed since being saved, since they are still in the buffer
+     * @param schema The TableSchema of the table, which must be sorted by primary key
+     * @param value The primary key value
+     * @return The number of the last page whose first key is not greater than the value, or page 0 if there is
+     * none; `-1` if a page on the way was empty, so the table needs to be scanned instead
+     */
+    private int findPageNumber(TableSchema schema, Object value) {
+        int low = 0;
+        int high = schema.pageCount() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            Object firstKey = firstKey(schema, mid);
+            if (firstKey == null) {
+                return -1;
+            }
+            if (compareValues(firstKey, value) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the primary key of the first record in a page of a primary key sorted table
+     * @param schema The TableSchema of the table
+     * @param pageNumber The number of the page
+     * @return The page's first primary key; `null` if the page is empty
+     */
+    private Object firstKey(TableSchema schema, int pageNumber) {
+        ZoneMap zoneMap = schema.getZoneMap(schema.getIndex(pageNumber));
+        if (zoneMap != null && zoneMap.hasBounds(schema.primaryKey)) {
+            return zoneMap.min(schema.primaryKey);
+        }
+        Page page = getPage(schema, pageNumber);
+        return (page.recordCount() == 0) ? null : page.getField(0, schema.primaryKey);
+    }
+
+    /**
+     * Checks if a table has unique attributes besides its primary key
+     * @param schema The TableSchema of the table
+     * @return `true` if any non primary key attribute is unique
+     */
+    private static boolean hasSecondaryUniques(TableSchema schema) {
+        for (Attribute attr : schema.attributes) {
+            if (attr.unique && !attr.primaryKey) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits a page which has gone over size. The new page is put next to the page it split from if there is room
+     * @param schema The TableSchema of the table the page is in
+     * @param page The page being split
+     * @return The new page, holding the records moved out of the split page
+     * @throws IOException If the table file could not be grown for the new page
+     */
+    private Page splitPage(TableSchema schema, Page page) throws IOException {
+        int childIndex = allocatePage(schema, page.index);
+        // The records moved to the new page keep their B+ tree pointers' record IDs
+        if (isIndexingEnabled()) {
+            page.useRecordIds();
+        }
+        Page child = page.split(childIndex);
+        // Insert the new page into the buffer. Splitting already added it to the table's page order
+        try {
+            buffer.insert(child);
+            child.save();
+        } catch (IOException ioe) {
+            System.err.println("Failed to write split page to file. Error: " + ioe.getMessage());
+        }
+        return child;
+    }
 
+    /**
+     * Inserts a record into a heap table. Uniqueness is checked with the table's UniqueKeys instead of a scan, and
+     * the record is added to the end of the last page, or of the first page with room for it under the table's
+     * fill factor if the last page is full. If no page has room, it goes in a new page at the end of the table
+     * @param schema The TableSchema of the table the record is being inserted into
+     * @param record The record to insert
+     * @return `true` if the record was inserted; `false` if it would break a uniqueness constraint
+     */
+    private boolean insertHeapRecord(TableSchema schema, Record record) {
+        UniqueKeys keys = uniqueKeys(schema);
+        int conflict = keys.conflict(record);
+        if (conflict != -1) {
+            printDuplicate(schema, record, conflict);
+            return false;
+        }
+        Page target = null;
+        if (schema.rootIndex != -1 && schema.layout != PageLayout.PAX) {
+            Page lastPage = getPage(schema, schema.pageCount() - 1);
+            int reserve = schema.pageSize - schema.fillBytes();
+            if (!lastPage.hasRoomFor(record, reserve)) {
+                int pageIndex = schema.freeSpace().firstFit(lastPage.recordSize(record) + reserve);
+                if (pageIndex != -1) {
+                    target = getPageByIndex(schema, pageIndex);
+                }
+            }
+        }
+        if (target != null) {
+            target.addRecord(-1, record);
+            schema.incrementRecordCount();
+        } else {
+            appendRecord(schema, record, schema.fillBytes());
+        }
+        keys.add(record);
         return true;
     }
 
+    /**
+     * Replaces a record of a heap table where it is. Since the order of a heap table's records does not matter,
+     * the record never has to move to another page. If it no longer fits in its page, the page is split
+     * @param schema The TableSchema of the table the record is in
+     * @param page The page the record is in
+     * @param slot The slot of the record in the page
+     * @param record The new version of the record
+     * @return `true` if the record was replaced; `false` if the new version would break a uniqueness constraint
+     */
+    public boolean updateHeapRecord(TableSchema schema, Page page, int slot, Record record) {
+        if (!checkFits(schema, record)) {
+            return false;
+        }
+        page.freeze();  // Loading the unique keys can fill the buffer
+        UniqueKeys keys = uniqueKeys(schema);
+        Record oldRecord = page.removeRecord(slot);
+        keys.remove(oldRecord);
+        int conflict = keys.conflict(record);
+        if (conflict != -1) {
+            page.addRecord(slot, oldRecord);
+            keys.add(oldRecord);
+            page.unfreeze();
+            printDuplicate(schema, record, conflict);
+            return false;
+        }
+        // Updates may use the space the fill factor keeps free, so only split if the page is over its full size
+        boolean fits = page.hasRoomFor(record);
+        page.addRecord(slot, record);
+        keys.add(record);
+        if (!fits && page.recordCount() > 1 && page.pageDataSize() > schema.pageSize) {
+            try {
+                splitPage(schema, page);
+            } catch (IOException ioe) {
+                System.err.println(ioe.getMessage());
+            }
+        }
+        page.unfreeze();
+        return true;
+    }
+
+    /**
+     * Gets the values of a table's primary key and unique attributes, reading them from the table if they have
+     * not been loaded since the database was opened
+     * @param schema The TableSchema of the table
+     * @return The table's UniqueKeys
+     */
+    private UniqueKeys uniqueKeys(TableSchema schema) {
+        if (schema.uniqueKeys() == null) {
+            UniqueKeys keys = new UniqueKeys(schema);
+            // Only the unique attributes need to be decoded
+            boolean[] columns = new boolean[schema.attributes.size()];
+            for (int a = 0; a < columns.length; a++) {
+                columns[a] = schema.attributes.get(a).unique || schema.attributes.get(a).primaryKey;
+            }
+            for (int pageNumber = 0; pageNumber < schema.pageCount(); pageNumber++) {
+                for (Record record : getPage(schema, pageNumber).getRecords(columns)) {
+                    keys.add(record);
+                }
+            }
+            schema.setUniqueKeys(keys);
+        }
+        return schema.uniqueKeys();
+    }
+
+    /**
+     * Checks through a unique index if a record other than a given one has a value. Only the start of the value's
+     * posting list is read, so this takes one descent of the index
+     * @param index The IndexSchema of the unique index
+     * @param value The value; `null` values are never taken
+     * @param primaryKey The primary key of the record allowed to have the value; `null` if no record is
+     * @return `true` if another record has the value; `false` otherwise
+     */
+    private boolean isTaken(IndexSchema index, Object value, Object primaryKey) {
+        if (value == null || index.treeRoot == -1) {
+            return false;
+        }
+        IndexKey start = IndexKey.first(value);
+        BPlusNode<?> leaf = findLeaf(index, start);
+        int position = leaf.lowerBound(start, true);
+        while (true) {
+            for (; position < leaf.recordCount(); position++) {
+                IndexKey key = (IndexKey) leaf.getValue(position);
+                if (!key.value().equals(value)) {
+                    return false;
+                }
+                if (!key.primaryKey().equals(primaryKey)) {
+                    return true;
+                }
+            }
+            int next = leaf.nextLeaf();
+            if (next == -1) {
+                return false;
+            }
+            leaf = buffer.getNode(index, next);
+            position = 0;
+        }
+    }
+
+    /**
+     * Checks that no record of an indexed table besides a given one has the value a record has for a unique
+     * attribute, through the attribute's unique index. If another record does, the error is printed
+     * @param schema The TableSchema of the table
+     * @param record The record, holding the value and the primary key of the record allowed to have it
+     * @param column The index of the unique attribute
+     * @return `true` if no other record has the value, or the attribute has no unique index; `false` otherwise
+     */
+    public boolean checkUnique(TableSchema schema, Record record, int column) {
+        IndexSchema index = schema.getUniqueIndex(column);
+        if (index != null && isTaken(index, record.get(column), record.get(schema.primaryKey))) {
+            printDuplicate(schema, record, column);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Prints the error for a record which would break a uniqueness constraint
+     * @param schema The TableSchema of the table the record was being added to
+     * @param record The record
+     * @param attrIndex The index of the attribute whose value is already in the table
+     */
+    static void printDuplicate(TableSchema schema, Record record, int attrIndex) {
+        Attribute attr = schema.attributes.get(attrIndex);
+        System.err.println("Invalid new tuple (" + record + "): the value '" + record.get(attrIndex) +
+                "' already exists in " + (attr.primaryKey ? "primary key " : "unique ") +
+                "column '" + attr.name + "'.");
+    }
+
+    /**
+     * Checks that a record is small enough to be stored in its table, printing an error if it is not
+     * @param schema The TableSchema of the table the record is being added to
+     * @param record The record
+     * @return `true` if the record fits in a page on its own; `false` if it can never be stored
+     */
+    static boolean checkFits(TableSchema schema, Record record) {
+        if (Page.fitsInPage(schema, record)) {
+            return true;
+        }
+        System.err.println("Invalid new tuple (" + record + "): it is too large to fit in a page of table `" +
+                schema.name + "` (" + schema.pageSize + " bytes).");
+        return false;
+    }
+
+    /**
+     * Finds the slot of the record a B+ tree pointer refers to
+     * @param schema The TableSchema of the table the pointer leads into
+     * @param page The page at the pointer's page index; `null` if it could not be read
+     * @param pageIndex The index of the page the pointer refers to
+     * @param recordId The ID of the record the pointer refers to
+     * @return The slot of the record in the page
+     * @throws CorruptedDataException If the pointer does not lead to a record, so the tree and the table's pages
+     * no longer agree
+     */
+    static int pointedSlot(TableSchema schema, Page page, int pageIndex, int recordId) throws CorruptedDataException {
+        int slot = (page == null) ? -1 : page.findSlot(recordId);
+        if (slot == -1) {
+            throw new CorruptedDataException("An index of table `" + schema.name + "` points at record " + recordId +
+                    " of page index " + pageIndex + ", which does not exist. Run `reindex " + schema.name +
+                    ";` to rebuild the table's indexes");
+        }
+        return slot;
+    }
+
+    /**
+     * Finds the leaf node of a table's B+ tree which a value belongs in
+     * @param schema The TableSchema of the table
+     * @param value The primary key value
+     * @return The leaf node
+     */
+    private BPlusNode<?> findLeaf(TableSchema schema, Object value) {
+        BPlusNode<?> node = buffer.getNode(schema, schema.treeRoot);
+        while (!node.isLeafNode()) {
+            node = buffer.getNode(schema, node.get(value).getPageIndex());
+        }
+        return node;
+    }
+
+    /**
+     * Finds the leftmost leaf node of a B+ tree, which holds its smallest values
+     * @param schema The TableSchema of the table, or the IndexSchema of a secondary index
+     * @return The first leaf node
+     */
+    private BPlusNode<?> firstLeaf(TableSchema schema) {
+        BPlusNode<?> node = buffer.getNode(schema, schema.treeRoot);
+        while (!node.isLeafNode()) {
+            node = buffer.getNode(schema, node.getPageIndex(0));
+        }
+        return node;
+    }
+
+    /**
+     * Gets the key of a record's entry in a secondary index
+     * @param table The TableSchema of the indexed table
+     * @param index The IndexSchema of the index
+     * @param record The record
+     * @return The record's index key; `null` if the record's value is `null`, so it is not in the index
+     */
+    private static IndexKey indexKey(TableSchema table, IndexSchema index, Record record) {
+        Object value = record.get(index.column);
+        return (value == null) ? null : new IndexKey(value, record.get(table.primaryKey));
+    }
+
+    /**
+     * Adds the entry for a new record to a secondary index, splitting nodes as needed
+     * @param table The TableSchema of the indexed table
+     * @param index The IndexSchema of the index
+     * @param record The new record
+     * @param pageIndex The index of the page the record was added to
+     * @param recordId The ID of the record in its page
+     * @throws IOException If the index's file could not be grown for a new node
+     */
+    private void insertIndexEntry(TableSchema table, IndexSchema index, Record record, int pageIndex,
+                                  int recordId) throws IOException {
+        IndexKey key = indexKey(table, index, record);
+        if (key == null) {
+            return;
+        }
+        if (index.treeRoot == -1) {
+            index.treeRoot = allocateNode(index);
+            buffer.insert(new BPlusNode<>(index, index.treeRoot, new ArrayList<>(), -1));
+        }
+        BPlusNode<?> leaf = findLeaf(index, key);
+        leaf.freeze();
+        leaf.insertRecord(key, pageIndex, recordId);
+        if (isInvalid(index, leaf)) {
+            validate(index, leaf, ((this.n != -1) ? this.n : leaf.n));
+        }
+        leaf.unfreeze();
+    }
+
+    /**
+     * Removes the entry for a deleted record from a secondary index
+     * @param table The TableSchema of the indexed table
+     * @param index The IndexSchema of the index
+     * @param record The deleted record
+     */
+    private void removeIndexEntry(TableSchema table, IndexSchema index, Record record) {
+        IndexKey key = indexKey(table, index, record);
+        if (key == null) {
+            return;
+        }
+        BPlusNode<?> leaf = findLeaf(index, key);
+        leaf.removeRecord(key);
+        if (leaf.size() == 1) {
+            removeLeaf(index, leaf, key);
+        }
+    }
+
+    /**
+     * Points the secondary index entries of the records moved to a new page by a split at the new page. The records
+     * keep their record IDs, so only the page of each entry changes
+     * @param table The TableSchema of the indexed table
+     * @param child The new page
+     */
+    private void moveIndexEntries(TableSchema table, Page child) {
+        for (IndexSchema index : table.indexes()) {
+            for (Record record : child.getRecords()) {
+                IndexKey key = indexKey(table, index, record);
+                if (key != null) {
+                    findLeaf(index, key).repoint(key, child.index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives the location of a record
+     */
+    @FunctionalInterface
+    public interface SlotVisitor {
+        /**
+         * @param page The page the record is in
+         * @param slot The slot of the record in the page
+         */
+        void visit(Page page, int slot);
+    }
+
+    /**
+     * Finds the records of an indexed table whose primary keys are in a range, in primary key order. The B+ tree is
+     * descended once to the leaf holding the range's lower bound, and the leaf chain is followed from there until
+     * a key past the upper bound, so only the pages holding keys in the range are read
+     * @param schema The TableSchema of the table
+     * @param range The range of primary keys
+     * @param visitor Receives each record in the range
+     */
+    public void scanKeyRange(TableSchema schema, KeyRange range, SlotVisitor visitor) {
+        if (schema.rootIndex == -1 || range.isEmpty()) {
+            return;
+        }
+        BPlusNode<?> leaf;
+        int position;
+        if (range.low() == null) {
+            leaf = firstLeaf(schema);
+            position = 0;
+        } else {
+            leaf = findLeaf(schema, range.low());
+            position = leaf.lowerBound(range.low(), range.includesLow());
+        }
+        Page page = null;
+        int slot = -1;
+        while (true) {
+            for (; position < leaf.recordCount(); position++) {
+                if (!range.belowHigh(leaf.getValue(position))) {
+                    return;
+                }
+                int pageIndex = leaf.getPageIndex(position);
+                int recordId = leaf.getRecordIndex(position);
+                try {
+                    if (page == null || page.index != pageIndex) {
+                        page = getPageByIndex(schema, pageIndex);
+                        slot = pointedSlot(schema, page, pageIndex, recordId);
+                    } else {
+                        // Records are in key order within a page, so the next key's record is in a later slot
+                        do {
+                            slot++;
+                        } while (slot < page.slotCount() && page.recordId(slot) != recordId);
+                        if (slot == page.slotCount()) {
+                            slot = pointedSlot(schema, page, pageIndex, recordId);
+                        }
+                    }
+                } catch (CorruptedDataException cde) {
+                    throw new UncheckedIOException(cde.getMessage(), cde);
+                }
+                visitor.visit(page, slot);
+            }
+            int next = leaf.nextLeaf();
+            if (next == -1) {
+                return;
+            }
+            leaf = buffer.getNode(schema, next);
+            position = 0;
+        }
+    }
+
+    /**
+     * Receives a pointer to a record, without the record's page being read
+     */
+    @FunctionalInterface
+    public interface PointerVisitor {
+        /**
+         * @param pageIndex The index of the page the record is in
+         * @param recordId The ID of the record in its page
+         */
+        void visit(int pageIndex, int recordId);
+    }
+
+    /**
+     * Finds the records of a table whose values of an indexed attribute are in a range, through the attribute's
+     * secondary index. The index is descended once to the start of the range's lower bound, and its leaf chain is
+     * followed from there. Records are visited in the order of the index, and their pages are not read
+     * @param index The IndexSchema of the index
+     * @param range The range of values
+     * @param visitor Receives the pointer to each record in the range
+     */
+    public void scanIndexRange(IndexSchema index, KeyRange range, PointerVisitor visitor) {
+        if (index.treeRoot == -1 || range.isEmpty()) {
+            return;
+        }
+        BPlusNode<?> leaf;
+        int position;
+        if (range.low() == null) {
+            leaf = firstLeaf(index);
+            position = 0;
+        } else {
+            IndexKey start = IndexKey.first(range.low());
+            leaf = findLeaf(index, start);
+            position = leaf.lowerBound(start, true);
+        }
+        while (true) {
+            for (; position < leaf.recordCount(); position++) {
+                Object value = ((IndexKey) leaf.getValue(position)).value();
+                if (!range.belowHigh(value)) {
+                    return;
+                }
+                if (range.includesLow() || !value.equals(range.low())) {
+                    visitor.visit(leaf.getPageIndex(position), leaf.getRecordIndex(position));
+                }
+            }
+            int next = leaf.nextLeaf();
+            if (next == -1) {
+                return;
+            }
+            leaf = buffer.getNode(index, next);
+            position = 0;
+        }
+    }
+
+    /**
+     * Deletes a record from a table. In an indexed table, the record is replaced with a tombstone and its key is
+     * removed from the B+ tree, so no other record moves and no other pointer needs to change. Otherwise, the
+     * record is removed from its page, and the records after it move up a slot
+     * @param schema The TableSchema of the table the record is in
+     * @param page The page the record is in
+     * @param slot The slot of the record in the page
+     */
+    public void deleteRecord(TableSchema schema, Page page, int slot) {
+        if (!isIndexingEnabled()) {
+            Record deleted = page.removeRecord(slot);
+            schema.decrementRecordCount();
+            if (schema.uniqueKeys() != null) {
+                schema.uniqueKeys().remove(deleted);
+            }
+            return;
+        }
+        page.freeze();
+        Record deleted = page.tombstone(slot);
+        schema.decrementRecordCount();
+        Object key = deleted.get(schema.primaryKey);
+        BPlusNode<?> leaf = findLeaf(schema, key);
+        leaf.removeRecord(key);
+        if (leaf.size() == 1) {
+            // A leaf with only its null pointer would be mistaken for an internal node, so remove it from the tree
+            removeLeaf(schema, leaf, key);
+        }
+        for (IndexSchema index : schema.indexes()) {
+            removeIndexEntry(schema, index, deleted);
+        }
+        page.unfreeze();
+    }
+
+    /**
+     * Removes a leaf node whose record pointers were all deleted from a table's B+ tree. The previous leaf is
+     * linked to the next one, and any ancestors left without children are removed as well. The node's slot in
+     * the index file is not reused until the table is vacuumed
+     * @param schema The TableSchema of the table
+     * @param leaf The empty leaf node
+     * @param key A key which was in the leaf, used to find the previous leaf
+     */
+    private void removeLeaf(TableSchema schema, BPlusNode<?> leaf, Object key) {
+        if (leaf.isRootNode()) {
+            leaf.replacePointers(new ArrayList<>());
+            return;
+        }
+        // The previous leaf is the last leaf under the closest branch to the left of the path to this one
+        int leftBranch = -1;
+        BPlusNode<?> node = buffer.getNode(schema, schema.treeRoot);
+        while (node.index != leaf.index) {
+            int position = node.childPosition(key);
+            if (position > 0) {
+                leftBranch = node.getPageIndex(position - 1);
+            }
+            node = buffer.getNode(schema, node.getPageIndex(position));
+        }
+        if (leftBranch != -1) {
+            BPlusNode<?> previous = buffer.getNode(schema, leftBranch);
+            while (!previous.isLeafNode()) {
+                previous = buffer.getNode(schema, previous.nullPointer());
+            }
+            previous.setNextLeaf(leaf.nullPointer());
+        }
+        // Remove the leaf from its parent, then any ancestor which that leaves without children
+        BPlusNode<?> child = leaf;
+        BPlusNode<?> parent = buffer.getNode(schema, child.parent);
+        parent.removeChild(child.index);
+        while (parent.size() == 0 && !parent.isRootNode()) {
+            child = parent;
+            parent = buffer.getNode(schema, child.parent);
+            parent.removeChild(child.index);
+        }
+    }
+
+    /**
+     * Removes the tombstones from a page. In an indexed table, the page is given record IDs first, so the B+ tree
+     * pointers to the records that move stay valid
+     * @param schema The TableSchema of the table the page is in
+     * @param page The page being compacted
+     */
+    public void compactPage(TableSchema schema, Page page) {
+        if (page.deadSlots() == 0) {
+            return;
+        }
+        if (isIndexingEnabled()) {
+            page.useRecordIds();
+        }
+        page.compact();
+    }
+
     /**
      * Validate a given B+ Tree, performing splits on overfull nodes.
      * @param node the root of the tree
@@ -345,19 +1039,18 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
 i hate generics i hate generics i hate generics i hate generics i hate generics i hate generics i hate generics
 i hate generics i hate generics i hate generics i hate generics i hate generics i hate generics i hate generics
              */
-            int splitIndex = (node.size())/2;
+            // Keep at least two pointers on each side, so neither node is left with only its null pointer
+            int splitIndex = Math.clamp((long) node.size() * schema.splitRatio / 100, 2, node.size() - 2);
             ArrayList<BPlusPointer<?>> leftSide = new ArrayList<>();
             ArrayList<BPlusPointer<?>> rightSide = new ArrayList<>();
 
             try{
-                File file = schema.indexFile();
-
                 // Split root's BPP amongst two child nodes and has root point to them instead
                 ArrayList<? extends BPlusPointer<?>> pointers = node.getPointers();
                 if(node.isRootNode()){
                     // Create child nodes and add them to the buffer
-                    int leftIndex = addPage(file);
-                    int rightIndex = addPage(file);
+                    int leftIndex = allocateNode(schema);
+                    int rightIndex = allocateNode(schema);
 
                     leftSide.addAll(pointers.subList(0, splitIndex));
                     rightSide.addAll(pointers.subList(splitIndex, pointers.size()));
@@ -384,7 +1077,7 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
                     BPlusPointer<?> rightPtr = rightSide.getFirst();
                     Object rightValue = rightPtr.getValue();
                     while (!rightPtr.isRecordPointer()) {
-                        rightPtr = buffer.getNode(schema, rightPtr.getPageIndex()).getPointers().getFirst();
+                        rightPtr = buffer.getNode(schema, rightPtr.getPageIndex()).getPointer(0);
                         rightValue = rightPtr.getValue();
                     }
                     ArrayList<BPlusPointer<?>> newPointers = new ArrayList<>();
@@ -393,7 +1086,7 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
                     node.replacePointers(newPointers);
                 }
                 else {
-                    int rightIndex = addPage(file);
+                    int rightIndex = allocateNode(schema);
                     // Divide the pointers amongst the two nodes
                     leftSide.addAll(pointers.subList(0, splitIndex));
                     if (node.isLeafNode()) {
@@ -419,7 +1112,7 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
                     BPlusPointer<?> rightPtr = rightSide.getFirst();
                     Object rightValue = rightPtr.getValue();
                     while (!rightPtr.isRecordPointer()) {
-                        rightPtr = buffer.getNode(schema, rightPtr.getPageIndex()).getPointers().getFirst();
+                        rightPtr = buffer.getNode(schema, rightPtr.getPageIndex()).getPointer(0);
                         rightValue = rightPtr.getValue();
                     }
                     parent.splitPointer(rightValue, rightIndex);
@@ -460,7 +1153,7 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
 
     public void displayTree(String tableName){
         TableSchema schema = catalog.getTableSchema(tableName);
-        displayTree(schema, buffer.getNode(schema, schema.rootIndex), "");
+        displayTree(schema, buffer.getNode(schema, schema.treeRoot), "");
     }
 
     private void displayTree(TableSchema schema, BPlusNode<?> root, String prefix) {
@@ -476,15 +1169,27 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
     }
 
     /**
-     * Inserts a record at the end of the table, regardless of key ordering
+     * Inserts a record at the end of the table, regardless of key ordering. Pages are filled to the table's fill
+     * factor before a new one is started
      * @param schema The TableSchema of the table the record is being inserted into
      * @param record The record to insert
      */
     public void fastInsert(TableSchema schema, Record record) {
+        appendRecord(schema, record, schema.fillBytes());
+    }
+
+    /**
+     * Inserts a record at the end of the table, regardless of key ordering. If adding the record would put more than
+     * a given number of bytes in the last page, it is put in a new page instead
+     * @param schema The TableSchema of the table the record is being inserted into
+     * @param record The record to insert
+     * @param fillBytes The most bytes a page can be filled to, unless it holds a single record
+     */
+    private void appendRecord(TableSchema schema, Record record, int fillBytes) {
         // If table has no pages, make a new page and insert it into the buffer
         if (schema.rootIndex == -1) {
-            Page firstPage = new Page(0, 0, schema);
             try {
+                Page firstPage = new Page(allocatePage(schema, -1), 0, schema);
                 firstPage.save();
                 buffer.insert(firstPage);
             } catch (IOException ioe) {
@@ -494,15 +1199,17 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
         }
         // Get last page and insert record
         Page lastPage = getPage(schema, schema.pageCount() - 1);
-        lastPage.records.add(record);
+        boolean fits = lastPage.hasRoomFor(record, schema.pageSize - fillBytes);
+        lastPage.addRecord(-1, record);
         schema.incrementRecordCount();
 
-        // If the record is now oversize, remove and insert into a new page
-        if (lastPage.pageDataSize() > catalog.pageSize()) {
-            lastPage.records.removeLast();
+        // If the page might now be oversize, measure it. If it is, remove the record and insert it into a new page
+        if (!fits && lastPage.recordCount() > 1 && lastPage.pageDataSize() > fillBytes) {
+            lastPage.removeRecord(lastPage.slotCount() - 1);
+            lastPage.pageDataSize();  // The free space map only knew the page was full, not by how much
             int pageIndex;
             try {
-                pageIndex = addPage(schema.tableFile());
+                pageIndex = allocatePage(schema, lastPage.index);
             } catch (IOException e) {
                 System.err.println(e.getMessage());
                 return;
@@ -510,8 +1217,7 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
             // Create Page with new record and update catalog page mapping
             ArrayList<Record> recordList = new ArrayList<>();
             recordList.add(record);
-            Page newPage = new Page(pageIndex, lastPage.index + 1, recordList, schema);
-            schema.insertPage(newPage.pageNumber, newPage.index);
+            Page newPage = new Page(pageIndex, lastPage.pageNumber() + 1, recordList, schema);
             // Insert the new page into the buffer
             try {
                 buffer.insert(newPage);
@@ -522,6 +1228,246 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
         }
     }
 
+    /**
+     * Inserts a record at the end of a table being bulk loaded, filling each page to VACUUM_FILL of the page size,
+     * or the table's fill factor if that is lower. Records must be loaded in primary key order, and the table must
+     * not have a B+ tree; call finishLoad() once every record has been loaded
+     * @param schema The TableSchema of the table being loaded
+     * @param record The record to insert
+     */
+    public void loadRecord(TableSchema schema, Record record) {
+        appendRecord(schema, record, Math.min((int) (schema.pageSize * VACUUM_FILL), schema.fillBytes()));
+    }
+
+    /**
+     * Finishes a bulk load. If indexing is on, the table's B+ tree is built from the bottom up, with nodes filled
+     * as full as the pages were. Space the table's files grew into but did not use is given back
+     * @param schema The TableSchema of the loaded table
+     * @throws IOException If the index file could not be written
+     */
+    public void finishLoad(TableSchema schema) throws IOException {
+        if (isIndexingEnabled() && schema.rootIndex != -1) {
+            buildTree(schema, Math.min(VACUUM_FILL, schema.fillFactor / 100.0));
+            rebuildIndexes(schema);
+        }
+        trimFiles(schema);
+    }
+
+    /**
+     * Rewrites a table so that its pages are stored in the table file in page number order, with each page filled to
+     * VACUUM_FILL of the page size, or the table's fill factor if that is lower. Space left by dropped and under-full pages is given back, so the file shrinks.
+     * If indexing is on, the table's B+ tree is rebuilt to point at the new pages
+     * @param schema The TableSchema of the table being vacuumed
+     * @return The schema of the vacuumed table, which replaces the old schema in the catalog
+     * @throws IOException If the rewritten table could not be created
+     */
+    public TableSchema vacuum(TableSchema schema) throws IOException {
+        TableSchema vacuumed = createTable(getTempTableName(), schema.attributes, schema.options());
+        int pageNumber = 0;
+        Page page = getPage(schema, pageNumber);
+        while (page != null) {
+            for (Record record : page.getRecords()) {
+                loadRecord(vacuumed, record);
+            }
+            pageNumber += 1;
+            page = getPage(schema, pageNumber);
+        }
+        finishLoad(vacuumed);
+        replaceTable(schema, vacuumed);
+        return vacuumed;
+    }
+
+    /**
+     * Throws away a table's B+ tree and builds a new one from its pages, from the bottom up, along with its
+     * secondary indexes. Tombstones and record IDs are removed from the pages first, since nothing points at them
+     * once the old trees are gone. The new tree reuses the old tree's place in the index file
+     * @param schema The TableSchema of the table being reindexed
+     * @throws IOException If the index file could not be written
+     */
+    public void reindex(TableSchema schema) throws IOException {
+        for (int pageNumber = 0; pageNumber < schema.pageCount(); pageNumber++) {
+            getPage(schema, pageNumber).dropRecordIds();
+        }
+        buffer.removeNodes(schema.name);
+        schema.indexSize = 0;
+        schema.treeRoot = -1;
+        finishLoad(schema);
+    }
+
+    /**
+     * Builds the B+ tree of a table from the bottom up. The table's records must already be in primary key order
+     * in pages without tombstones or record IDs, and the table must not have a tree yet
+     * @param schema The TableSchema of the table being indexed
+     * @param fill The fraction of each node's pointers which are filled
+     * @throws IOException If the index file could not be written
+     */
+    private void buildTree(TableSchema schema, double fill) throws IOException {
+        ArrayList<BPlusPointer<?>> pointers = new ArrayList<>(schema.recordCount());
+        for (int pageNumber = 0; pageNumber < schema.pageCount(); pageNumber++) {
+            Page page = getPage(schema, pageNumber);
+            for (int i = 0; i < page.recordCount(); i++) {
+                pointers.add(new BPlusPointer<>(page.getField(i, schema.primaryKey), page.index, i));
+            }
+        }
+        buildTree(schema, pointers, fill);
+    }
+
+    /**
+     * Builds a secondary index of a table from the bottom up. Every record with a value for the indexed attribute
+     * gets an entry, and the entries are sorted before the tree is built. The index must not have a tree yet
+     * @param table The TableSchema of the indexed table
+     * @param index The IndexSchema of the index
+     * @param fill The fraction of each node's pointers which are filled
+     * @throws IOException If the index file could not be written
+     */
+    private void buildIndex(TableSchema table, IndexSchema index, double fill) throws IOException {
+        ArrayList<BPlusPointer<?>> pointers = new ArrayList<>();
+        for (int pageNumber = 0; pageNumber < table.pageCount(); pageNumber++) {
+            Page page = getPage(table, pageNumber);
+            for (int slot = 0; slot < page.slotCount(); slot++) {
+                Record record = page.slotRecord(slot);
+                IndexKey key = (record == null) ? null : indexKey(table, index, record);
+                if (key != null) {
+                    pointers.add(new BPlusPointer<>(key, page.index, page.recordId(slot)));
+                }
+            }
+        }
+        pointers.sort((first, second) -> ((IndexKey) first.getValue()).compareTo((IndexKey) second.getValue()));
+        buildTree(index, pointers, fill);
+    }
+
+    /**
+     * Throws away the secondary indexes of a table and builds them again from its pages. Used after anything that
+     * moves every record of the table, like a vacuum or a reindex
+     * @param table The TableSchema of the indexed table
+     * @throws IOException If an index file could not be written
+     */
+    private void rebuildIndexes(TableSchema table) throws IOException {
+        for (IndexSchema index : table.indexes()) {
+            buffer.removeNodes(index.name);
+            index.indexSize = 0;
+            index.treeRoot = -1;
+            buildIndex(table, index, Math.min(VACUUM_FILL, table.fillFactor / 100.0));
+            trimFiles(index);
+        }
+    }
+
+    /**
+     * Builds a B+ tree from the bottom up out of the pointers to every record, which must already be sorted by
+     * value. Nodes are allocated one level at a time and written straight to the index file in the order they
+     * were allocated, so the file is written sequentially instead of through the buffer
+     * @param schema The TableSchema of the table, or the IndexSchema of the index, the tree belongs to
+     * @param records The record pointers, in order
+     * @param fill The fraction of each node's pointers which are filled
+     * @throws IOException If the index file could not be written
+     */
+    private void buildTree(TableSchema schema, ArrayList<BPlusPointer<?>> records, double fill) throws IOException {
+        int maxPointers = (this.n != -1) ? this.n : BPlusNode.maxPointers(schema);
+        int nodeFill = Math.max(3, (int) (maxPointers * fill));  // Pointers per node, including the null pointer
+        // Fill the leaves in order. Each leaf's null pointer points at the next leaf
+        ArrayList<Integer> nodeIndices = new ArrayList<>();
+        ArrayList<ArrayList<BPlusPointer<?>>> nodePointers = new ArrayList<>();
+        ArrayList<Object> firstKeys = new ArrayList<>();
+        ArrayList<BPlusPointer<?>> leaf = null;
+        for (BPlusPointer<?> record : records) {
+            if (leaf == null || leaf.size() == nodeFill - 1) {
+                int leafIndex = allocateNode(schema);
+                if (leaf != null) {
+                    leaf.add(new BPlusPointer<>(null, leafIndex));
+                }
+                leaf = new ArrayList<>();
+                nodeIndices.add(leafIndex);
+                nodePointers.add(leaf);
+                firstKeys.add(record.getValue());
+            }
+            leaf.add(record);
+        }
+        if (leaf == null) {
+            return;
+        }
+        leaf.add(new BPlusPointer<>(null, -1));
+        // Add levels of internal nodes until a level has only one node, which becomes the root. Children are spread
+        // evenly between the nodes of a level so the last node is not left nearly empty
+        while (nodeIndices.size() > 1) {
+            int childCount = nodeIndices.size();
+            int parentCount = (childCount + nodeFill - 1) / nodeFill;
+            ArrayList<Integer> parentIndices = new ArrayList<>();
+            ArrayList<ArrayList<BPlusPointer<?>>> parentPointers = new ArrayList<>();
+            ArrayList<Object> parentKeys = new ArrayList<>();
+            int[] parentOf = new int[childCount];
+            for (int p = 0; p < parentCount; p++) {
+                int start = (int) ((long) p * childCount / parentCount);
+                int end = (int) ((long) (p + 1) * childCount / parentCount);
+                int parentIndex = allocateNode(schema);
+                ArrayList<BPlusPointer<?>> pointers = new ArrayList<>();
+                for (int c = start; c < end; c++) {
+                    // A child holds every value below the first value of the child after it
+                    Object value = (c < end - 1) ? firstKeys.get(c + 1) : null;
+                    pointers.add(new BPlusPointer<>(value, nodeIndices.get(c)));
+                    parentOf[c] = parentIndex;
+                }
+                parentIndices.add(parentIndex);
+                parentPointers.add(pointers);
+                parentKeys.add(firstKeys.get(start));
+            }
+            for (int c = 0; c < childCount; c++) {
+                new BPlusNode<>(schema, nodeIndices.get(c), nodePointers.get(c), parentOf[c], true).save();
+            }
+            nodeIndices = parentIndices;
+            nodePointers = parentPointers;
+            firstKeys = parentKeys;
+        }
+        new BPlusNode<>(schema, nodeIndices.getFirst(), nodePointers.getFirst(), -1, true).save();
+        schema.treeRoot = nodeIndices.getFirst();
+    }
+
+    /**
+     * Creates a secondary index on an attribute of a table, and builds it from the table's records
+     * @param table The TableSchema of the table
+     * @param indexName The name of the index, which must not already be used by another index of the table
+     * @param column The index of the attribute being indexed. This must not be the primary key
+     * @param unique `true` if the index backs a unique attribute
+     * @throws IOException If the index file could not be created or written
+     */
+    public void createIndex(TableSchema table, String indexName, int column, boolean unique) throws IOException {
+        IndexSchema index = catalog.createIndexSchema(table, indexName, column, unique);
+        buildIndex(table, index, Math.min(VACUUM_FILL, table.fillFactor / 100.0));
+        trimFiles(index);
+        catalog.save();
+    }
+
+    /**
+     * Creates the unique index of every unique attribute of a table besides its primary key which does not have
+     * one yet. The indexes are named `<attribute>_key`
+     * @param table The TableSchema of the table
+     * @throws IOException If an index file could not be created or written
+     */
+    public void createUniqueIndexes(TableSchema table) throws IOException {
+        for (int column = 0; column < table.attributes.size(); column++) {
+            Attribute attr = table.attributes.get(column);
+            if (attr.unique && !attr.primaryKey && table.getUniqueIndex(column) == null) {
+                createIndex(table, attr.name + "_key", column, true);
+            }
+        }
+    }
+
+    /**
+     * Drops a secondary index of a table, freeing the space its tree took up
+     * @param table The TableSchema of the table
+     * @param index The IndexSchema of the index being dropped
+     * @throws IOException If the catalog could not be saved
+     */
+    public void dropIndex(TableSchema table, IndexSchema index) throws IOException {
+        buffer.removeNodes(index.name);
+        if (index.tablespace() != null) {
+            shortenChain(index.tablespace(), index.nodeExtents(), 0);
+        } else {
+            index.indexFile().delete();
+        }
+        table.indexes().remove(index);
+        catalog.save();
+    }
+
     /**
      * Creates a table with a given name in the catalog and creates a file for it. Primary key
      * requirements are not checked
@@ -533,6 +1479,30 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
         return catalog.createTableSchema(tableName, attributes);
     }
 
+    /**
+     * Creates a table with a given name and page layout in the catalog and creates a file for it. Primary key
+     * requirements are not checked
+     * @param tableName The name of the table
+     * @param attributes The list of attributes in each record of the table
+     * @param layout The way records are arranged inside the table's pages
+     * @throws IOException If an error is encountered when creating the table file
+     */
+    public TableSchema createTable(String tableName, ArrayList<Attribute> attributes, PageLayout layout) throws IOException {
+        return catalog.createTableSchema(tableName, attributes, layout);
+    }
+
+    /**
+     * Creates a table with a given name and storage options in the catalog and creates a file for it. Primary key
+     * requirements are not checked
+     * @param tableName The name of the table
+     * @param attributes The list of attributes in each record of the table
+     * @param options The table's page layout, page size, fill factor and split ratio
+     * @throws IOException If an error is encountered when creating the table file
+     */
+    public TableSchema createTable(String tableName, ArrayList<Attribute> attributes, TableOptions options) throws IOException {
+        return catalog.createTableSchema(tableName, attributes, options);
+    }
+
     /**
      * Removes a table from the database
      * @param tableName The name of the table to drop
@@ -544,11 +1514,29 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
         }
         // Clear buffer
         buffer.removeTable(tableName);
+        TableSchema schema = catalog.getTableSchema(tableName);
+        for (IndexSchema index : schema.indexes()) {
+            buffer.removeNodes(index.name);
+        }
+        if (schema.tablespace() != null) {
+            // Tables in a tablespace have no files of their own, so dropping one only frees its extents
+            freeExtents(schema);
+            schema.overflowFile().delete();  // Only exists if a value overflowed
+            catalog.removeTableSchema(tableName);
+            if (!Character.isDigit(tableName.charAt(0))) {
+                catalog.save();  // Temp tables are wiped on startup anyway, so their drops are saved with the next save
+            }
+            return true;
+        }
         File dataFile = new File(this.catalog.getFilePath().getParent() + File.separator + tableName + ".bin");
         try {
             if(isIndexingEnabled()){
                 catalog.getTableSchema(tableName).indexFile().delete();
             }
+            for (IndexSchema index : schema.indexes()) {
+                index.indexFile().delete();
+            }
+            catalog.getTableSchema(tableName).overflowFile().delete();  // Only exists if a value overflowed
             if (!dataFile.delete()) { return false; }
         } catch (Exception e) {
             throw new IOException("Encountered an error while deleting table file:" + e.getMessage());
@@ -558,21 +1546,69 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
         return true;
     }
 
+    /**
+     * Returns every extent of a table in a tablespace to the free list
+     * @param schema The TableSchema of the table
+     */
+    private void freeExtents(TableSchema schema) {
+        shortenChain(schema.tablespace(), schema.pageExtents(), 0);
+        shortenChain(schema.tablespace(), schema.nodeExtents(), 0);
+        for (IndexSchema index : schema.indexes()) {
+            shortenChain(schema.tablespace(), index.nodeExtents(), 0);
+        }
+    }
+
     /**
      * Removes a page from a table
      * @param page The page object being removed
      */
     public void dropPage(Page page) {
-        TableSchema schema = page.getTableSchema();
+        TableSchema schema = catalog.getTableSchema(page.getTableName());  // getTableSchema() on Page is a copy
         // Remove page
         buffer.remove(page);
-        schema.removePage(page.pageNumber);  // Decrements existing pages as well
+        try {
+            page.freeOverflowPages();
+        } catch (IOException ioe) {
+            System.err.println("Failed to free overflow pages of " + page + ": " + ioe.getMessage());
+        }
+        int pageNumber = page.pageNumber();
+        schema.removePage(pageNumber);  // Shifts subsequent pages forward as well
+        schema.setZoneMap(page.index, null);
         schema.decrementPageCount();
         // If page was root, get the new page 0 and set it as root
-        if (page.pageNumber == 0) {
+        if (pageNumber == 0) {
             schema.rootIndex = schema.getIndex(0);
         }
-        buffer.refreshPageNumbers(schema); // Resync pageNumbers for buffered pages
+    }
+
+    /**
+     * Adds an attribute to the end of a table. The table's pages are not rewritten; records written before this are
+     * given the attribute's default value as they are read
+     * @param schema The schema of the table
+     * @param attribute The new attribute
+     * @throws IOException If the table's buffered pages could not be written out first
+     */
+    public void addAttribute(TableSchema schema, Attribute attribute) throws IOException {
+        // Buffered pages were decoded with the old attributes, so they have to be written out under them
+        buffer.saveTable(schema.name);
+        schema.addAttribute(attribute);
+    }
+
+    /**
+     * Drops an attribute from a table, along with any index on it. The table's pages are not rewritten; the
+     * attribute is left out of records written before this as they are read
+     * @param schema The schema of the table
+     * @param column The index of the attribute being dropped. This must not be the primary key
+     * @throws IOException If the table's buffered pages could not be written out first
+     */
+    public void dropAttribute(TableSchema schema, int column) throws IOException {
+        for (IndexSchema index : new ArrayList<>(schema.indexes())) {
+            if (index.column == column) {
+                dropIndex(schema, index);
+            }
+        }
+        buffer.saveTable(schema.name);
+        schema.dropAttribute(column);
     }
 
     /**
@@ -587,12 +1623,21 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
         // Update the schema in the catalog
         File oldSourceFile = sourceSchema.tableFile(); // This changes when you update the schema name
         File oldTreeFile = sourceSchema.indexFile();
+        File oldOverflowFile = sourceSchema.overflowFile();
         catalog.removeTableSchema(sourceSchema.name);
         sourceSchema.name = targetSchema.name;
         catalog.setTableSchema(targetSchema.name, sourceSchema);
+        if (sourceSchema.tablespace() != null) {
+            // The source's pages are already in the tablespace, so only the target's extents need to be freed
+            freeExtents(targetSchema);
+            moveOverflowFile(oldOverflowFile, targetSchema.overflowFile());
+            moveIndexes(targetSchema, sourceSchema);
+            return;
+        }
         // Verify all files exist before doing anything destructive
         File targetFile = targetSchema.tableFile();
         File targetTree = targetSchema.indexFile();
+        File targetOverflow = targetSchema.overflowFile();
         if (!targetFile.exists()) {
             System.err.println("Could not locate table file `" + targetFile.getAbsolutePath() + "`");
             return;
@@ -621,6 +1666,9 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
                     "` to `" + targetFile.getAbsolutePath() + "'");
             return;
         }
+        if (!moveOverflowFile(oldOverflowFile, targetOverflow)) {
+            return;
+        }
         if (isIndexingEnabled()) {
             if (!targetTree.delete()) {
                 System.err.println("Failed to delete index file `" + targetTree.getAbsolutePath() + "`");
@@ -631,6 +1679,41 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
                         "` to `" + targetTree.getAbsolutePath() + "'");
             }
         }
+        moveIndexes(targetSchema, sourceSchema);
+    }
+
+    /**
+     * Moves the secondary indexes of a replaced table over to the table replacing it, and rebuilds them to point at
+     * its records
+     * @param targetSchema The TableSchema of the table that was replaced
+     * @param sourceSchema The TableSchema of the table that replaced it
+     */
+    private void moveIndexes(TableSchema targetSchema, TableSchema sourceSchema) {
+        sourceSchema.indexes().addAll(targetSchema.indexes());
+        try {
+            rebuildIndexes(sourceSchema);
+        } catch (IOException ioe) {
+            System.err.println("Failed to rebuild indexes of table `" + sourceSchema.name + "`: " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Replaces one table's overflow file with another's. Overflow files only exist once a value has overflowed
+     * @param sourceOverflow The overflow file being kept
+     * @param targetOverflow The overflow file being replaced
+     * @return `true` if the files were replaced; `false` if there was an error
+     */
+    private boolean moveOverflowFile(File sourceOverflow, File targetOverflow) {
+        if (targetOverflow.exists() && !targetOverflow.delete()) {
+            System.err.println("Failed to delete overflow file `" + targetOverflow.getAbsolutePath() + "`");
+            return false;
+        }
+        if (sourceOverflow.exists() && !sourceOverflow.renameTo(targetOverflow)) {
+            System.err.println("Failed to rename overflow file `" + sourceOverflow.getAbsolutePath() +
+                    "` to `" + targetOverflow.getAbsolutePath() + "'");
+            return false;
+        }
+        return true;
     }
 
     /**
@@ -652,6 +1735,28 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
         System.out.println("Table name: " + tableName);
         System.out.println("Table schema: ");
         System.out.println(schema);
+        System.out.println("Page layout: " + schema.layout);
+        if (schema.pageSize != catalog.pageSize() || schema.fillFactor != TableOptions.DEFAULT_FILL_FACTOR ||
+                schema.splitRatio != TableOptions.DEFAULT_SPLIT_RATIO) {
+            System.out.println("Page size: " + schema.pageSize + ", fill factor: " + schema.fillFactor +
+                    "%, split ratio: " + schema.splitRatio + "%");
+        }
+        if (schema.heap) {
+            System.out.println("Organization: heap");
+        }
+        if (!schema.indexes().isEmpty()) {
+            StringBuilder indexes = new StringBuilder("Indexes: ");
+            for (IndexSchema index : schema.indexes()) {
+                if (index != schema.indexes().getFirst()) {
+                    indexes.append(", ");
+                }
+                indexes.append(index.indexName).append("(").append(schema.attributes.get(index.column).name).append(")");
+                if (index.unique) {
+                    indexes.append(" unique");
+                }
+            }
+            System.out.println(indexes);
+        }
         System.out.println("Pages: " + schema.pageCount());
         System.out.println("Records: " + schema.recordCount());
     }
@@ -692,19 +1797,142 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
     }
 
     /**
-     * Adds a single page to the given file. Returns the index of the page that would occupy the added space
-     * @param file the file to add a page to
-     * @return The index of the added page
+     * Sets the number of pages table and index files grow by when they run out of room. This is also how far from
+     * its neighbour a new page can be placed before the first unused page anywhere in the file is used instead
+     * @param extentPages The number of pages in an extent
+     */
+    public void setExtentPages(int extentPages) {
+        this.extentPages = Math.max(1, extentPages);
+    }
+
+    /**
+     * Picks the page index for a new page in a table, growing the table file if needed. An unused index close
+     * to the new page's logical neighbour is preferred, so pages next to each other in page order tend to stay
+     * next to each other in the file. Otherwise, the first unused index is reused, or a new one is added to the end
+     * @param schema The TableSchema of the table the page is being added to
+     * @param nearIndex The index of the page the new page will be next to in page order
+     * @return The index of the new page
+     * @throws IOException If the table file could not be grown
      */
-    private int addPage(File file) throws IOException {
-        int newIndex = (int) file.length() / catalog.pageSize();  // Calculate index before expanding table
+    private int allocatePage(TableSchema schema, int nearIndex) throws IOException {
+        int pageIndex = schema.freeSpace().nearestUnused(nearIndex, extentPages);
+        if (pageIndex == -1) {
+            pageIndex = schema.getFirstPageGap();
+        }
+        if (pageIndex == -1) {
+            pageIndex = schema.slotCount();
+        }
+        if (schema.tablespace() != null) {
+            extendChain(schema.tablespace(), schema.pageExtents(), pageIndex + 1);
+        } else {
+            reserve(schema.tableFile(), Integer.BYTES, pageIndex + 1, schema.pageSize);  // Table files start with a page count
+        }
+        return pageIndex;
+    }
+
+    /**
+     * Adds a node to a table's B+ tree file, growing the file if needed. Nodes are never freed, so the new node
+     * always goes after every existing one
+     * @param schema The TableSchema of the table being indexed
+     * @return The index of the new node
+     * @throws IOException If the index file could not be grown
+     */
+    private int allocateNode(TableSchema schema) throws IOException {
+        int pageSize = schema.pageSize;
+        if (schema.indexSize == -1 && schema.tablespace() != null) {
+            schema.indexSize = schema.nodeExtents().size() * schema.tablespace().extentPages();
+        } else if (schema.indexSize == -1) {
+            // Files are trimmed to their last node when saved, so every node in the file is in use
+            schema.indexSize = (int) ((schema.indexFile().length() + pageSize - 1) / pageSize);
+        }
+        int nodeIndex = schema.indexSize++;
+        if (schema.tablespace() != null) {
+            extendChain(schema.tablespace(), schema.nodeExtents(), nodeIndex + 1);
+        } else {
+            reserve(schema.indexFile(), 0, nodeIndex + 1, pageSize);
+        }
+        return nodeIndex;
+    }
+
+    /**
+     * Makes sure a file has room for a number of pages. If it does not, it is grown with zeros to the next
+     * multiple of the extent size in a single write
+     * @param file The file being grown
+     * @param headerSize The number of bytes at the start of the file before the first page
+     * @param pages The number of pages the file needs room for
+     * @param pageSize The size of the pages in the file
+     * @throws IOException If the file could not be written to
+     */
+    private void reserve(File file, int headerSize, int pages, int pageSize) throws IOException {
+        long length = file.length();
+        if (length >= headerSize + (long) pages * pageSize) {
+            return;
+        }
+        int extents = (pages + extentPages - 1) / extentPages;
+        long newLength = headerSize + (long) extents * extentPages * pageSize;
         try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
-            out.seek(file.length());
-            out.write(new byte[catalog.pageSize()]);
+            out.seek(length);
+            out.write(new byte[(int) (newLength - length)]);
         } catch (FileNotFoundException fnf) {
             throw new IOException("Could not locate file `" + file.getAbsolutePath() + "`");
         }
-        return newIndex;
+    }
+
+    /**
+     * Makes sure a chain of extents in the tablespace has room for a number of pages, adding extents to it if not
+     * @param tablespace The tablespace the chain is in
+     * @param chain The chain of extents
+     * @param pages The number of pages the chain needs room for
+     * @throws IOException If the tablespace file could not be grown
+     */
+    private void extendChain(Tablespace tablespace, ArrayList<Integer> chain, int pages) throws IOException {
+        while ((long) chain.size() * tablespace.extentPages() < pages) {
+            chain.add(tablespace.allocateExtent());
+        }
+    }
+
+    /**
+     * Frees the extents at the end of a chain which are past a number of pages
+     * @param tablespace The tablespace the chain is in
+     * @param chain The chain of extents
+     * @param pages The number of pages the chain needs to keep
+     */
+    private void shortenChain(Tablespace tablespace, ArrayList<Integer> chain, int pages) {
+        int keep = (pages + tablespace.extentPages() - 1) / tablespace.extentPages();
+        while (chain.size() > keep) {
+            tablespace.freeExtent(chain.removeLast());
+        }
+    }
+
+    /**
+     * Cuts off the part of a table's last extents which no page or node has been allocated in yet, so files
+     * on disk end at their last page. In a tablespace, the unused extents are freed instead
+     * @param schema The TableSchema of the table whose files are being trimmed
+     */
+    private void trimFiles(TableSchema schema) {
+        if (schema.tablespace() != null) {
+            shortenChain(schema.tablespace(), schema.pageExtents(), schema.slotCount());
+            if (schema.indexSize != -1) {
+                shortenChain(schema.tablespace(), schema.nodeExtents(), schema.indexSize);
+            }
+            return;
+        }
+        try {
+            trim(schema.tableFile(), Integer.BYTES + (long) schema.slotCount() * schema.pageSize);
+            if (schema.indexSize != -1) {
+                trim(schema.indexFile(), (long) schema.indexSize * schema.pageSize);
+            }
+        } catch (IOException ioe) {
+            System.err.println("Failed to trim files of table `" + schema.name + "`: " + ioe.getMessage());
+        }
+    }
+
+    private void trim(File file, long length) throws IOException {
+        if (file.exists() && file.length() > length) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(length);
+            }
+        }
     }
 
     /**
@@ -715,19 +1943,34 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
     }
 
     /**
-     * Writes the buffer and catalog to disk
+     * Writes the buffer and catalog to disk. The buffer is written first, since saving pages updates their zone maps.
+     * Unused space at the end of table files is then trimmed off
      */
     public void save() {
-        try {
-            catalog.save();
-        } catch (IOException e) {
-            System.err.println("ERROR: Failed to save catalog to disk: " + e.getMessage());
-        }
         try {
             buffer.save();
         } catch (IOException ioe) {
             System.err.println(ioe.getMessage());
         }
+        for (String tableName : catalog.getTableNames()) {
+            TableSchema schema = catalog.getTableSchema(tableName);
+            trimFiles(schema);
+            for (IndexSchema index : schema.indexes()) {
+                trimFiles(index);
+            }
+        }
+        if (catalog.tablespace() != null) {
+            try {
+                catalog.tablespace().trim();
+            } catch (IOException ioe) {
+                System.err.println("Failed to trim tablespace: " + ioe.getMessage());
+            }
+        }
+        try {
+            catalog.save();
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to save catalog to disk: " + e.getMessage());
+        }
     }
 
     /**
@@ -738,16 +1981,22 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
      * Query-based table files cannot have names starting with a number, so this will only delete temp tables.
      */
     public void wipeTempTables() throws IOException {
+        // Temp tables in a tablespace have no files, so they are found through the catalog
+        for (String tableName : new ArrayList<>(catalog.getTableNames())) {
+            if (Character.isDigit(tableName.charAt(0)) && catalog.getTableSchema(tableName).tablespace() != null) {
+                dropTable(tableName);
+            }
+        }
         File dbDirectory = catalog.getFilePath().getParentFile();
         File[] fileList = dbDirectory.listFiles();
         if (fileList == null) {
             return;  // This should never happen, but it makes the compiler happy
         }
         for (File file : fileList) {
-            if(Character.isDigit(file.getName().charAt(0)) && !file.getName().endsWith(".bpt")){
+            if(Character.isDigit(file.getName().charAt(0)) && file.getName().endsWith(".bin")){
                 dropTable(file.getName().substring(0, file.getName().indexOf('.')));
             }
-            else if(Character.isDigit(file.getName().charAt(0)) && file.getName().endsWith(".bpt")){
+            else if(Character.isDigit(file.getName().charAt(0))){
                 file.delete();
             }
         }
@@ -813,7 +2062,7 @@ i hate generics i hate generics i hate generics i hate generics i hate generics
         pointerList.add(new BPlusPointer<>(null, -1, -1));
         BPlusNode<Integer> root = new BPlusNode<>(fooSchema, 0, pointerList, -1);
         try {
-            addPage(fooSchema.indexFile());
+            allocateNode(fooSchema);
             System.out.println("Inserting root...");
             buffer.insert(root);
             System.out.println("Saving root...");
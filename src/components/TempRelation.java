@@ -0,0 +1,455 @@
+package components;
+
+import exceptions.CustomExceptions.CorruptedDataException;
+import tableData.Attribute;
+import tableData.IndexSchema;
+import tableData.Page;
+import tableData.Record;
+import tableData.TableSchema;
+import where.Evaluator;
+import where.KeyRange;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+/**
+ * An intermediate result of a `select`, made of references to the records of the tables it was built from rather
+ * than copies of them. Each row holds one reference per source table, packing the index of the record's page and its
+ * record ID into a long, and each attribute of the relation is mapped to an attribute of one of the sources. Record IDs
+ * are used rather than slots because a page with record IDs drops its tombstones when it is written out, so its
+ * records' slots can change if it is evicted and read back in.
+ * Joining, filtering and projecting only build new references and mappings, so no record is copied or written to a
+ * temp table until it is output.
+ * <br>
+ * Relations never change once built, so derived relations share their references. The records they read are shared
+ * with the source tables' pages, so anything that needs to change a row must copy it first.
+ */
+public class TempRelation {
+
+    /// The most rows handed to the consumer of forEachBatch() at once
+    private static final int BATCH_ROWS = 256;
+
+    private final StorageManager storageManager;
+    private final TableSchema[] sources;  // The tables the records are read from
+    private final int[] columnSources;    // The source of each attribute of the relation
+    private final int[] sourceColumns;    // The index of each attribute of the relation in its source
+    private final long[] refs;            // One reference per source for each row; `null` for every combination of rows
+    private final int rowCount;           // The number of rows in `refs`
+    public final TableSchema schema;      // Describes the relation's attributes. Never stored in the catalog
+
+    /**
+     * Reads each record of a row, along with the reference to it
+     */
+    @FunctionalInterface
+    private interface RowVisitor {
+        /**
+         * @param rowRefs The reference to the record of each source
+         * @param parts The record of each source. These must not be modified
+         */
+        void visit(long[] rowRefs, Record[] parts);
+    }
+
+    /**
+     * A growable array of row references
+     */
+    private static class RefList {
+        final int width;  // The number of references in each row
+        long[] refs = new long[64];
+        int rows = 0;
+
+        RefList(int width) {
+            this.width = width;
+        }
+
+        void add(long[] rowRefs) {
+            if ((rows + 1) * width > refs.length) {
+                refs = Arrays.copyOf(refs, Math.max((rows + 1) * width, refs.length * 2));
+            }
+            System.arraycopy(rowRefs, 0, refs, rows * width, width);
+            rows++;
+        }
+    }
+
+    /**
+     * Creates a TempRelation holding every record of a table
+     * @param storageManager The storage manager the table's pages are read through
+     * @param table The schema of the table
+     */
+    public TempRelation(StorageManager storageManager, TableSchema table) {
+        this.storageManager = storageManager;
+        this.sources = new TableSchema[]{table};
+        this.columnSources = new int[table.attributes.size()];
+        this.sourceColumns = new int[table.attributes.size()];
+        for (int i = 0; i < sourceColumns.length; i++) {
+            sourceColumns[i] = i;
+        }
+        this.refs = null;
+        this.rowCount = 0;
+        this.schema = table;
+    }
+
+    private TempRelation(TempRelation base, int[] columnSources, int[] sourceColumns, long[] refs, int rowCount,
+                         TableSchema schema) {
+        this.storageManager = base.storageManager;
+        this.sources = base.sources;
+        this.columnSources = columnSources;
+        this.sourceColumns = sourceColumns;
+        this.refs = refs;
+        this.rowCount = rowCount;
+        this.schema = schema;
+    }
+
+    private TempRelation(StorageManager storageManager, TableSchema[] sources, int[] columnSources,
+                         int[] sourceColumns, TableSchema schema) {
+        this.storageManager = storageManager;
+        this.sources = sources;
+        this.columnSources = columnSources;
+        this.sourceColumns = sourceColumns;
+        this.refs = null;
+        this.rowCount = 0;
+        this.schema = schema;
+    }
+
+    /**
+     * Creates the cartesian product of two relations. Neither relation may have been filtered
+     * @param name The name of the product's schema
+     * @param attributes The attributes of the product: those of `outer`, then those of `inner`
+     * @param outer The relation whose pages are read in the outer loop
+     * @param inner The relation whose pages are read in the inner loop
+     * @return A relation holding every combination of a row of `outer` and a row of `inner`
+     * @throws IllegalArgumentException If the attribute names are not distinct
+     */
+    public static TempRelation product(String name, ArrayList<Attribute> attributes, TempRelation outer,
+                                       TempRelation inner) throws IllegalArgumentException {
+        if (outer.refs != null || inner.refs != null) {
+            throw new IllegalArgumentException("Filtered relations cannot be joined");
+        }
+        TableSchema[] sources = Arrays.copyOf(outer.sources, outer.sources.length + inner.sources.length);
+        System.arraycopy(inner.sources, 0, sources, outer.sources.length, inner.sources.length);
+        int[] columnSources = Arrays.copyOf(outer.columnSources, attributes.size());
+        int[] sourceColumns = Arrays.copyOf(outer.sourceColumns, attributes.size());
+        for (int i = 0; i < inner.columnSources.length; i++) {
+            columnSources[outer.columnSources.length + i] = outer.sources.length + inner.columnSources[i];
+            sourceColumns[outer.sourceColumns.length + i] = inner.sourceColumns[i];
+        }
+        TableSchema schema = describe(name, attributes, outer.schema.pageSize);
+        return new TempRelation(outer.storageManager, sources, columnSources, sourceColumns, schema);
+    }
+
+    /**
+     * Creates a schema describing the attributes of a relation. It has no pages and is never added to the catalog
+     */
+    private static TableSchema describe(String name, ArrayList<Attribute> attributes, int pageSize) {
+        return new TableSchema(name, -1, -1, new ArrayList<>(), attributes, "", 0, 0, pageSize);
+    }
+
+    /**
+     * Estimates how many pages have to be read to scan the relation
+     * @return The product of the page counts of its sources
+     */
+    public long pageCount() {
+        long pages = 1;
+        for (TableSchema source : sources) {
+            pages = Math.min(Integer.MAX_VALUE, pages * source.pageCount());
+        }
+        return pages;
+    }
+
+    /**
+     * Creates a relation with only the rows of this one that pass a where clause. Only the attributes the where
+     * clause reads are decoded, and pages of a single table are skipped using their zone maps where possible
+     * @param eval The evaluator of the where clause, built on this relation's schema
+     * @return The filtered relation
+     */
+    public TempRelation filter(Evaluator eval) {
+        boolean[][] columns = sourceFlags(eval.referencedAttributes());
+        // Rows of anything but a whole table are copied into one reused record to be evaluated
+        Record view = isTable() ? null : new Record(new ArrayList<>(Collections.nCopies(columnSources.length, null)));
+        RefList matches = new RefList(sources.length);
+        scan(columns, isTable() ? eval : null, (rowRefs, parts) -> {
+            if (eval.evaluateRecord((view == null) ? parts[0] : fill(view, parts))) {
+                matches.add(rowRefs);
+            }
+        });
+        return new TempRelation(this, columnSources, sourceColumns, matches.refs, matches.rows, schema);
+    }
+
+    /**
+     * Creates a relation with only the records of an indexed table whose primary keys are in a range, in primary
+     * key order. They are found through the table's B+ tree, so pages without keys in the range are never read
+     * @param range The range of primary keys
+     * @return The relation holding the records in the range
+     * @throws IllegalArgumentException If this relation is not a whole table
+     */
+    public TempRelation keyRange(KeyRange range) throws IllegalArgumentException {
+        if (!isTable() || refs != null) {
+            throw new IllegalArgumentException("Only whole tables can be read by key range");
+        }
+        RefList matches = new RefList(1);
+        long[] rowRefs = new long[1];
+        storageManager.scanKeyRange(schema, range, (page, slot) -> {
+            rowRefs[0] = ((long) page.index << 32) | page.recordId(slot);
+            matches.add(rowRefs);
+        });
+        return new TempRelation(this, columnSources, sourceColumns, matches.refs, matches.rows, schema);
+    }
+
+    /**
+     * Creates a relation holding the records of this one, which must be a whole table, whose values of an indexed
+     * attribute are in a range. They are found through the attribute's secondary index, then read a page at a time
+     * in the order of the table, so pages without values in the range are never read
+     * @param index The IndexSchema of the index
+     * @param range The range of values of the indexed attribute
+     * @return The relation holding the records in the range
+     * @throws IllegalArgumentException If this relation is not a whole table
+     */
+    public TempRelation indexRange(IndexSchema index, KeyRange range) throws IllegalArgumentException {
+        if (!isTable() || refs != null) {
+            throw new IllegalArgumentException("Only whole tables can be read by index range");
+        }
+        TableSchema table = sources[0];
+        // Pack each pointer's page number and record ID so sorting them puts them in table order
+        RefList pointers = new RefList(1);
+        long[] pointer = new long[1];
+        storageManager.scanIndexRange(index, range, (pageIndex, recordId) -> {
+            pointer[0] = ((long) table.getPageNumber(pageIndex) << 32) | recordId;
+            pointers.add(pointer);
+        });
+        long[] sorted = Arrays.copyOf(pointers.refs, pointers.rows);
+        Arrays.sort(sorted);
+        long[] matches = new long[sorted.length];
+        int start = 0;
+        while (start < sorted.length) {
+            int pageNumber = (int) (sorted[start] >>> 32);
+            int end = start;
+            while (end < sorted.length && (int) (sorted[end] >>> 32) == pageNumber) {
+                end++;
+            }
+            // Record IDs are not in slot order once records have been added to a page, so sort the page's slots to
+            // read its records in order
+            int pageIndex = table.getIndex(pageNumber);
+            Page page = storageManager.getPageByIndex(table, pageIndex);
+            int[] slots = new int[end - start];
+            try {
+                for (int i = start; i < end; i++) {
+                    slots[i - start] = StorageManager.pointedSlot(table, page, pageIndex, (int) sorted[i]);
+                }
+            } catch (CorruptedDataException cde) {
+                throw new UncheckedIOException(cde.getMessage(), cde);
+            }
+            Arrays.sort(slots);
+            for (int i = start; i < end; i++) {
+                matches[i] = ((long) page.index << 32) | page.recordId(slots[i - start]);
+            }
+            start = end;
+        }
+        return new TempRelation(this, columnSources, sourceColumns, matches, matches.length, schema);
+    }
+
+    /**
+     * Creates a relation with a subset of this one's attributes, sharing its rows
+     * @param name The name of the projection's schema
+     * @param attrIndices The index of each projected attribute in this relation
+     * @param attributes The projected attributes
+     * @return The projection
+     */
+    public TempRelation project(String name, int[] attrIndices, ArrayList<Attribute> attributes) {
+        int[] projSources = new int[attrIndices.length];
+        int[] projColumns = new int[attrIndices.length];
+        for (int i = 0; i < attrIndices.length; i++) {
+            projSources[i] = columnSources[attrIndices[i]];
+            projColumns[i] = sourceColumns[attrIndices[i]];
+        }
+        TableSchema projSchema = describe(name, attributes, schema.pageSize);
+        return new TempRelation(this, projSources, projColumns, refs, rowCount, projSchema);
+    }
+
+    /**
+     * Reads the rows of the relation in order, a batch at a time. Rows of a relation holding a whole table are
+     * that table's records, and should not be modified. All other rows are new records
+     * @param consumer Receives each batch of rows. Batches are never empty, and the list holding them is reused
+     *                 for the next batch
+     */
+    public void forEachBatch(Consumer<ArrayList<Record>> consumer) {
+        ArrayList<Record> batch = new ArrayList<>();
+        boolean[] allColumns = new boolean[schema.attributes.size()];
+        Arrays.fill(allColumns, true);
+        scan(sourceFlags(allColumns), null, (rowRefs, parts) -> {
+            batch.add(isTable() ? parts[0] : fill(new Record(), parts));
+            if (batch.size() == BATCH_ROWS) {
+                consumer.accept(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+
+    /**
+     * Copies the rows of the relation into a new temp table, for steps which need the records themselves
+     * @return The schema of the temp table
+     * @throws IOException If the temp table could not be created
+     */
+    public TableSchema materialize() throws IOException {
+        String name = storageManager.getTempTableName();
+        TableSchema temp = (sources.length == 1)
+                ? storageManager.createTable(name, schema.attributes, sources[0].options())
+                : storageManager.createTable(name, schema.attributes);
+        forEachBatch(records -> {
+            for (Record record : records) {
+                storageManager.fastInsert(temp, record);
+            }
+        });
+        return temp;
+    }
+
+    /**
+     * Checks if the relation is a whole table, whose records are its rows exactly
+     */
+    private boolean isTable() {
+        return schema == sources[0];
+    }
+
+    /**
+     * Sets the values of a record to those of a row
+     * @param row The record being filled. Its values are replaced, or added if it is empty
+     * @param parts The record of each source
+     * @return The filled record
+     */
+    private Record fill(Record row, Record[] parts) {
+        boolean empty = row.size() == 0;
+        for (int i = 0; i < columnSources.length; i++) {
+            Object value = parts[columnSources[i]].get(sourceColumns[i]);
+            if (empty) {
+                row.rowData.add(value);
+            } else {
+                row.rowData.set(i, value);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Translates a flag for each attribute of the relation to flags for the attributes of each source
+     */
+    private boolean[][] sourceFlags(boolean[] columns) {
+        boolean[][] flags = new boolean[sources.length][];
+        for (int s = 0; s < sources.length; s++) {
+            flags[s] = new boolean[sources[s].attributes.size()];
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i]) {
+                flags[columnSources[i]][sourceColumns[i]] = true;
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * Reads every row of the relation, in the order of its references if it has them. Otherwise, every combination
+     * of a page from each source is read with nested loops, and every combination of their records after that
+     * @param columns The attributes of each source that need to be decoded
+     * @param pageFilter An evaluator whose where clause rules out pages of the only source; `null` to read every page
+     * @param visitor Receives each row
+     */
+    private void scan(boolean[][] columns, Evaluator pageFilter, RowVisitor visitor) {
+        long[] rowRefs = new long[sources.length];
+        Record[] parts = new Record[sources.length];
+        if (refs == null) {
+            ArrayList<ArrayList<Record>> pageRecords = new ArrayList<>(Collections.nCopies(sources.length, null));
+            scanPages(0, new Page[sources.length], pageRecords, columns, pageFilter, rowRefs, parts, visitor);
+            return;
+        }
+        Page[] pages = new Page[sources.length];
+        int[] slots = new int[sources.length];
+        for (int row = 0; row < rowCount; row++) {
+            for (int s = 0; s < sources.length; s++) {
+                long ref = refs[row * sources.length + s];
+                int pageIndex = (int) (ref >>> 32);
+                int recordId = (int) ref;
+                if (pages[s] == null || pages[s].index != pageIndex) {
+                    pages[s] = storageManager.getPageByIndex(sources[s], pageIndex);
+                    if (pages[s] == null) {
+                        throw new UncheckedIOException(new CorruptedDataException("Could not read page index " +
+                                pageIndex + " of table `" + sources[s].name + "`"));
+                    }
+                    slots[s] = -1;
+                }
+                // Rows usually reference a page's records in slot order, so the next slot is checked before searching
+                int slot = slots[s] + 1;
+                if (slot >= pages[s].slotCount() || pages[s].recordId(slot) != recordId) {
+                    slot = pages[s].findSlot(recordId);
+                    if (slot == -1) {
+                        throw new UncheckedIOException(new CorruptedDataException("Record " + recordId +
+                                " of page index " + pageIndex + " of table `" + sources[s].name + "` does not exist"));
+                    }
+                }
+                slots[s] = slot;
+                rowRefs[s] = ref;
+                parts[s] = pages[s].slotRecord(slot);
+            }
+            visitor.visit(rowRefs, parts);
+        }
+    }
+
+    private void scanPages(int source, Page[] pages, ArrayList<ArrayList<Record>> pageRecords,
+                           boolean[][] columns, Evaluator pageFilter, long[] rowRefs, Record[] parts,
+                           RowVisitor visitor) {
+        if (source == sources.length) {
+            scanRecords(0, pages, pageRecords, rowRefs, parts, visitor);
+            return;
+        }
+        TableSchema table = sources[source];
+        int pageNumber = 0;
+        int pageIndex = table.getIndex(pageNumber);
+        while (pageIndex != -1) {
+            if (pageFilter == null || !pageFilter.canSkip(table.getZoneMap(pageIndex))) {
+                Page page = storageManager.getPageByIndex(table, pageIndex);
+                if (pageFilter == null || !pageFilter.canSkip(page)) {
+                    pages[source] = page;
+                    pageRecords.set(source, slots(page, columns[source]));
+                    scanPages(source + 1, pages, pageRecords, columns, pageFilter, rowRefs, parts, visitor);
+                }
+            }
+            pageNumber++;
+            pageIndex = table.getIndex(pageNumber);
+        }
+    }
+
+    private void scanRecords(int source, Page[] pages, ArrayList<ArrayList<Record>> pageRecords,
+                             long[] rowRefs, Record[] parts, RowVisitor visitor) {
+        if (source == sources.length) {
+            visitor.visit(rowRefs, parts);
+            return;
+        }
+        ArrayList<Record> records = pageRecords.get(source);
+        for (int slot = 0; slot < records.size(); slot++) {
+            if (records.get(slot) == null) {
+                continue;  // Tombstone
+            }
+            rowRefs[source] = ((long) pages[source].index << 32) | pages[source].recordId(slot);
+            parts[source] = records.get(slot);
+            scanRecords(source + 1, pages, pageRecords, rowRefs, parts, visitor);
+        }
+    }
+
+    /**
+     * Gets the records of a page by their slot, with `null` for tombstones. Pages without tombstones only decode
+     * the requested attributes, since their records' slots are their positions
+     */
+    private static ArrayList<Record> slots(Page page, boolean[] columns) {
+        if (page.deadSlots() == 0) {
+            return page.getRecords(columns);
+        }
+        ArrayList<Record> slots = new ArrayList<>(page.slotCount());
+        for (int slot = 0; slot < page.slotCount(); slot++) {
+            slots.add(page.slotRecord(slot));
+        }
+        return slots;
+    }
+}
@@ -2,6 +2,7 @@ package parsers;
 import components.DatabaseEngine;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Scanner;
 
 /**
@@ -87,8 +88,32 @@ public class DDL {
             System.err.println("Insufficient parameters for 'create table' statement");
             return null;
         }
-        if (!inputList.get(1).equals("table") || !inputList.get(3).equals("(") || !inputList.getLast().equals(")")) {
-            System.err.println("Invalid 'create table' statement: create table <name>(<attr name> <attr type>...);");
+        if (inputList.get(1).equals("index")) {
+            return createIndex(inputList);
+        }
+        if (!inputList.get(1).equals("table") || !inputList.get(3).equals("(")) {
+            System.err.println("Invalid 'create table' statement: create table <name>(<attr name> <attr type>...) [<option> <value>...];");
+            return null;
+        }
+        // Find the parenthesis closing the attribute list. Anything after it is a table option
+        int closeIndex = -1;
+        int depth = 0;
+        for (int i = 3; i < inputList.size() && closeIndex == -1; i++) {
+            if (inputList.get(i).equals("(")) {
+                depth += 1;
+            } else if (inputList.get(i).equals(")")) {
+                depth -= 1;
+                if (depth == 0) {
+                    closeIndex = i;
+                }
+            }
+        }
+        if (closeIndex == -1) {
+            System.err.println("Invalid 'create table' statement: unclosed parenthesis.");
+            return null;
+        }
+        if ((inputList.size() - closeIndex - 1) % 2 != 0) {
+            System.err.println("Invalid 'create table' statement: table options must be `<option> <value>` pairs");
             return null;
         }
         // Read basic table data
@@ -98,7 +123,7 @@ public class DDL {
         String tableName = inputList.get(2);
         ArrayList<ArrayList<String>> attributeList = new ArrayList<>();
         ArrayList<String> attributeTokens = new ArrayList<>();
-        for (int i = 4; i < inputList.size() - 1; i++) {
+        for (int i = 4; i < closeIndex; i++) {
             if (inputList.get(i).equals(",")) {
                 attributeList.add(attributeTokens);
                 attributeTokens = new ArrayList<>();
@@ -107,8 +132,12 @@ public class DDL {
             }
         }
         attributeList.add(attributeTokens);
+        HashMap<String, String> options = new HashMap<>();
+        for (int i = closeIndex + 1; i < inputList.size(); i += 2) {
+            options.put(inputList.get(i), inputList.get(i + 1));
+        }
         try {
-            engine.createTable(tableName, attributeList);
+            engine.createTable(tableName, attributeList, options);
         } catch (Exception e) {
             System.err.println(e.getMessage());
         }
@@ -116,7 +145,23 @@ public class DDL {
     }
 
     /**
-     * Performs a drop table command
+     * Performs a create index command
+     *
+     * @param inputList The list of tokens representing the user's input
+     * @return The output of the command. 'null' if command produces no output
+     */
+    private String createIndex(ArrayList<String> inputList) {
+        if (inputList.size() != 8 || !inputList.get(3).equals("on") || !inputList.get(5).equals("(") ||
+                !inputList.get(7).equals(")")) {
+            System.err.println("Invalid 'create index' statement: create index <name> on <table>(<attr name>);");
+            return null;
+        }
+        engine.createIndex(inputList.get(2), inputList.get(4), inputList.get(6));
+        return null;
+    }
+
+    /**
+     * Performs a drop table or drop index command
      *
      * @param inputList The list of tokens representing the user's input
      * @return The output of the command. 'null' if command produces no output
@@ -134,9 +179,42 @@ public class DDL {
             //delete the table
             engine.dropTable(tableName);
             return null;
+        } else if (queryType.equals("drop index") && inputList.size() == 5 && inputList.get(3).equals("on")) {
+            engine.dropIndex(tableName, inputList.get(4));
+            return null;
         } else {
             System.err.println("Incorrect Drop Statement");
             return null;
         }
     }
+
+    /**
+     * Performs a vacuum command
+     *
+     * @param inputList The list of tokens representing the user's input
+     * @return The output of the command. 'null' if command produces no output
+     */
+    public String vacuum(ArrayList<String> inputList) {
+        if (inputList.size() != 2) {
+            System.err.println("Invalid vacuum statement: vacuum <table>;");
+            return null;
+        }
+        engine.vacuum(inputList.get(1));
+        return null;
+    }
+
+    /**
+     * Performs a reindex command
+     *
+     * @param inputList The list of tokens representing the user's input
+     * @return The output of the command. 'null' if command produces no output
+     */
+    public String reindex(ArrayList<String> inputList) {
+        if (inputList.size() != 2) {
+            System.err.println("Invalid reindex statement: reindex <table>;");
+            return null;
+        }
+        engine.reindex(inputList.get(1));
+        return null;
+    }
 }
@@ -39,6 +39,19 @@ public enum AttributeType {
         }
     }
 
+    /**
+     * Gets the class of the objects that hold values of this type
+     * @return The class
+     */
+    public Class<?> javaClass() {
+        return switch (this) {
+            case INT -> Integer.class;
+            case DOUBLE -> Double.class;
+            case BOOLEAN -> Boolean.class;
+            case CHAR, VARCHAR -> String.class;
+        };
+    }
+
     @Override
     public String toString() {
         return switch (this) {
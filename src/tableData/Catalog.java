@@ -5,11 +5,18 @@ import exceptions.CustomExceptions.*;
 import java.io.*;
 import java.util.*;
 
-public class Catalog {
+public final class Catalog {
+
+    /// Bumped whenever the format of the catalog or the table files changes. Written as a negative number in
+    /// front of the page size so that catalogs from before versioning existed (version 0) can be told apart
+    private static final int CATALOG_VERSION = 9;
+    /// The name of the file holding every table's pages when the database uses a tablespace
+    public static final String TABLESPACE_FILE = "tablespace.bin";
 
     private final File catalogFile;
     private int pageSize;
     private boolean indexing;
+    private Tablespace tablespace;  // `null` if every table has its own files
     private int currentTempID;
     private HashMap<String, TableSchema> tableSchemas;
     private final byte TYPE_MASK =        0b0000111;
@@ -25,6 +32,19 @@ public class Catalog {
      * @param indexing `true` if indexing is turned on; `false` otherwise
      */
     public Catalog(File file, int pageSize, boolean indexing) throws IOException {
+        this(file, pageSize, indexing, 0);
+    }
+
+    /**
+     * On startup grabs file if it's there. If not, creates empty catalog file
+     * @param file The file the catalog is stored in. By default, this is catalog.bin
+     * @param pageSize The page size for the catalog. If the catalog already exists, the catalog's page size
+     *                 will be used instead
+     * @param indexing `true` if indexing is turned on; `false` otherwise
+     * @param tablespaceExtent The extent size in pages of the tablespace every table is stored in, or `0` if each
+     *                         table should have its own files. If the catalog already exists, its setting is used
+     */
+    public Catalog(File file, int pageSize, boolean indexing, int tablespaceExtent) throws IOException {
         this.catalogFile = file;
         this.pageSize = pageSize;  // Overwritten if catalog file exists
         this.indexing = indexing;  // Overwritten if catalog file exists
@@ -36,16 +56,36 @@ public class Catalog {
             if (!catalogFile.createNewFile()) {
                 throw new IOException("Could not create catalog file at " + catalogFile.getAbsolutePath());
             }
+            if (tablespaceExtent > 0) {
+                tablespace = new Tablespace(tablespaceFile(), pageSize, tablespaceExtent);
+                if (!tablespaceFile().exists() && !tablespaceFile().createNewFile()) {
+                    throw new IOException("Could not create tablespace file at " + tablespaceFile().getAbsolutePath());
+                }
+            }
             // Write pageSize to file
-            DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(catalogFile));
-            outputStream.writeInt(pageSize);
-            outputStream.close();
+            save();
         } else {  // Read catalog in from file
             DataInputStream inputStream = new DataInputStream(new FileInputStream(catalogFile));
-            // Page size
-            this.pageSize = inputStream.readInt();
+            // Version + page size
+            int version = 0;
+            int header = inputStream.readInt();
+            if (header < 0) {
+                version = -header;
+                header = inputStream.readInt();
+            }
+            if (version > CATALOG_VERSION) {
+                inputStream.close();
+                throw new CorruptedDataException("Catalog file `" + catalogFile.getAbsolutePath() + "` has version " +
+                        version + ", but the newest supported version is " + CATALOG_VERSION);
+            }
+            this.pageSize = header;
             this.indexing = inputStream.readBoolean();
-            AttributeType[] attributeTypes = AttributeType.values();
+            if (version >= 4) {
+                int extentPages = inputStream.readInt();
+                if (extentPages > 0) {
+                    tablespace = new Tablespace(tablespaceFile(), pageSize, extentPages);
+                }
+            }
             // Begin reading tables
             while (true) {
                 try {
@@ -56,6 +96,26 @@ public class Catalog {
                     int recordCount = inputStream.readInt();
                     int rootIndex = inputStream.readInt();
                     int treeRoot = inputStream.readInt();
+                    PageLayout layout = PageLayout.ROW;
+                    if (version >= 1) {
+                        layout = PageLayout.values()[inputStream.readByte()];
+                    }
+                    if (version < 2 && layout == PageLayout.ROW) {
+                        layout = PageLayout.ROW_V1;  // Row tables written before version 2 use the old record format
+                    }
+                    // Read table options
+                    int tablePageSize = pageSize;
+                    int fillFactor = TableOptions.DEFAULT_FILL_FACTOR;
+                    int splitRatio = TableOptions.DEFAULT_SPLIT_RATIO;
+                    if (version >= 5) {
+                        tablePageSize = inputStream.readInt();
+                        fillFactor = inputStream.readByte();
+                        splitRatio = inputStream.readByte();
+                    }
+                    boolean heap = false;
+                    if (version >= 6) {
+                        heap = inputStream.readBoolean();
+                    }
                     // Read pageOffset table
                     int offsetCount = inputStream.readInt();
                     ArrayList<Integer> offsets = new ArrayList<>();
@@ -65,18 +125,57 @@ public class Catalog {
                     // Read attributes
                     int numAttributes = inputStream.readInt();
                     for (int i = 0; i < numAttributes; i++) {
-                        byte flags = inputStream.readByte();
-                        boolean primaryKey = (flags & PRIMARY_KEY_MASK) != 0;
-                        boolean notNull = (flags & NOT_NULL_MASK) != 0;
-                        boolean unique = (flags & UNIQUE_MASK) != 0;
-                        int typeNum = flags & TYPE_MASK;
-                        AttributeType attrType = attributeTypes[typeNum];
-                        int length = 0;
-                        if (attrType == AttributeType.CHAR || attrType == AttributeType.VARCHAR) {
-                            length = inputStream.readInt();
+                        attributes.add(readAttribute(inputStream, version));
+                    }
+                    // Read zone maps, one slot per pageOffset
+                    ArrayList<ZoneMap> zoneMaps = new ArrayList<>();
+                    if (version >= 3) {
+                        int zoneMapCount = inputStream.readInt();
+                        for (int i = 0; i < zoneMapCount; i++) {
+                            zoneMaps.add(inputStream.readBoolean() ? ZoneMap.read(inputStream, attributes) : null);
+                        }
+                    }
+                    // Read index size and, in a tablespace, the table's extent chains
+                    int indexSize = -1;
+                    ArrayList<Integer> pageExtents = new ArrayList<>();
+                    ArrayList<Integer> nodeExtents = new ArrayList<>();
+                    if (version >= 4) {
+                        indexSize = inputStream.readInt();
+                        if (tablespace != null) {
+                            pageExtents = readChain(inputStream);
+                            nodeExtents = readChain(inputStream);
+                        }
+                    }
+                    // Read earlier schema versions and the version of each page
+                    ArrayList<SchemaVersion> schemaVersions = new ArrayList<>();
+                    ArrayList<Integer> pageVersions = new ArrayList<>();
+                    if (version >= 7) {
+                        int versionCount = inputStream.readInt();
+                        for (int v = 0; v < versionCount; v++) {
+                            int versionAttributes = inputStream.readInt();
+                            ArrayList<Attribute> oldAttributes = new ArrayList<>();
+                            int[] currentColumns = new int[versionAttributes];
+                            for (int i = 0; i < versionAttributes; i++) {
+                                oldAttributes.add(readAttribute(inputStream, version));
+                                currentColumns[i] = inputStream.readInt();
+                            }
+                            schemaVersions.add(new SchemaVersion(oldAttributes, currentColumns));
+                        }
+                        pageVersions = readChain(inputStream);
+                    }
+                    // Read secondary indexes
+                    ArrayList<String> indexNames = new ArrayList<>();
+                    ArrayList<Boolean> indexUnique = new ArrayList<>();
+                    ArrayList<int[]> indexInfo = new ArrayList<>();  // Column, tree root and index size of each
+                    ArrayList<ArrayList<Integer>> indexExtents = new ArrayList<>();
+                    if (version >= 8) {
+                        int indexCount = inputStream.readInt();
+                        for (int i = 0; i < indexCount; i++) {
+                            indexNames.add(inputStream.readUTF());
+                            indexUnique.add(version >= 9 && inputStream.readBoolean());
+                            indexInfo.add(new int[]{inputStream.readInt(), inputStream.readInt(), inputStream.readInt()});
+                            indexExtents.add((tablespace != null) ? readChain(inputStream) : new ArrayList<>());
                         }
-                        String typeName = inputStream.readUTF();
-                        attributes.add(new Attribute(typeName, attrType, primaryKey, notNull, unique, length));
                     }
                     try  {
                         TableSchema newSchema = new TableSchema(
@@ -88,8 +187,30 @@ public class Catalog {
                                 catalogFile.getParent() + File.separator,
                                 pageCount,
                                 recordCount,
-                                pageSize
+                                tablePageSize
                         );
+                        newSchema.layout = layout;
+                        newSchema.fillFactor = fillFactor;
+                        newSchema.splitRatio = splitRatio;
+                        newSchema.heap = heap;
+                        for (int i = 0; i < zoneMaps.size(); i++) {
+                            newSchema.setZoneMap(i, zoneMaps.get(i));
+                        }
+                        newSchema.indexSize = indexSize;
+                        newSchema.setSchemaVersions(schemaVersions, pageVersions);
+                        if (tablespace != null) {
+                            newSchema.useTablespace(tablespace, pageExtents, nodeExtents);
+                        }
+                        for (int i = 0; i < indexNames.size(); i++) {
+                            int[] info = indexInfo.get(i);
+                            IndexSchema index = new IndexSchema(indexNames.get(i), newSchema, info[0], info[1],
+                                    indexUnique.get(i));
+                            index.indexSize = info[2];
+                            if (tablespace != null) {
+                                index.useTablespace(tablespace, new ArrayList<>(), indexExtents.get(i));
+                            }
+                            newSchema.indexes().add(index);
+                        }
                         tableSchemas.put(tableName, newSchema);
                     } catch (IllegalArgumentException e) {
                         System.err.println("Encountered error while creating table from catalog: " + e.getMessage());
@@ -119,6 +240,18 @@ public class Catalog {
         return indexing;
     }
 
+    /**
+     * Gets the tablespace the database's tables are stored in
+     * @return The tablespace; `null` if every table has its own files
+     */
+    public Tablespace tablespace() {
+        return tablespace;
+    }
+
+    private File tablespaceFile() {
+        return new File(catalogFile.getParent(), TABLESPACE_FILE);
+    }
+
     /**
      * Returns a set of all tables present in the catalog
      * @return The set of all table names
@@ -143,10 +276,49 @@ public class Catalog {
      * @throws IOException if an error occurs while creating the Page file for the new table
      */
     public TableSchema createTableSchema(String name, ArrayList<Attribute> attributeArrayList) throws IOException, IllegalArgumentException {
+        return createTableSchema(name, attributeArrayList, PageLayout.ROW);
+    }
+
+    /**
+     * Creates a TableSchema with a specific page layout and automatically inserts it into the catalog
+     * @param name The name of the table
+     * @param attributeArrayList The list of attributes the table has
+     * @param layout The way records are arranged inside the table's pages
+     * @return The newly created TableSchema
+     * @throws IllegalArgumentException if a table with that name already exists
+     * @throws IOException if an error occurs while creating the Page file for the new table
+     */
+    public TableSchema createTableSchema(String name, ArrayList<Attribute> attributeArrayList, PageLayout layout) throws IOException, IllegalArgumentException {
+        TableOptions options = new TableOptions();
+        options.layout = layout;
+        return createTableSchema(name, attributeArrayList, options);
+    }
+
+    /**
+     * Creates a TableSchema with specific storage options and automatically inserts it into the catalog
+     * @param name The name of the table
+     * @param attributeArrayList The list of attributes the table has
+     * @param options The table's page layout, page size, fill factor and split ratio
+     * @return The newly created TableSchema
+     * @throws IllegalArgumentException if a table with that name already exists, or the options are not valid for
+     * this database
+     * @throws IOException if an error occurs while creating the Page file for the new table
+     */
+    public TableSchema createTableSchema(String name, ArrayList<Attribute> attributeArrayList, TableOptions options) throws IOException, IllegalArgumentException {
         // Make sure the table doesn't already exist
         if (tableSchemas.containsKey(name)) {
             throw new IllegalArgumentException("Table `" + name + "` already exists.");
         }
+        int tablePageSize = (options.pageSize > 0) ? options.pageSize : pageSize;
+        // Every page slot in a tablespace is the database's page size, so a table's pages can't be any larger
+        if (tablespace != null && tablePageSize > pageSize) {
+            throw new IllegalArgumentException("Tables in a tablespace cannot have a page size larger than the " +
+                    "database's page size (" + pageSize + ").");
+        }
+        // The B+ tree points at records by their position, which it expects to be in primary key order
+        if (indexing && options.heap) {
+            throw new IllegalArgumentException("Heap tables cannot be created while indexing is enabled.");
+        }
         // Create table
         TableSchema newSchema = new TableSchema(
                 name,
@@ -157,8 +329,19 @@ public class Catalog {
                 catalogFile.getParent() + File.separator,
                 0,
                 0,
-                pageSize
+                tablePageSize
         );
+        // New tables always use the current row format
+        newSchema.layout = (options.layout == PageLayout.ROW_V1) ? PageLayout.ROW : options.layout;
+        newSchema.fillFactor = options.fillFactor;
+        newSchema.splitRatio = options.splitRatio;
+        newSchema.heap = options.heap;
+        // Tables in a tablespace have no files of their own, so creating one is only a catalog change
+        if (tablespace != null) {
+            newSchema.useTablespace(tablespace, new ArrayList<>(), new ArrayList<>());
+            tableSchemas.put(name, newSchema);
+            return newSchema;
+        }
         // Create a new Page file for the table and write it to disk
         File tableFile = newSchema.tableFile();
         if (!tableFile.createNewFile()) {
@@ -188,6 +371,32 @@ public class Catalog {
         return newSchema;
     }
 
+    /**
+     * Creates the schema of a secondary index on a table and creates a file for its B+ tree. The tree itself is
+     * not built
+     * @param table The TableSchema of the table being indexed
+     * @param indexName The name of the index
+     * @param column The index of the attribute being indexed
+     * @param unique `true` if the index backs a unique attribute
+     * @return The newly created IndexSchema, which has been added to the table's indexes
+     * @throws IllegalArgumentException if the table already has an index with that name
+     * @throws IOException if an error occurs while creating the index file
+     */
+    public IndexSchema createIndexSchema(TableSchema table, String indexName, int column, boolean unique) throws IOException, IllegalArgumentException {
+        if (table.getIndexSchema(indexName) != null) {
+            throw new IllegalArgumentException("Index `" + indexName + "` already exists on table `" + table.name + "`.");
+        }
+        IndexSchema index = new IndexSchema(indexName, table, column, -1, unique);
+        if (tablespace != null) {
+            index.useTablespace(tablespace, new ArrayList<>(), new ArrayList<>());
+        } else if (!index.indexFile().createNewFile()) {
+            throw new IllegalArgumentException("Index file already exists for index '" + indexName +
+                    "' at '" + index.indexFile().getAbsolutePath() + "'");
+        }
+        table.indexes().add(index);
+        return index;
+    }
+
     /**
      * Inserts a table schema into the catalog
      * @param newSchema The schema to add
@@ -240,41 +449,144 @@ public class Catalog {
     public void save() throws IOException {
         DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(catalogFile));
         // Catalog header
+        outputStream.writeInt(-CATALOG_VERSION);
         outputStream.writeInt(pageSize);
         outputStream.writeBoolean(indexing);
+        outputStream.writeInt((tablespace == null) ? 0 : tablespace.extentPages());
         // Write out table data
-        List<AttributeType> attributeTypes = Arrays.stream(AttributeType.values()).toList();
         for (TableSchema tableSchema : tableSchemas.values()){
+            tableSchema.pruneSchemaVersions();
             outputStream.writeUTF(tableSchema.name);
             outputStream.writeInt(tableSchema.pageCount());
             outputStream.writeInt(tableSchema.recordCount());
             outputStream.writeInt(tableSchema.rootIndex);
             outputStream.writeInt(tableSchema.treeRoot);
+            outputStream.writeByte(tableSchema.layout.ordinal());
+            outputStream.writeInt(tableSchema.pageSize);
+            outputStream.writeByte(tableSchema.fillFactor);
+            outputStream.writeByte(tableSchema.splitRatio);
+            outputStream.writeBoolean(tableSchema.heap);
             // NumberMap table
-            outputStream.writeInt(tableSchema.numberMap.size());
-            for (int offset : tableSchema.numberMap) {
+            ArrayList<Integer> numberMap = tableSchema.numberMap();
+            outputStream.writeInt(numberMap.size());
+            for (int offset : numberMap) {
                 outputStream.writeInt(offset);
             }
             // Attributes
             ArrayList<Attribute> attributes = tableSchema.attributes;
             outputStream.writeInt(attributes.size()); // Number of attributes
             for (Attribute attribute : attributes){
-                // Type + constraint flags
-                byte flagByte = (byte) attributeTypes.indexOf(attribute.type);
-                flagByte += (attribute.primaryKey) ? PRIMARY_KEY_MASK : 0;
-                flagByte += (attribute.notNull) ? NOT_NULL_MASK : 0;
-                flagByte += (attribute.unique) ? UNIQUE_MASK : 0;
-                outputStream.writeByte(flagByte);
-                // Length + name
-                if (attribute.type == AttributeType.CHAR || attribute.type == AttributeType.VARCHAR) {
-                    outputStream.writeInt(attribute.length);
+                writeAttribute(outputStream, attribute);
+            }
+            // Zone maps
+            outputStream.writeInt(numberMap.size());
+            for (int i = 0; i < numberMap.size(); i++) {
+                ZoneMap zoneMap = tableSchema.getZoneMap(i);
+                outputStream.writeBoolean(zoneMap != null);
+                if (zoneMap != null) {
+                    zoneMap.write(outputStream, tableSchema);
+                }
+            }
+            // Index size and extent chains
+            outputStream.writeInt(tableSchema.indexSize);
+            if (tablespace != null) {
+                writeChain(outputStream, tableSchema.pageExtents());
+                writeChain(outputStream, tableSchema.nodeExtents());
+            }
+            // Earlier schema versions and the version of each page
+            outputStream.writeInt(tableSchema.schemaVersions().size());
+            for (SchemaVersion schemaVersion : tableSchema.schemaVersions()) {
+                outputStream.writeInt(schemaVersion.attributes.size());
+                for (int i = 0; i < schemaVersion.attributes.size(); i++) {
+                    writeAttribute(outputStream, schemaVersion.attributes.get(i));
+                    outputStream.writeInt(schemaVersion.currentColumn(i));
+                }
+            }
+            writeChain(outputStream, tableSchema.pageVersions());
+            // Secondary indexes
+            outputStream.writeInt(tableSchema.indexes().size());
+            for (IndexSchema index : tableSchema.indexes()) {
+                outputStream.writeUTF(index.indexName);
+                outputStream.writeBoolean(index.unique);
+                outputStream.writeInt(index.column);
+                outputStream.writeInt(index.treeRoot);
+                outputStream.writeInt(index.indexSize);
+                if (tablespace != null) {
+                    writeChain(outputStream, index.nodeExtents());
                 }
-                outputStream.writeUTF(attribute.name);
             }
         }
         outputStream.close();
     }
 
+    /**
+     * Reads the definition of an attribute from the catalog
+     * @param in The stream to read from
+     * @param version The version of the catalog file
+     * @return The attribute
+     * @throws IOException If there was an error reading the attribute
+     */
+    private Attribute readAttribute(DataInputStream in, int version) throws IOException {
+        // Type + constraint flags
+        byte flags = in.readByte();
+        boolean primaryKey = (flags & PRIMARY_KEY_MASK) != 0;
+        boolean notNull = (flags & NOT_NULL_MASK) != 0;
+        boolean unique = (flags & UNIQUE_MASK) != 0;
+        AttributeType attrType = AttributeType.values()[flags & TYPE_MASK];
+        // Length + name
+        int length = 0;
+        if (attrType == AttributeType.CHAR || attrType == AttributeType.VARCHAR) {
+            length = in.readInt();
+        }
+        Attribute attribute = new Attribute(in.readUTF(), attrType, primaryKey, notNull, unique, length);
+        // Default value, which records written before the attribute was added are read with
+        if (version >= 7 && in.readBoolean()) {
+            attribute.defaultValue = Page.readValue(in, attribute);
+        }
+        return attribute;
+    }
+
+    /**
+     * Writes the definition of an attribute to the catalog
+     * @param out The stream to write to
+     * @param attribute The attribute
+     * @throws IOException If there was an error writing the attribute
+     */
+    private void writeAttribute(DataOutputStream out, Attribute attribute) throws IOException {
+        // Type + constraint flags
+        byte flagByte = (byte) attribute.type.ordinal();
+        flagByte += (attribute.primaryKey) ? PRIMARY_KEY_MASK : 0;
+        flagByte += (attribute.notNull) ? NOT_NULL_MASK : 0;
+        flagByte += (attribute.unique) ? UNIQUE_MASK : 0;
+        out.writeByte(flagByte);
+        // Length + name
+        if (attribute.type == AttributeType.CHAR || attribute.type == AttributeType.VARCHAR) {
+            out.writeInt(attribute.length);
+        }
+        out.writeUTF(attribute.name);
+        // Default value
+        out.writeBoolean(attribute.defaultValue != null);
+        if (attribute.defaultValue != null) {
+            Page.writeValue(out, attribute, attribute.defaultValue);
+        }
+    }
+
+    private static ArrayList<Integer> readChain(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        ArrayList<Integer> chain = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            chain.add(in.readInt());
+        }
+        return chain;
+    }
+
+    private static void writeChain(DataOutputStream out, ArrayList<Integer> chain) throws IOException {
+        out.writeInt(chain.size());
+        for (int extent : chain) {
+            out.writeInt(extent);
+        }
+    }
+
     /**
      * Returns a File object pointing to the catalog file
      * @return A File object pointing to the catalog file
@@ -291,7 +603,9 @@ public class Catalog {
         for (TableSchema tableSchema : tableSchemas.values()) {
             stringBuilder.append("-------------------------\n");
             stringBuilder.append(tableSchema.name);
-            stringBuilder.append("\n");
+            stringBuilder.append(" (");
+            stringBuilder.append(tableSchema.layout);
+            stringBuilder.append(")\n");
             for (Attribute attribute : tableSchema.attributes) {
                 stringBuilder.append(attribute.name);
                 stringBuilder.append(": ");
@@ -0,0 +1,338 @@
+package tableData;
+
+import exceptions.CustomExceptions.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The ways the values of a PAX minipage can be encoded. The encoding of each minipage is picked when the
+ * page is saved by choosing whichever encoding produces the fewest bytes for the values in that minipage
+ */
+public enum ColumnEncoding {
+    /// Every value is written out in full, one after another
+    PLAIN,
+    /// Each distinct value is written once, and every row stores a varint code into that list. Strings only
+    DICTIONARY,
+    /// Consecutive repeats of a value are stored as the value followed by a varint repeat count
+    RUN_LENGTH,
+    /// The first value is written in full, then every value after is the zigzag varint difference from the one
+    /// before it. Integers only
+    DELTA;
+
+    /**
+     * Checks if this encoding can be used for the values of a given attribute
+     * @param attr The attribute being encoded
+     * @return `true` if values of this attribute can be stored with this encoding
+     */
+    public boolean supports(Attribute attr) {
+        return switch (this) {
+            case PLAIN, RUN_LENGTH -> true;
+            case DICTIONARY -> attr.type == AttributeType.VARCHAR || attr.type == AttributeType.CHAR;
+            case DELTA -> attr.type == AttributeType.INT;
+        };
+    }
+
+    /**
+     * Finds the encoding that stores a list of values in the fewest bytes
+     * @param attr The attribute the values belong to
+     * @param values The non-null values being encoded
+     * @return The smallest encoding for these values
+     */
+    public static ColumnEncoding choose(Attribute attr, ArrayList<Object> values) {
+        ColumnEncoding best = PLAIN;
+        int bestSize = PLAIN.encodedSize(attr, values);
+        for (ColumnEncoding encoding : values()) {
+            if (encoding == PLAIN || !encoding.supports(attr)) {
+                continue;
+            }
+            int size = encoding.encodedSize(attr, values);
+            if (size < bestSize) {
+                best = encoding;
+                bestSize = size;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the number of bytes a list of values takes up when stored with this encoding, including
+     * the byte identifying the encoding
+     * @param attr The attribute the values belong to
+     * @param values The non-null values being measured
+     * @return The number of bytes
+     */
+    public int encodedSize(Attribute attr, ArrayList<Object> values) {
+        int size = 1;  // Encoding ID
+        switch (this) {
+            case PLAIN -> {
+                for (Object value : values) {
+                    size += Page.valueSize(attr, value);
+                }
+            }
+            case DICTIONARY -> {
+                HashMap<Object, Integer> codes = new HashMap<>();
+                for (Object value : values) {
+                    Integer code = codes.get(value);
+                    if (code == null) {
+                        code = codes.size();
+                        codes.put(value, code);
+                        size += Page.valueSize(attr, value);
+                    }
+                    size += varIntSize(code);
+                }
+                size += varIntSize(codes.size());
+            }
+            case RUN_LENGTH -> {
+                int runs = 0;
+                int i = 0;
+                while (i < values.size()) {
+                    int runLength = runLength(values, i);
+                    size += Page.valueSize(attr, values.get(i)) + varIntSize(runLength);
+                    runs++;
+                    i += runLength;
+                }
+                size += varIntSize(runs);
+            }
+            case DELTA -> {
+                if (!values.isEmpty()) {
+                    size += Integer.BYTES;
+                }
+                for (int i = 1; i < values.size(); i++) {
+                    size += varLongSize(zigzag((long) (Integer) values.get(i) - (Integer) values.get(i - 1)));
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes a list of values to a stream using this encoding, starting with the byte identifying the encoding
+     * @param out The stream to write to
+     * @param attr The attribute the values belong to
+     * @param values The non-null values being written
+     * @throws IOException If there is an error writing to the stream
+     */
+    public void write(DataOutputStream out, Attribute attr, ArrayList<Object> values) throws IOException {
+        out.writeByte(ordinal());
+        switch (this) {
+            case PLAIN -> {
+                for (Object value : values) {
+                    Page.writeValue(out, attr, value);
+                }
+            }
+            case DICTIONARY -> {
+                HashMap<Object, Integer> codes = new HashMap<>();
+                ArrayList<Object> dictionary = new ArrayList<>();
+                int[] rowCodes = new int[values.size()];
+                for (int i = 0; i < values.size(); i++) {
+                    Integer code = codes.get(values.get(i));
+                    if (code == null) {
+                        code = dictionary.size();
+                        codes.put(values.get(i), code);
+                        dictionary.add(values.get(i));
+                    }
+                    rowCodes[i] = code;
+                }
+                writeVarInt(out, dictionary.size());
+                for (Object value : dictionary) {
+                    Page.writeValue(out, attr, value);
+                }
+                for (int code : rowCodes) {
+                    writeVarInt(out, code);
+                }
+            }
+            case RUN_LENGTH -> {
+                ArrayList<Integer> runStarts = new ArrayList<>();
+                int i = 0;
+                while (i < values.size()) {
+                    runStarts.add(i);
+                    i += runLength(values, i);
+                }
+                writeVarInt(out, runStarts.size());
+                for (int start : runStarts) {
+                    Page.writeValue(out, attr, values.get(start));
+                    writeVarInt(out, runLength(values, start));
+                }
+            }
+            case DELTA -> {
+                if (values.isEmpty()) {
+                    return;
+                }
+                out.writeInt((Integer) values.getFirst());
+                for (int i = 1; i < values.size(); i++) {
+                    writeVarLong(out, zigzag((long) (Integer) values.get(i) - (Integer) values.get(i - 1)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a list of values written by write(), using whichever encoding they were written with
+     * @param in The stream to read from
+     * @param attr The attribute the values belong to
+     * @param count The number of values to read
+     * @return The list of values
+     * @throws IOException If there is an error reading from the stream or the encoding is not recognized
+     */
+    public static ArrayList<Object> read(DataInputStream in, Attribute attr, int count) throws IOException {
+        ColumnEncoding encoding = fromId(in.readUnsignedByte());
+        ArrayList<Object> values = new ArrayList<>(count);
+        switch (encoding) {
+            case PLAIN -> {
+                for (int i = 0; i < count; i++) {
+                    values.add(Page.readValue(in, attr));
+                }
+            }
+            case DICTIONARY -> {
+                Object[] dictionary = readDictionary(in, attr);
+                for (int i = 0; i < count; i++) {
+                    values.add(dictionary[readVarInt(in)]);
+                }
+            }
+            case RUN_LENGTH -> {
+                int runs = readVarInt(in);
+                for (int r = 0; r < runs; r++) {
+                    Object value = Page.readValue(in, attr);
+                    int runLength = readVarInt(in);
+                    for (int i = 0; i < runLength; i++) {
+                        values.add(value);
+                    }
+                }
+            }
+            case DELTA -> {
+                if (count == 0) {
+                    break;
+                }
+                int value = in.readInt();
+                values.add(value);
+                for (int i = 1; i < count; i++) {
+                    value += (int) unzigzag(readVarLong(in));
+                    values.add(value);
+                }
+            }
+        }
+        if (values.size() != count) {
+            throw new CorruptedDataException("Expected " + count + " values in " + encoding +
+                    " minipage, but found " + values.size());
+        }
+        return values;
+    }
+
+    /**
+     * Reads the distinct values out of a dictionary encoded list of values, without reading the code of
+     * every row. The encoding ID is read first, and if it is not DICTIONARY nothing else is read
+     * @param in The stream to read from, positioned at the encoding ID
+     * @param attr The attribute the values belong to
+     * @return The dictionary entries, indexed by their code. `null` if the values were not dictionary encoded
+     * @throws IOException If there is an error reading from the stream
+     */
+    public static Object[] readDictionaryIfPresent(DataInputStream in, Attribute attr) throws IOException {
+        if (fromId(in.readUnsignedByte()) != DICTIONARY) {
+            return null;
+        }
+        return readDictionary(in, attr);
+    }
+
+    /**
+     * Reads the entries of a dictionary, positioned just after the encoding ID
+     */
+    private static Object[] readDictionary(DataInputStream in, Attribute attr) throws IOException {
+        Object[] dictionary = new Object[readVarInt(in)];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = Page.readValue(in, attr);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Converts the ID byte of an encoding back into the encoding
+     * @param id The ID that was written to file
+     * @return The corresponding encoding
+     * @throws CorruptedDataException if the ID does not belong to an encoding
+     */
+    private static ColumnEncoding fromId(int id) throws CorruptedDataException {
+        if (id >= values().length) {
+            throw new CorruptedDataException("Unknown column encoding ID " + id);
+        }
+        return values()[id];
+    }
+
+    /**
+     * Counts how many times the value at a given index repeats, including itself
+     */
+    private static int runLength(ArrayList<Object> values, int start) {
+        int end = start + 1;
+        while (end < values.size() && values.get(end).equals(values.get(start))) {
+            end++;
+        }
+        return end - start;
+    }
+
+    // ====================================================================================
+    //region Varints ======================================================================
+    // ====================================================================================
+
+    /**
+     * Maps signed numbers to unsigned ones so that numbers close to zero have small varints
+     */
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes a non-negative int using 7 bits per byte, with the high bit of each byte set if more bytes follow
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static int varIntSize(int value) {
+        return varLongSize(value);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift >= Long.SIZE) {
+                throw new CorruptedDataException("Malformed varint in minipage");
+            }
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    //endregion
+}
@@ -0,0 +1,206 @@
+package tableData;
+
+import java.util.List;
+
+/**
+ * Tracks roughly how much free space every page of a table has, using four bits per page index. Each page is given
+ * a class from 0 to MAX_CLASS, and a page of class `c` is guaranteed to have at least `c` units of free space, where
+ * a unit is 1/MAX_CLASS of the page size. Class UNUSED marks a page index that no page occupies.
+ * <br>
+ * Classes are only ever lower bounds. They are exact when a page is saved or measured, and are adjusted by the size
+ * of records inserted or removed in between, rounding down. Inserts use them to tell if a record fits in a page
+ * without measuring every record already in it. Pages whose free space is unknown are class 0.
+ */
+public class FreeSpaceMap {
+
+    /// The largest free space class. A page of this class has at least a full page of free space
+    public static final int MAX_CLASS = 14;
+    /// The class of a page index which is not occupied by any page
+    public static final int UNUSED = 15;
+
+    private final int unit;  // The number of bytes of free space each class represents
+    private byte[] classes;  // Two classes per byte, the lower nibble holding the even page index
+    private int size;        // The number of page indices tracked
+    private int unusedHint;  // No page index below this is unused
+
+    /**
+     * Creates a FreeSpaceMap for a table. Every occupied page starts with an unknown (0) free space class
+     * @param pageSize The size of the table's pages
+     * @param numberMap The table's mapping of page index to page number, with `-1` for unused page indices
+     */
+    public FreeSpaceMap(int pageSize, List<Integer> numberMap) {
+        this.unit = Math.max(1, pageSize / MAX_CLASS);
+        this.classes = new byte[(numberMap.size() + 1) / 2];
+        this.size = numberMap.size();
+        for (int i = 0; i < numberMap.size(); i++) {
+            if (numberMap.get(i) == -1) {
+                set(i, UNUSED);
+            }
+        }
+        this.unusedHint = 0;
+    }
+
+    /**
+     * Gets the free space class of a page index
+     * @param pageIndex The page index
+     * @return The page's class; UNUSED if no page occupies that index
+     */
+    public int get(int pageIndex) {
+        if (pageIndex < 0 || pageIndex >= size) {
+            return UNUSED;
+        }
+        int packed = classes[pageIndex / 2];
+        return (pageIndex % 2 == 0) ? packed & 0xF : (packed >> 4) & 0xF;
+    }
+
+    private void set(int pageIndex, int spaceClass) {
+        if (pageIndex >= size) {
+            size = pageIndex + 1;
+            if ((size + 1) / 2 > classes.length) {
+                byte[] grown = new byte[Math.max((size + 1) / 2, classes.length * 2)];
+                System.arraycopy(classes, 0, grown, 0, classes.length);
+                classes = grown;
+            }
+        }
+        int packed = classes[pageIndex / 2];
+        if (pageIndex % 2 == 0) {
+            packed = (packed & 0xF0) | spaceClass;
+        } else {
+            packed = (packed & 0x0F) | (spaceClass << 4);
+        }
+        classes[pageIndex / 2] = (byte) packed;
+    }
+
+    /**
+     * Checks if a page is known to have room for a given number of bytes
+     * @param pageIndex The index of the page
+     * @param bytes The number of bytes being added
+     * @return `true` if the page definitely has room; `false` if it does not or its free space is not known
+     */
+    public boolean fits(int pageIndex, int bytes) {
+        int spaceClass = get(pageIndex);
+        return spaceClass != UNUSED && spaceClass * unit >= bytes;
+    }
+
+    /**
+     * Finds the first page known to have room for a given number of bytes
+     * @param bytes The number of bytes being added
+     * @return The index of the page; `-1` if no page is known to have room
+     */
+    public int firstFit(int bytes) {
+        for (int i = 0; i < size; i++) {
+            if (fits(i, bytes)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records the exact amount of free space in a page
+     * @param pageIndex The index of the page
+     * @param freeBytes The number of unused bytes in the page. Negative if the page is over size
+     */
+    public void measure(int pageIndex, int freeBytes) {
+        set(pageIndex, Math.clamp(freeBytes / unit, 0, MAX_CLASS));
+    }
+
+    /**
+     * Lowers the free space class of a page after bytes were added to it
+     * @param pageIndex The index of the page
+     * @param bytes The number of bytes added
+     */
+    public void consume(int pageIndex, int bytes) {
+        int spaceClass = get(pageIndex);
+        if (spaceClass != UNUSED) {
+            set(pageIndex, Math.max(0, (spaceClass * unit - bytes) / unit));
+        }
+    }
+
+    /**
+     * Raises the free space class of a page after bytes were removed from it
+     * @param pageIndex The index of the page
+     * @param bytes The number of bytes removed
+     */
+    public void release(int pageIndex, int bytes) {
+        int spaceClass = get(pageIndex);
+        if (spaceClass != UNUSED) {
+            set(pageIndex, Math.min(MAX_CLASS, (spaceClass * unit + bytes) / unit));
+        }
+    }
+
+    /**
+     * Marks the free space of every page as unknown. Used when every record in the table grows
+     */
+    public void forgetFreeSpace() {
+        for (int i = 0; i < size; i++) {
+            if (get(i) != UNUSED) {
+                set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Marks a page index as occupied by a page whose free space is not known yet
+     * @param pageIndex The page index
+     */
+    public void markUsed(int pageIndex) {
+        set(pageIndex, 0);
+    }
+
+    /**
+     * Marks a page index as no longer occupied by any page
+     * @param pageIndex The page index
+     */
+    public void markUnused(int pageIndex) {
+        set(pageIndex, UNUSED);
+        unusedHint = Math.min(unusedHint, pageIndex);
+    }
+
+    /**
+     * Finds the unused page index closest to a page, checking the index after the page before the one before it at
+     * each distance. Indices past the end of the map count as unused, so the last page can be followed by a new one
+     * @param pageIndex The index of the page
+     * @param window The furthest distance from the page to look
+     * @return The closest unused page index; `-1` if there is none within the window
+     */
+    public int nearestUnused(int pageIndex, int window) {
+        for (int distance = 1; distance <= window; distance++) {
+            if (get(pageIndex + distance) == UNUSED) {
+                return pageIndex + distance;
+            }
+            if (pageIndex - distance >= 0 && get(pageIndex - distance) == UNUSED) {
+                return pageIndex - distance;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Estimates how much of the table file is free space, counting unused page indices as entirely free. Since
+     * classes are lower bounds, this never overestimates
+     * @return The fraction of the file which is known to be free, from 0 to 1
+     */
+    public double freeFraction() {
+        if (size == 0) {
+            return 0;
+        }
+        long freeClasses = 0;
+        for (int i = 0; i < size; i++) {
+            freeClasses += Math.min(get(i), MAX_CLASS);
+        }
+        return (double) freeClasses / ((long) size * MAX_CLASS);
+    }
+
+    /**
+     * Finds the smallest page index that is not occupied by a page. Since the search starts where the last one
+     * ended, this is amortized O(1)
+     * @return The smallest unused page index; `-1` if every page index is in use
+     */
+    public int firstUnused() {
+        while (unusedHint < size && get(unusedHint) != UNUSED) {
+            unusedHint++;
+        }
+        return (unusedHint < size) ? unusedHint : -1;
+    }
+}
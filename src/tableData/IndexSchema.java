@@ -0,0 +1,72 @@
+package tableData;
+
+import java.util.ArrayList;
+
+/**
+ * The schema of a secondary index, a B+ tree on one attribute of a table other than its primary key. The tree's keys
+ * are the attribute's value followed by the record's primary key, so records sharing a value each get their own
+ * entry, and each entry points at its record by page index and record ID, like the pointers of the table's own tree.
+ * Records whose value is `null` are not indexed.
+ * <br>
+ * An IndexSchema has no pages. Its attributes are the indexed attribute and the table's primary key, so the index
+ * can be handled by anything that works on a table's B+ tree. It is named `<table>.<index>`, and kept in the
+ * TableSchema of the table it indexes rather than in the catalog's tables.
+ * <br>
+ * Every unique attribute other than the primary key is backed by a unique index, named `<attribute>_key`. Its keys
+ * are laid out the same way, but no two entries can share a value
+ */
+public class IndexSchema extends TableSchema {
+
+    public final String indexName;
+    public int column;  // The index of the indexed attribute in the table
+    public final boolean unique;  // Backs a unique attribute, so inserts and updates check it for the record's value
+
+    /**
+     * Creates an IndexSchema. This should not be directly called by any classes other than Catalog
+     * @param indexName The name of the index
+     * @param table The TableSchema of the table being indexed
+     * @param column The index of the indexed attribute in the table
+     * @param treeRoot The index of the root of the index's B+ tree; `-1` if it has not been built
+     * @param unique `true` if the index backs a unique attribute
+     */
+    IndexSchema(String indexName, TableSchema table, int column, int treeRoot, boolean unique) {
+        super(table.name + "." + indexName, -1, treeRoot, new ArrayList<>(), keyAttributes(table, column),
+                table.fileDir(), 0, 0, table.pageSize);
+        this.indexName = indexName;
+        this.column = column;
+        this.unique = unique;
+    }
+
+    private static ArrayList<Attribute> keyAttributes(TableSchema table, int column) {
+        Attribute value = new Attribute(table.attributes.get(column));
+        value.primaryKey = false;
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        attributes.add(value);
+        attributes.add(table.getPrimaryKey());
+        return attributes;
+    }
+
+    /**
+     * Gets the type of the indexed attribute
+     * @return The attribute's type
+     */
+    public AttributeType valueType() {
+        return attributes.getFirst().type;
+    }
+
+    /**
+     * Gets the most bytes a key of this index takes up in a B+ tree node
+     * @return The size of the largest value and primary key
+     */
+    public int keyLength() {
+        return encodedLength(attributes.get(0)) + encodedLength(attributes.get(1));
+    }
+
+    private static int encodedLength(Attribute attribute) {
+        // Strings are written with their length in front
+        if (attribute.type == AttributeType.CHAR || attribute.type == AttributeType.VARCHAR) {
+            return Short.BYTES + attribute.length;
+        }
+        return attribute.length;
+    }
+}
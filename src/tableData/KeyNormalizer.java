@@ -0,0 +1,95 @@
+package tableData;
+
+import java.util.Arrays;
+
+/**
+ * Converts attribute values into byte arrays whose unsigned lexicographic order matches the order of the values
+ * themselves. Once normalized, keys of any type can be compared with Arrays.compareUnsigned(), or by their first
+ * eight bytes as an unsigned long, without knowing what type they came from.
+ * <ul>
+ *     <li>Every key starts with a byte which is 0 for `null` and 1 otherwise, so `null` sorts first</li>
+ *     <li>INT is big-endian with the sign bit flipped</li>
+ *     <li>DOUBLE is big-endian with the sign bit flipped for positive values and every bit flipped for negative
+ *     values, which matches Double.compareTo()</li>
+ *     <li>BOOLEAN is 0 for `false` and 1 for `true`</li>
+ *     <li>CHAR and VARCHAR are big-endian UTF-16, which matches String.compareTo()</li>
+ * </ul>
+ */
+public final class KeyNormalizer {
+
+    private KeyNormalizer() {}
+
+    /**
+     * Normalizes a value, using its class to determine its type
+     * @param value The value to normalize. May be `null`
+     * @return The normalized key
+     */
+    public static byte[] normalize(Object value) {
+        if (value == null) {
+            return new byte[] {0};
+        }
+        byte[] key;
+        int i = 1;
+        switch (value) {
+            case Integer n -> {
+                key = new byte[1 + Integer.BYTES];
+                putInt(key, i, n ^ Integer.MIN_VALUE);
+            }
+            case Double d -> {
+                long bits = Double.doubleToLongBits(d);
+                bits ^= (bits < 0) ? -1L : Long.MIN_VALUE;
+                key = new byte[1 + Long.BYTES];
+                putInt(key, i, (int) (bits >>> 32));
+                putInt(key, i + Integer.BYTES, (int) bits);
+            }
+            case Boolean b -> {
+                key = new byte[2];
+                key[i] = (byte) (b ? 1 : 0);
+            }
+            case String s -> {
+                key = new byte[1 + Character.BYTES * s.length()];
+                for (int c = 0; c < s.length(); c++) {
+                    key[i++] = (byte) (s.charAt(c) >>> 8);
+                    key[i++] = (byte) s.charAt(c);
+                }
+            }
+            default -> throw new IllegalArgumentException("Cannot normalize value of type " + value.getClass());
+        }
+        key[0] = 1;
+        return key;
+    }
+
+    /**
+     * Gets the first eight bytes of a normalized key as a long. If the prefixes of two keys differ, comparing them
+     * with Long.compareUnsigned() gives the same result as comparing the full keys
+     * @param key The normalized key
+     * @return The key's prefix, padded with zeros if the key is shorter than eight bytes
+     */
+    public static long prefix(byte[] key) {
+        long prefix = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            prefix <<= 8;
+            if (i < key.length) {
+                prefix |= key[i] & 0xFF;
+            }
+        }
+        return prefix;
+    }
+
+    /**
+     * Compares two normalized keys
+     * @param first The first key
+     * @param second The second key
+     * @return A negative number if first comes before second, 0 if they are equal, or a positive number otherwise
+     */
+    public static int compare(byte[] first, byte[] second) {
+        return Arrays.compareUnsigned(first, second);
+    }
+
+    private static void putInt(byte[] key, int offset, int value) {
+        key[offset] = (byte) (value >>> 24);
+        key[offset + 1] = (byte) (value >>> 16);
+        key[offset + 2] = (byte) (value >>> 8);
+        key[offset + 3] = (byte) value;
+    }
+}
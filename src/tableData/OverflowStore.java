@@ -0,0 +1,160 @@
+package tableData;
+
+import exceptions.CustomExceptions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Stores values which are too large to keep inside a record in a table's overflow file. Each value is stored in
+ * a chain of overflow pages, and chains which are no longer used are kept in a free list so their pages can be reused.
+ * The file starts with the index of the first free page (`-1` if there are none), followed by the overflow pages.
+ * Every overflow page starts with the index of the next page in its chain (`-1` at the end of the chain), and the
+ * rest of the page holds the value's bytes.
+ */
+class OverflowStore {
+
+    private static final int HEADER_SIZE = Integer.BYTES;  // Free list head
+    private static final int LINK_SIZE = Integer.BYTES;    // Next page in chain
+
+    private final TableSchema schema;
+    private final int pageSize;
+
+    /**
+     * Creates an OverflowStore for a table. The overflow file is not created until a value is written to it
+     * @param schema The schema of the table
+     */
+    OverflowStore(TableSchema schema) {
+        this.schema = schema;
+        this.pageSize = schema.pageSize;
+    }
+
+    /**
+     * Gets the table's overflow file. It is looked up every time, since a rebuilt table is renamed to the name of
+     * the table it replaces after its pages have been decoded
+     * @return The overflow file
+     */
+    private File file() {
+        return schema.overflowFile();
+    }
+
+    /**
+     * Gets the number of value bytes that fit in a single overflow page
+     * @return The number of bytes
+     */
+    private int payloadSize() {
+        return pageSize - LINK_SIZE;
+    }
+
+    private long pageOffset(int pageIndex) {
+        return HEADER_SIZE + (long) pageIndex * pageSize;
+    }
+
+    /**
+     * Writes a value to a new chain of overflow pages, reusing free pages before growing the file
+     * @param data The bytes of the value
+     * @return The index of the first page in the chain
+     * @throws IOException If there is an error writing to the overflow file
+     */
+    int write(byte[] data) throws IOException {
+        int pageCount = Math.max(1, (data.length + payloadSize() - 1) / payloadSize());
+        try (RandomAccessFile raf = open()) {
+            // Allocate every page first, so each page can be written with its successor
+            int[] pages = new int[pageCount];
+            raf.seek(0);
+            int freeHead = raf.readInt();
+            long fileEnd = Math.max(raf.length(), HEADER_SIZE);
+            int nextNewPage = (int) ((fileEnd - HEADER_SIZE + pageSize - 1) / pageSize);
+            for (int i = 0; i < pageCount; i++) {
+                if (freeHead != -1) {
+                    pages[i] = freeHead;
+                    raf.seek(pageOffset(freeHead));
+                    freeHead = raf.readInt();
+                } else {
+                    pages[i] = nextNewPage++;
+                }
+            }
+            raf.seek(0);
+            raf.writeInt(freeHead);
+            // Write the chain
+            byte[] pageData = new byte[payloadSize()];
+            for (int i = 0; i < pageCount; i++) {
+                int start = i * payloadSize();
+                int length = Math.min(payloadSize(), data.length - start);
+                System.arraycopy(data, start, pageData, 0, length);
+                raf.seek(pageOffset(pages[i]));
+                raf.writeInt(i + 1 < pageCount ? pages[i + 1] : -1);
+                raf.write(pageData);
+            }
+            return pages[0];
+        }
+    }
+
+    /**
+     * Reads a value out of a chain of overflow pages
+     * @param firstPage The index of the first page in the chain
+     * @param length The number of bytes in the value
+     * @return The bytes of the value
+     * @throws IOException If there is an error reading the overflow file, or the chain ends early
+     */
+    byte[] read(int firstPage, int length) throws IOException {
+        byte[] data = new byte[length];
+        try (RandomAccessFile raf = new RandomAccessFile(file(), "r")) {
+            int page = firstPage;
+            int read = 0;
+            while (read < length) {
+                if (page == -1) {
+                    throw new CorruptedDataException("Overflow chain starting at page " + firstPage + " of `" +
+                            file().getName() + "` ended after " + read + " of " + length + " bytes");
+                }
+                raf.seek(pageOffset(page));
+                int next = raf.readInt();
+                int chunk = Math.min(payloadSize(), length - read);
+                raf.readFully(data, read, chunk);
+                read += chunk;
+                page = next;
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Returns every page in a chain to the free list
+     * @param firstPage The index of the first page in the chain
+     * @throws IOException If there is an error updating the overflow file
+     */
+    void free(int firstPage) throws IOException {
+        try (RandomAccessFile raf = open()) {
+            // Find the end of the chain and link it to the current free list
+            int last = firstPage;
+            raf.seek(pageOffset(last));
+            int next = raf.readInt();
+            while (next != -1) {
+                last = next;
+                raf.seek(pageOffset(last));
+                next = raf.readInt();
+            }
+            raf.seek(0);
+            int freeHead = raf.readInt();
+            raf.seek(pageOffset(last));
+            raf.writeInt(freeHead);
+            raf.seek(0);
+            raf.writeInt(firstPage);
+        }
+    }
+
+    /**
+     * Opens the overflow file for writing, creating it with an empty free list if it does not exist yet
+     */
+    private RandomAccessFile open() throws IOException {
+        File file = file();
+        boolean exists = file.exists();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        if (!exists || raf.length() < HEADER_SIZE) {
+            raf.setLength(0);
+            raf.writeInt(-1);
+        }
+        return raf;
+    }
+}
@@ -4,7 +4,12 @@ import exceptions.CustomExceptions.*;
 
 import java.util.ArrayList;
 import java.io.*;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Objects;
 
 /**
  * Represents a page of a Table
@@ -14,40 +19,85 @@ public class Page extends Bufferable {
 
     // The discrepancy between pageSize and recordData size because of additional data
     private final int SIZE_OFFSET = Integer.BYTES; // Record count
+    private static final int RECORD_IDS = 0x40000000;  // Set in the record count of pages which store record IDs
 
     private final TableSchema tableSchema;
-    public int pageNumber;
 
-    public ArrayList<Record> records;
+    // Pages read from disk are not decoded until their records are needed. Until then, `records` is null and
+    // `pageData` holds the page exactly as it was read from disk
+    private ArrayList<Record> records;
+    private byte[] pageData;
+    private int numRecords;
+    private int dataOffset = SIZE_OFFSET;  // Where the record data of pageData starts
+    private RowFormat rowFormat;
+    // Pages written before their table's last alter are decoded with the attributes they were written with, then
+    // upgraded to the current ones. Until the page is rewritten under the current version, `storedVersion` is the
+    // version its data was written under, and `droppedValues` holds each upgraded record's values for attributes
+    // which have since been dropped, so a page which no longer fits once upgraded can be written back as it was
+    private SchemaVersion storedVersion;
+    private RowFormat storedFormat;
+    private IdentityHashMap<Record, Object[]> droppedValues;
+    // Deleting a record from a page of an indexed table leaves a tombstone in its slot, so the slots of the
+    // records after it (and, until the page has record IDs, the B+ tree pointers to them) do not change. Tombstones
+    // are `null` in `records`, and are stored as a bitmap after the record count, which is then written as the
+    // negated number of slots
+    private int deadSlots;
+    private BitSet tombstones;  // The tombstones read from disk, until the records are decoded
+    // The B+ tree points at records by an ID which stays the same as the records around it move, so inserting into
+    // the middle of a page or compacting it does not change any pointers. Pages of indexed tables are given record
+    // IDs before their records first move, and store them between the record count and the record data. Until
+    // then, `recordIds` is null and every record's ID is its slot
+    private int[] recordIds;  // The ID of the record in each slot, tombstones included
+    // The first overflow page of every overflowed value this page currently has written to disk, keyed by the
+    // exact String instance that was decoded from it, so unchanged values do not need to be rewritten on save
+    private IdentityHashMap<Object, Integer> overflowPages = new IdentityHashMap<>();
+    // Every chain this page has written to disk. Interned values can be shared by records which were stored in
+    // different chains, so this may hold chains which are not in overflowPages
+    private HashSet<Integer> writtenOverflowPages = new HashSet<>();
 
 
     /**
-     * Creates a page object from a Page data byte array
+     * Creates a page object from a Page data byte array. The records are not decoded until they are requested
      * @param pageIndex The index into the table file where this page is located
-     * @param pageNumber The number of the page
      * @param pageData The byte array of page data
      * @param tableSchema The schema of the data in this page
      */
-    public Page(int pageIndex, int pageNumber, byte[] pageData, TableSchema tableSchema) throws IOException {
+    public Page(int pageIndex, byte[] pageData, TableSchema tableSchema) throws IOException {
         this.index = pageIndex;
         this.tableSchema = tableSchema;
+        this.storedVersion = tableSchema.getSchemaVersion(tableSchema.getPageVersion(pageIndex));
         if (pageData.length != tableSchema.pageSize) {
+            // The page number is looked up in the schema directly, since `this` is not fully constructed yet
             throw new CorruptedDataException("pageData.length did not match DB pageSize when creating page " +
-                    pageNumber + " in table `" + tableSchema.name + "` (index: " + pageIndex + ")");
+                    tableSchema.getPageNumber(pageIndex) + " in table `" + tableSchema.name + "` (index: " +
+                    pageIndex + ")");
         }
 
-        ByteArrayInputStream inStream = new ByteArrayInputStream(pageData);
-        DataInputStream in = new DataInputStream(inStream);
-        this.pageNumber = pageNumber;
-        int numRecords = in.readInt();
-        // Read in records
-        byte[] recordData = new byte[pageData.length - SIZE_OFFSET];
-        in.readFully(recordData);
-        records = decodeRecords(numRecords, recordData);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(pageData));
+        this.numRecords = in.readInt();
+        if (numRecords >= 0 && (numRecords & RECORD_IDS) != 0) {
+            this.numRecords &= ~RECORD_IDS;
+            this.recordIds = new int[numRecords];
+            for (int i = 0; i < numRecords; i++) {
+                recordIds[i] = (recordIdSize() == Short.BYTES) ? in.readUnsignedShort() : in.readInt();
+            }
+            this.dataOffset = SIZE_OFFSET + recordIdSize() * numRecords;
+        } else if (numRecords < 0) {
+            int slots = -numRecords;
+            byte[] bitmap = new byte[(slots + 7) / 8];
+            in.readFully(bitmap);
+            this.tombstones = BitSet.valueOf(bitmap);
+            this.deadSlots = tombstones.cardinality();
+            this.numRecords = slots - deadSlots;
+            this.dataOffset = SIZE_OFFSET + bitmap.length;
+        }
+        this.pageData = pageData;
+        this.records = null;
     }
 
     /**
-     * Creates a Page from a pre-existing list of Records. Page count for TableSchema is automatically updated
+     * Creates a Page from a pre-existing list of Records. Page count and page order for TableSchema are
+     * automatically updated
      * @param pageIndex The index into the table file where this page is located
      * @param pageNumber The number of the Page
      * @param records The list of records in the Page
@@ -55,10 +105,11 @@ public class Page extends Bufferable {
      */
     public Page(int pageIndex, int pageNumber, ArrayList<Record> records, TableSchema tableSchema) {
         this.index = pageIndex;
-        this.pageNumber = pageNumber;
         this.tableSchema = tableSchema;
         this.records = records;
         tableSchema.incrementPageCount();
+        tableSchema.insertPage(pageNumber, pageIndex);
+        tableSchema.setZoneMap(pageIndex, null);
     }
 
     /**
@@ -69,7 +120,6 @@ public class Page extends Bufferable {
      */
     public Page(int pageIndex, int pageNumber, TableSchema tableSchema) {
         this.index = pageIndex;
-        this.pageNumber = pageNumber;
         this.tableSchema = tableSchema;
         this.records = new ArrayList<>();
 
@@ -79,14 +129,157 @@ public class Page extends Bufferable {
         }
         tableSchema.incrementPageCount();
         tableSchema.insertPage(pageNumber, pageIndex);
+        tableSchema.setZoneMap(pageIndex, null);
     }
 
     /**
-     * Gets the number of records contained in the Page
+     * Gets the number of records contained in the Page, not counting tombstones
      * @return The number of records stored in this Page
      */
     public int recordCount() {
-        return records.size();
+        return slotCount() - deadSlots;
+    }
+
+    /**
+     * Gets the number of slots in the Page. A record's slot is its position in the page counting tombstones
+     * @return The number of records plus the number of tombstones
+     */
+    public int slotCount() {
+        return (records == null) ? numRecords + deadSlots : records.size();
+    }
+
+    /**
+     * Gets the number of slots in the Page holding a tombstone
+     * @return The number of tombstones
+     */
+    public int deadSlots() {
+        return deadSlots;
+    }
+
+    /**
+     * Gets the number of bytes each record ID takes up in the page. IDs are never larger than the most slots the
+     * page has had at once, which is less than the page size
+     * @return The size of a record ID
+     */
+    private int recordIdSize() {
+        return recordIdSize(tableSchema);
+    }
+
+    /**
+     * Gets the number of bytes each record ID takes up in the pages of a table
+     * @param tableSchema The schema of the table
+     * @return The size of a record ID
+     */
+    private static int recordIdSize(TableSchema tableSchema) {
+        return (tableSchema.pageSize > 0xFFFF) ? Integer.BYTES : Short.BYTES;
+    }
+
+    /**
+     * Checks if a record fits in a page of its table on its own. A record which does not can never be written,
+     * since splitting the page it is added to cannot make room for it
+     * @param tableSchema The schema of the table the record belongs to
+     * @param record The record being checked
+     * @return `true` if a page holding only the record and its record ID is no larger than the page size
+     */
+    public static boolean fitsInPage(TableSchema tableSchema, Record record) {
+        ArrayList<Attribute> attributes = tableSchema.attributes;
+        int size = Integer.BYTES + recordIdSize(tableSchema);  // Record count, then the record's ID
+        switch (tableSchema.layout) {
+            case ROW -> {
+                RowFormat format = new RowFormat(tableSchema);
+                size += format.offsetSize + format.recordSize(record);
+            }
+            case PAX -> {
+                size += Integer.BYTES * attributes.size();  // Minipage offsets
+                ArrayList<Record> records = new ArrayList<>(1);
+                records.add(record);
+                for (int i = 0; i < attributes.size(); i++) {
+                    Attribute attr = attributes.get(i);
+                    if (attr.allowsNull()) {
+                        size += 1;  // Null bitmap for the minipage
+                    }
+                    ArrayList<Object> values = columnValues(records, i);
+                    size += ColumnEncoding.choose(attr, values).encodedSize(attr, values);
+                }
+            }
+            case ROW_V1 -> {
+                size += (tableSchema.nullableAttributes() + 7) / 8;  // Bytes to store the null flags
+                for (int i = 0; i < attributes.size(); i++) {
+                    size += valueSize(attributes.get(i), record.rowData.get(i));
+                }
+            }
+        }
+        return size <= tableSchema.pageSize;
+    }
+
+    /**
+     * Gives every record of this page a stable record ID, which is its current slot. From then on, records keep
+     * their ID when other records are added or removed before them, when the page is compacted, and when they are
+     * moved to a new page by a split. Does nothing if the page already has record IDs
+     */
+    public void useRecordIds() {
+        if (recordIds != null) {
+            return;
+        }
+        recordIds = new int[slotCount()];
+        for (int slot = 0; slot < recordIds.length; slot++) {
+            recordIds[slot] = slot;
+        }
+        if (tableSchema.layout != PageLayout.PAX) {
+            tableSchema.freeSpace().consume(index, recordIdSize() * recordCount());
+        }
+    }
+
+    /**
+     * Removes this page's tombstones and record IDs, so every record's ID is its slot again. Only safe when
+     * nothing points at the page's records, such as while the table's B+ tree is being rebuilt. The records are
+     * decoded, so the page is rewritten without its IDs when it is saved
+     */
+    public void dropRecordIds() {
+        compact();
+        if (recordIds == null) {
+            return;
+        }
+        getRecords();  // Undecoded pages are never saved, which would leave the IDs on disk
+        if (tableSchema.layout != PageLayout.PAX) {
+            tableSchema.freeSpace().release(index, recordIdSize() * recordCount());
+        }
+        recordIds = null;
+    }
+
+    /**
+     * Gets the ID of the record in a slot, which B+ tree pointers refer to it by
+     * @param slot The slot of the record
+     * @return The record's ID; its slot if this page does not have record IDs
+     */
+    public int recordId(int slot) {
+        return (recordIds == null) ? slot : recordIds[slot];
+    }
+
+    /**
+     * Finds the slot of the record with a given ID
+     * @param recordId The ID of the record
+     * @return The slot of the record; `-1` if no slot has that ID
+     */
+    public int findSlot(int recordId) {
+        if (recordIds == null) {
+            return (recordId >= 0 && recordId < slotCount()) ? recordId : -1;
+        }
+        for (int slot = 0; slot < slotCount(); slot++) {
+            if (recordIds[slot] == recordId) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the position of this page in its table. Page numbers shift as pages are inserted and removed, so
+     * they are looked up in the table's page order rather than stored in the page
+     * @return The page number; `-1` if the page has been removed from its table
+     */
+    public int pageNumber() {
+        return tableSchema.getPageNumber(index);
     }
 
     /**
@@ -106,12 +299,202 @@ public class Page extends Bufferable {
     }
 
     /**
-     * Returns the number of bytes taken up by all records in this Page
+     * Gets the layout of records in ROW layout pages, computing it the first time it is needed
+     * @return The record layout for this page's table
+     */
+    private RowFormat rowFormat() {
+        if (rowFormat == null) {
+            rowFormat = new RowFormat(tableSchema);
+        }
+        return rowFormat;
+    }
+
+    /**
+     * Gets the attributes the page data was encoded with
+     * @return The table's attributes as of the version this page was written under
+     */
+    private ArrayList<Attribute> storedAttributes() {
+        return (storedVersion == null) ? tableSchema.attributes : storedVersion.attributes;
+    }
+
+    /**
+     * Gets the layout of the records in the page data of a ROW layout page
+     * @return The record layout as of the version this page was written under
+     */
+    private RowFormat storedFormat() {
+        if (storedVersion == null) {
+            return rowFormat();
+        }
+        if (storedFormat == null) {
+            storedFormat = new RowFormat(tableSchema, storedVersion.attributes);
+        }
+        return storedFormat;
+    }
+
+    /**
+     * Interns a value decoded from the page data, unless its attribute has since been dropped
+     * @param column The index of the value's attribute in the page data
+     * @param value The decoded value
+     * @return A value equal to the given one
+     */
+    private Object intern(int column, Object value) {
+        int current = (storedVersion == null) ? column : storedVersion.currentColumn(column);
+        return (current == -1) ? value : tableSchema.intern(current, value);
+    }
+
+    /**
+     * Returns the number of bytes taken up by all records in this Page. The page's entry in the table's
+     * FreeSpaceMap is updated with the result
      * @return The number of bytes
      */
     public int pageDataSize() {
+        int totalSize = measureRecords();
+        tableSchema.freeSpace().measure(index, tableSchema.pageSize - totalSize);
+        return totalSize;
+    }
+
+    /**
+     * Checks if a record can be added to this page without it going over size, using only the table's
+     * FreeSpaceMap. PAX pages can grow by more than the size of the new record (e.g. when a dictionary needs
+     * wider codes), so they are never reported as having room
+     * @param record The record being added
+     * @return `true` if the record definitely fits; `false` if pageDataSize() needs to be checked
+     */
+    public boolean hasRoomFor(Record record) {
+        return hasRoomFor(record, 0);
+    }
+
+    /**
+     * Checks if a record can be added to this page while still leaving a number of bytes free, using only the
+     * table's FreeSpaceMap
+     * @param record The record being added
+     * @param reserve The number of bytes which must still be free after the record is added
+     * @return `true` if the record definitely fits; `false` if pageDataSize() needs to be checked
+     */
+    public boolean hasRoomFor(Record record, int reserve) {
+        return tableSchema.layout != PageLayout.PAX &&
+                tableSchema.freeSpace().fits(index, recordSize(record) + reserve);
+    }
+
+    /**
+     * Adds a record to this page and lowers the page's free space class to match. This does not check if the
+     * page is now over size
+     * @param recordIndex The position in the page to insert the record at, or `-1` to add it to the end
+     * @param record The record being added
+     * @return The ID of the new record. If the page has record IDs, this is the smallest ID not in use
+     */
+    public int addRecord(int recordIndex, Record record) {
+        int slot = (recordIndex == -1) ? slotCount() : recordIndex;
+        slots().add(slot, record);
+        int recordId = slot;
+        if (recordIds != null) {
+            BitSet used = new BitSet(recordIds.length);
+            for (int id : recordIds) {
+                used.set(id);
+            }
+            recordId = used.nextClearBit(0);
+            int[] grown = new int[recordIds.length + 1];
+            System.arraycopy(recordIds, 0, grown, 0, slot);
+            System.arraycopy(recordIds, slot, grown, slot + 1, recordIds.length - slot);
+            grown[slot] = recordId;
+            recordIds = grown;
+        }
+        if (tableSchema.layout != PageLayout.PAX) {
+            tableSchema.freeSpace().consume(index, recordSize(record));
+        }
+        return recordId;
+    }
+
+    /**
+     * Removes a record from this page and raises the page's free space class to match
+     * @param recordIndex The slot of the record in the page
+     * @return The record that was removed
+     */
+    public Record removeRecord(int recordIndex) {
+        Record removed = slots().remove(recordIndex);
+        if (recordIds != null) {
+            int[] shrunk = new int[recordIds.length - 1];
+            System.arraycopy(recordIds, 0, shrunk, 0, recordIndex);
+            System.arraycopy(recordIds, recordIndex + 1, shrunk, recordIndex, shrunk.length - recordIndex);
+            recordIds = shrunk;
+        }
+        if (tableSchema.layout != PageLayout.PAX) {
+            tableSchema.freeSpace().release(index, recordSize(removed));
+        }
+        return removed;
+    }
+
+    /**
+     * Gets the record in a slot of this page
+     * @param slot The slot of the record
+     * @return The record; `null` if the slot holds a tombstone
+     */
+    public Record slotRecord(int slot) {
+        return slots().get(slot);
+    }
+
+    /**
+     * Deletes a record by replacing it with a tombstone, which keeps the slots of every other record the same.
+     * The page's free space class is raised to match
+     * @param slot The slot of the record in the page
+     * @return The record that was deleted
+     */
+    public Record tombstone(int slot) {
+        Record removed = slots().set(slot, null);
+        if (removed == null) {
+            throw new IllegalArgumentException("Slot " + slot + " of " + this + " is already a tombstone");
+        }
+        deadSlots++;
+        if (tableSchema.layout != PageLayout.PAX) {
+            tableSchema.freeSpace().release(index, recordSize(removed));
+        }
+        return removed;
+    }
+
+    /**
+     * Removes every tombstone from this page, moving the records after them into their slots. Records keep their
+     * IDs if the page has record IDs; otherwise, any B+ tree pointers into this page need to be renumbered
+     */
+    public void compact() {
+        if (deadSlots == 0) {
+            return;
+        }
+        ArrayList<Record> slots = slots();
+        if (recordIds != null) {
+            int[] live = new int[slots.size() - deadSlots];
+            int i = 0;
+            for (int slot = 0; slot < slots.size(); slot++) {
+                if (slots.get(slot) != null) {
+                    live[i++] = recordIds[slot];
+                }
+            }
+            recordIds = live;
+        }
+        slots.removeIf(Objects::isNull);
+        deadSlots = 0;
+    }
+
+    /**
+     * Adds up the number of bytes the records of this page take up once encoded
+     * @return The number of bytes
+     */
+    private int measureRecords() {
+        ArrayList<Record> records = getRecords();
+        if (tableSchema.layout == PageLayout.PAX) {
+            // Record count and IDs, then one offset for each minipage
+            int totalSize = encodedHeaderSize() + Integer.BYTES * tableSchema.attributes.size();
+            for (int i = 0; i < tableSchema.attributes.size(); i++) {
+                Attribute attr = tableSchema.attributes.get(i);
+                if (attr.allowsNull()) {
+                    totalSize += (records.size() + 7) / 8;  // Null bitmap for the minipage
+                }
+                ArrayList<Object> values = columnValues(records, i);
+                totalSize += ColumnEncoding.choose(attr, values).encodedSize(attr, values);
+            }
+            return totalSize;
+        }
         // Calculate the total size of every record in the page
-        int totalSize = SIZE_OFFSET;
+        int totalSize = headerSize();
         for (Record record : records) {
             totalSize += recordSize(record);
         }
@@ -119,68 +502,339 @@ public class Page extends Bufferable {
     }
 
     /**
-     * Gets the number of bytes taken up by a given record
+     * Gets the number of bytes taken up by a given record, including its slot and record ID in the page
      * @return The number of bytes
      */
     public int recordSize(Record record) {
-        int size = (tableSchema.nullableAttributes() + 7) / 8;  // Bytes to store the null flags
+        int idSize = (recordIds == null) ? 0 : recordIdSize();
+        if (tableSchema.layout == PageLayout.ROW) {
+            return idSize + rowFormat().offsetSize + rowFormat().recordSize(record);
+        }
+        int size = idSize + (tableSchema.nullableAttributes() + 7) / 8;  // Bytes to store the null flags
         for (int i = 0; i < tableSchema.attributes.size(); i++) {
-            Attribute attr = tableSchema.attributes.get(i);
-            // Null values are not recorded and thus take up no space
-            if (record.rowData.get(i) == null) { continue; }
-            // CHAR and VARCHAR need their length read directly for each value
-            if (attr.type == AttributeType.VARCHAR || attr.type == AttributeType.CHAR) {
-                size += 2 * ((String) record.rowData.get(i)).length();
+            size += valueSize(tableSchema.attributes.get(i), record.rowData.get(i));
+        }
+        return size;
+    }
+
+    /**
+     * Gets the number of bytes a single value takes up once encoded
+     * @param attr The attribute the value belongs to
+     * @param value The value being measured
+     * @return The number of bytes
+     */
+    static int valueSize(Attribute attr, Object value) {
+        // Null values are not recorded and thus take up no space
+        if (value == null) {
+            return 0;
+        }
+        // CHAR and VARCHAR need their length read directly for each value
+        if (attr.type == AttributeType.VARCHAR || attr.type == AttributeType.CHAR) {
+            return Short.BYTES + utfLength((String) value);
+        }
+        return attr.length;
+    }
+
+    /**
+     * Gets the number of bytes a String takes up when written with DataOutput.writeUTF(), not counting the
+     * two byte length prefix
+     * @param s The string being measured
+     * @return The number of bytes
+     */
+    private static int utfLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length += 1;
+            } else if (c <= 0x07FF) {
+                length += 2;
             } else {
-                size += attr.length;
+                length += 3;
             }
         }
-        return size;
+        return length;
     }
 
     /**
-     * Gets the list of records in this Page
+     * Gets the number of bytes of this page's header which do not belong to any one record. Record IDs are counted
+     * by recordSize() instead
+     * @return The size of the record count and tombstone bitmap. Pages with record IDs do not store their
+     * tombstones, since no pointer refers to a record by its slot
+     */
+    private int headerSize() {
+        if (recordIds != null) {
+            return SIZE_OFFSET;
+        }
+        return SIZE_OFFSET + ((deadSlots > 0) ? (slotCount() + 7) / 8 : 0);
+    }
+
+    /**
+     * Gets the number of bytes before the record data of this page once it is encoded
+     * @return The size of the header, including the record IDs
+     */
+    private int encodedHeaderSize() {
+        return headerSize() + ((recordIds == null) ? 0 : recordIdSize() * recordCount());
+    }
+
+    /**
+     * Gets the list of records in this Page, decoding them if that has not happened yet. Since the returned list
+     * can be modified, the page's zone map is cleared until the page is saved again. If the page has tombstones,
+     * the returned list is a copy holding only the live records, so it should not be modified
      * @return The list of records
      */
     public ArrayList<Record> getRecords() {
+        ArrayList<Record> slots = slots();
+        if (deadSlots == 0) {
+            return slots;
+        }
+        ArrayList<Record> live = new ArrayList<>(slots.size() - deadSlots);
+        for (Record record : slots) {
+            if (record != null) {
+                live.add(record);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Gets every slot of this Page, decoding the records if that has not happened yet. Tombstones are `null`
+     * @return The list of slots
+     */
+    private ArrayList<Record> slots() {
+        if (records == null) {
+            records = decode(null);
+            if (tableSchema.layout == PageLayout.ROW) {
+                findOverflowPages();
+            }
+            if (storedVersion != null) {
+                upgradeRecords();
+            }
+            if (tombstones != null) {
+                for (int slot = tombstones.nextSetBit(0); slot >= 0; slot = tombstones.nextSetBit(slot + 1)) {
+                    records.add(slot, null);
+                }
+                tombstones = null;
+            }
+            pageData = null;  // The decoded records are now the source of truth
+            if (storedVersion != null) {
+                // The free space the page had under its old version says nothing about how much it has now
+                tableSchema.freeSpace().measure(index, tableSchema.pageSize - measureRecords());
+            }
+        }
+        tableSchema.setZoneMap(index, null);
         return records;
     }
 
     /**
-     * Converts a binary array of data into a list of records
+     * Converts the records that were just decoded from pageData to the table's current attributes, remembering
+     * the values of any attributes which have been dropped since the page was written
+     */
+    private void upgradeRecords() {
+        boolean keepDropped = storedVersion.hasDroppedColumns();
+        droppedValues = keepDropped ? new IdentityHashMap<>() : null;
+        for (int i = 0; i < records.size(); i++) {
+            Record stored = records.get(i);
+            Record upgraded = storedVersion.upgrade(stored, tableSchema.attributes);
+            if (keepDropped) {
+                Object[] dropped = new Object[stored.size()];
+                for (int a = 0; a < dropped.length; a++) {
+                    if (storedVersion.currentColumn(a) == -1) {
+                        dropped[a] = stored.get(a);
+                    }
+                }
+                droppedValues.put(upgraded, dropped);
+            }
+            records.set(i, upgraded);
+        }
+    }
+
+    /**
+     * Fills overflowPages with the overflowed values of the records that were just decoded from pageData
+     */
+    private void findOverflowPages() {
+        RowFormat format = storedFormat();
+        try {
+            for (int i = 0; i < numRecords; i++) {
+                int slot = format.readOffset(pageData, dataOffset + format.offsetSize * i);
+                for (int a = 0; a < storedAttributes().size(); a++) {
+                    int overflowPage = format.overflowPage(pageData, slot, a);
+                    if (overflowPage != -1) {
+                        overflowPages.put(records.get(i).get(a), overflowPage);
+                        writtenOverflowPages.add(overflowPage);
+                    }
+                }
+            }
+        } catch (CorruptedDataException cde) {
+            throw new UncheckedIOException("Failed to read overflow pointers of " + this, cde);
+        }
+    }
+
+    /**
+     * Frees every overflow page used by the records of this page. Used when the page is being dropped from its table
+     * @throws IOException If there is an error updating the table's overflow file
+     */
+    public void freeOverflowPages() throws IOException {
+        if (tableSchema.layout != PageLayout.ROW) {
+            return;
+        }
+        getRecords();
+        for (int overflowPage : writtenOverflowPages) {
+            new OverflowStore(tableSchema).free(overflowPage);
+        }
+        overflowPages.clear();
+        writtenOverflowPages.clear();
+    }
+
+    /**
+     * Reads a single attribute of a record. For ROW layout pages that have not been decoded yet, the value is
+     * read straight from the page data without decoding anything else
+     * @param recordIndex The index of the record in the page
+     * @param column The index of the attribute
+     * @return The value of the attribute
+     */
+    public Object getField(int recordIndex, int column) {
+        if (records != null || tableSchema.layout != PageLayout.ROW || storedVersion != null) {
+            return getRecords().get(recordIndex).get(column);
+        }
+        if (recordIndex < 0 || recordIndex >= numRecords) {
+            throw new IndexOutOfBoundsException("Record index " + recordIndex + " out of bounds for " + this);
+        }
+        RowFormat format = rowFormat();
+        try {
+            int slot = format.readOffset(pageData, dataOffset + format.offsetSize * recordIndex);
+            return format.readField(pageData, slot, column);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed to read record " + recordIndex + " of " + this, ioe);
+        }
+    }
+
+    /**
+     * Checks if a single attribute of a record is equal to a value. For ROW layout pages that have not been
+     * decoded yet, overflowed values are only read if their length and first few bytes match the value
+     * @param recordIndex The index of the record in the page
+     * @param column The index of the attribute
+     * @param value The value to compare against
+     * @return `true` if the attribute is equal to the value
+     */
+    public boolean fieldEquals(int recordIndex, int column, Object value) {
+        if (records != null || tableSchema.layout != PageLayout.ROW || storedVersion != null) {
+            return Objects.equals(value, getRecords().get(recordIndex).get(column));
+        }
+        if (recordIndex < 0 || recordIndex >= numRecords) {
+            throw new IndexOutOfBoundsException("Record index " + recordIndex + " out of bounds for " + this);
+        }
+        RowFormat format = rowFormat();
+        try {
+            int slot = format.readOffset(pageData, dataOffset + format.offsetSize * recordIndex);
+            return format.fieldEquals(pageData, slot, column, value);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed to read record " + recordIndex + " of " + this, ioe);
+        }
+    }
+
+    /**
+     * Gets the records of this page, only decoding a subset of their attributes. Attributes that are not
+     * requested are left as `null`. For PAX pages, the minipages of unrequested attributes are never read.
+     * The returned Records should be treated as read-only.
+     * @param columns A flag for every attribute in the table, set to `true` if that attribute is needed.
+     *                `null` requests every attribute
+     * @return The list of records
+     */
+    public ArrayList<Record> getRecords(boolean[] columns) {
+        if (records != null || columns == null || storedVersion != null) {
+            return getRecords();
+        }
+        boolean allColumns = true;
+        for (boolean column : columns) {
+            allColumns &= column;
+        }
+        if (allColumns) {
+            return getRecords();
+        }
+        return decode(columns);
+    }
+
+    /**
+     * Decodes the page data this Page was created with
+     * @param columns A flag for every attribute that should be decoded; `null` to decode every attribute
+     * @return The list of decoded records
+     */
+    private ArrayList<Record> decode(boolean[] columns) {
+        try {
+            if (tableSchema.layout == PageLayout.PAX) {
+                return decodeColumns(columns);
+            } else if (tableSchema.layout == PageLayout.ROW) {
+                return decodeSlots(columns);
+            }
+            byte[] recordData = new byte[pageData.length - dataOffset];
+            System.arraycopy(pageData, dataOffset, recordData, 0, recordData.length);
+            return decodeRecords(numRecords, recordData, columns);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed to decode page " + pageNumber() + " of table `" +
+                    tableSchema.name + "` (index: " + index + ")", ioe);
+        }
+    }
+
+    /**
+     * Decodes the records of a ROW layout page. The page starts with the offset of every record in the page
+     * (its slot), followed by the records themselves
+     * @param columns A flag for every attribute that should be decoded; `null` to decode every attribute
+     * @return The list of records that was stored in the page
+     */
+    private ArrayList<Record> decodeSlots(boolean[] columns) throws IOException {
+        RowFormat format = storedFormat();
+        ArrayList<Record> records = new ArrayList<>(numRecords);
+        for (int i = 0; i < numRecords; i++) {
+            int slot = format.readOffset(pageData, dataOffset + format.offsetSize * i);
+            Record record = format.decode(pageData, slot, columns);
+            for (int a = 0; a < record.size(); a++) {
+                record.rowData.set(a, intern(a, record.get(a)));
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Converts a binary array of data in the ROW_V1 layout into a list of records
      * @param numRecords The number of records contained within the byte array
      * @param recordData The byte array containing the encoded record data
+     * @param columns A flag for every attribute that should be kept; `null` to keep every attribute
      * @return The list of records that was stored in the data array
      */
-    private ArrayList<Record> decodeRecords(int numRecords, byte[] recordData) throws IOException {
+    private ArrayList<Record> decodeRecords(int numRecords, byte[] recordData, boolean[] columns) throws IOException {
         ArrayList<Record> records = new ArrayList<>(numRecords);
         ByteArrayInputStream inStream = new ByteArrayInputStream(recordData);
         DataInputStream in = new DataInputStream(inStream);
-        byte[] nullableFlags = new byte[(tableSchema.nullableAttributes() + 7) / 8];
+        ArrayList<Attribute> attributes = storedAttributes();
+        byte[] nullableFlags = new byte[(TableSchema.nullableAttributes(attributes) + 7) / 8];
         int nullableFlagBit;
         for (int i = 0; i < numRecords; i++) {
             ArrayList<Object> recordAttr = new ArrayList<>();
             in.readFully(nullableFlags);  // This has no effect if nullable attributes is 0
             nullableFlagBit = 0;
-            for (Attribute attr : tableSchema.attributes) {
+            for (int a = 0; a < attributes.size(); a++) {
+                Attribute attr = attributes.get(a);
                 // For nullable fields, check if null flag is set
-                if (!attr.notNull && !attr.primaryKey) {
+                if (attr.allowsNull()) {
                     int nullableMask = 1 << (nullableFlagBit % 8);
+                    int nullableByte = nullableFlagBit / 8;
                     nullableFlagBit += 1;
                     // If null bit is true, value is null and should be skipped
-                    if ((nullableFlags[nullableFlagBit / 8] & nullableMask) != 0) {
+                    if ((nullableFlags[nullableByte] & nullableMask) != 0) {
                         recordAttr.add(null);
                         continue;
                     }
                 }
-                // For non-null values, read their values into the row data
-                switch (attr.type) {
-                    case INT -> recordAttr.add(in.readInt());
-                    case DOUBLE -> recordAttr.add(in.readDouble());
-                    case BOOLEAN -> recordAttr.add(in.readBoolean());
-                    case CHAR, VARCHAR -> recordAttr.add(in.readUTF());
-                    default -> throw new IOException("Invalid attribute type: " + attr.type);
+                // Attributes which were not requested are skipped over without being decoded
+                if (columns != null && !columns[a]) {
+                    skipValue(in, attr);
+                    recordAttr.add(null);
+                    continue;
                 }
+                // For non-null values, read their values into the row data
+                recordAttr.add(intern(a, readValue(in, attr)));
             }
             records.add( new Record(recordAttr));
         }
@@ -188,48 +842,251 @@ public class Page extends Bufferable {
     }
 
     /**
-     * Splits the data of this page in half, transferring half to a new Page which is then returned. This new
-     * Page will be given a default page number of -1. 'Half' is determined by data size, not record count.
-     * This Page and the child will have their prev/next indices updated, but updating child.next() will still
-     * be required.
+     * Converts the minipages of a PAX page into a list of records
+     * @param columns A flag for every attribute that should be decoded; `null` to decode every attribute
+     * @return The list of records that was stored in the page
+     */
+    private ArrayList<Record> decodeColumns(boolean[] columns) throws IOException {
+        ArrayList<Attribute> attributes = storedAttributes();
+        // Pre-size every row so columns can be filled in one at a time
+        ArrayList<Record> records = new ArrayList<>(numRecords);
+        for (int i = 0; i < numRecords; i++) {
+            ArrayList<Object> rowData = new ArrayList<>(attributes.size());
+            for (int a = 0; a < attributes.size(); a++) {
+                rowData.add(null);
+            }
+            records.add(new Record(rowData));
+        }
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(pageData, dataOffset,
+                Integer.BYTES * attributes.size()));
+        for (int a = 0; a < attributes.size(); a++) {
+            int minipageOffset = header.readInt();
+            if (columns != null && !columns[a]) {
+                continue;
+            }
+            Attribute attr = attributes.get(a);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(pageData, minipageOffset,
+                    pageData.length - minipageOffset));
+            byte[] nullFlags = new byte[attr.allowsNull() ? (numRecords + 7) / 8 : 0];
+            in.readFully(nullFlags);
+            int nullCount = 0;
+            for (byte flags : nullFlags) {
+                nullCount += Integer.bitCount(flags & 0xFF);
+            }
+            ArrayList<Object> values = ColumnEncoding.read(in, attr, numRecords - nullCount);
+            int valueIndex = 0;
+            for (int i = 0; i < numRecords; i++) {
+                if (nullFlags.length > 0 && (nullFlags[i / 8] & (1 << (i % 8))) != 0) {
+                    continue;  // Null values are not stored in the minipage
+                }
+                records.get(i).rowData.set(a, intern(a, values.get(valueIndex++)));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Gets the distinct values of an attribute in this page without decoding any records. This is only
+     * possible if this is a PAX page which has not been decoded, the attribute's minipage is dictionary
+     * encoded, and the attribute is not null in any record of the page
+     * @param column The index of the attribute
+     * @return Every value the attribute takes in this page. `null` if the values cannot be found without decoding
+     */
+    public Object[] dictionary(int column) {
+        if (records != null || tableSchema.layout != PageLayout.PAX || storedVersion != null) {
+            return null;
+        }
+        Attribute attr = tableSchema.attributes.get(column);
+        try {
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(pageData,
+                    dataOffset + Integer.BYTES * column, Integer.BYTES));
+            int minipageOffset = header.readInt();
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(pageData, minipageOffset,
+                    pageData.length - minipageOffset));
+            if (attr.allowsNull()) {
+                byte[] nullFlags = new byte[(numRecords + 7) / 8];
+                in.readFully(nullFlags);
+                for (byte flags : nullFlags) {
+                    if (flags != 0) {
+                        return null;
+                    }
+                }
+            }
+            return ColumnEncoding.readDictionaryIfPresent(in, attr);
+        } catch (IOException ioe) {
+            return null;  // Let the page be decoded normally, which will report the problem
+        }
+    }
+
+    /**
+     * Gets the non-null values of a single attribute from a list of records
+     * @param records The records to read from
+     * @param column The index of the attribute
+     * @return The non-null values in record order
+     */
+    private static ArrayList<Object> columnValues(Collection<Record> records, int column) {
+        ArrayList<Object> values = new ArrayList<>(records.size());
+        for (Record record : records) {
+            Object value = record.rowData.get(column);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Reads a single non-null value from a stream
+     * @param in The stream to read from
+     * @param attr The attribute the value belongs to
+     * @return The value that was read
+     */
+    static Object readValue(DataInputStream in, Attribute attr) throws IOException {
+        return switch (attr.type) {
+            case INT -> in.readInt();
+            case DOUBLE -> in.readDouble();
+            case BOOLEAN -> in.readBoolean();
+            case CHAR, VARCHAR -> in.readUTF();
+        };
+    }
+
+    /**
+     * Skips over a single non-null value in a stream without decoding it
+     * @param in The stream to read from
+     * @param attr The attribute the value belongs to
+     */
+    private static void skipValue(DataInputStream in, Attribute attr) throws IOException {
+        int length = switch (attr.type) {
+            case CHAR, VARCHAR -> in.readUnsignedShort();
+            default -> attr.length;
+        };
+        in.skipBytes(length);
+    }
+
+    /**
+     * Splits the data of this page, transferring the end of it to a new Page which is then returned. The new Page
+     * is inserted into the table's page order directly after this one. This page keeps the table's split ratio of
+     * the page size, determined by data size rather than record count, except for PAX pages, which are split by
+     * record count. Each page keeps at least one record. The page is compacted first. If this page has record IDs,
+     * the moved records keep theirs in the new page
      * @param childPageIndex The page index that will be assigned to the child page
-     * @return The new page containing half the records that were in this Page
+     * @return The new page containing the records that were moved out of this Page
      */
     public Page split(int childPageIndex) {
+        compact();
+        ArrayList<Record> records = slots();
         ArrayList<Record> splitRecords = new ArrayList<>();
+        if (tableSchema.layout == PageLayout.PAX) {
+            // The encoded size of a PAX page depends on which values end up together, so just split by count
+            int keep = Math.clamp((long) records.size() * tableSchema.splitRatio / 100, 1, records.size() - 1);
+            splitRecords.addAll(records.subList(keep, records.size()));
+            records.subList(keep, records.size()).clear();
+            return splitIds(new Page(childPageIndex, pageNumber() + 1, splitRecords, tableSchema));
+        }
+        int remainingSize = headerSize();
+        for (Record record : records) {
+            remainingSize += recordSize(record);
+        }
         int newSize = 0;
-        int pageSize = tableSchema.pageSize;
-        while (newSize < pageSize / 2) {
-            // Check if moving the new record over will get the page below half size, ending the split
+        int target = (int) ((long) tableSchema.pageSize * (100 - tableSchema.splitRatio) / 100);
+        int fillBytes = tableSchema.fillBytes();
+        while (records.size() > 1 && (newSize < target || remainingSize > fillBytes)) {
             int splitRecordSize = recordSize(records.getLast());
-            if (newSize + splitRecordSize > pageSize / 2) {
-                // If keeping the Record is closer (or equal) to an even split than moving it over, keep it
-                if ((pageSize / 2) - newSize <= (newSize + splitRecordSize) - (pageSize / 2)) {
+            // Once this page fits, stop if the child would go over the fill factor, or if keeping the Record is
+            // closer (or equal) to the split point than moving it over
+            if (!splitRecords.isEmpty() && remainingSize <= fillBytes) {
+                if (headerSize() + newSize + splitRecordSize > fillBytes) {
+                    break;
+                }
+                if (newSize + splitRecordSize > target && target - newSize <= (newSize + splitRecordSize) - target) {
                     break;
                 }
             }
-            // If not, move it over and update the new size of the current page
+            // If not, move it over and update the sizes of both pages
             splitRecords.addFirst(records.removeLast());
             newSize += splitRecordSize;
+            remainingSize -= splitRecordSize;
+        }
+        Page childPage = new Page(childPageIndex, pageNumber() + 1, splitRecords, tableSchema);
+        return splitIds(childPage);
+    }
+
+    /**
+     * Moves the record IDs of the records that were split off into a new page along with them
+     * @param childPage The new page, holding the records that were split off the end of this page
+     * @return The new page
+     */
+    private Page splitIds(Page childPage) {
+        if (recordIds != null) {
+            int keep = recordIds.length - childPage.slotCount();
+            childPage.recordIds = Arrays.copyOfRange(recordIds, keep, recordIds.length);
+            recordIds = Arrays.copyOf(recordIds, keep);
         }
-        Page childPage = new Page(childPageIndex, pageNumber + 1, splitRecords, tableSchema);
         return childPage;
     }
 
     /**
-     * Converts a collection of records into an array of bytes. This array will be at minimum the size of the page,
+     * Converts a collection of records into the slots and records of a ROW layout page. The array will be at
+     * minimum the size of the page, but may be longer if the list of records cannot fit in the page.
+     * Overflowed values which were already written by this page are reused, new ones are written to the
+     * overflow file, and ones which are no longer in the page are freed.
+     * @param records The records being encoded
+     * @param format The layout to encode the records with
+     * @return An array of bytes containing the slots and data of the records
+     * @throws IOException If there is an error encoding the data
+     */
+    private byte[] encodeSlots(Collection<Record> records, RowFormat format) throws IOException {
+        ByteArrayOutputStream slotStream = new ByteArrayOutputStream();
+        DataOutputStream slots = new DataOutputStream(slotStream);
+        ByteArrayOutputStream recordStream = new ByteArrayOutputStream();
+        int dataStart = encodedHeaderSize() + format.offsetSize * records.size();
+        OverflowStore overflow = new OverflowStore(tableSchema);
+        IdentityHashMap<Object, Integer> keptPages = new IdentityHashMap<>();
+        RowFormat.OverflowWriter overflowWriter = (value, bytes) -> {
+            Integer overflowPage = keptPages.get(value);
+            if (overflowPage == null) {
+                overflowPage = overflowPages.get(value);
+            }
+            if (overflowPage == null) {
+                overflowPage = overflow.write(bytes);
+            }
+            keptPages.put(value, overflowPage);
+            return overflowPage;
+        };
+        for (Record record : records) {
+            format.writeOffset(slots, dataStart + recordStream.size());
+            recordStream.write(format.encode(record, overflowWriter));
+        }
+        // Free the chains of values that left the page. Several values can share a chain, so compare by page
+        HashSet<Integer> keptChains = new HashSet<>(keptPages.values());
+        for (int overflowPage : writtenOverflowPages) {
+            if (!keptChains.contains(overflowPage)) {
+                overflow.free(overflowPage);
+            }
+        }
+        overflowPages = keptPages;
+        writtenOverflowPages = keptChains;
+        slotStream.write(recordStream.toByteArray());
+        byte[] recordData = new byte[Math.max(tableSchema.pageSize - encodedHeaderSize(), slotStream.size())];
+        System.arraycopy(slotStream.toByteArray(), 0, recordData, 0, slotStream.size());
+        return recordData;
+    }
+
+    /**
+     * Converts a collection of records into an array of bytes in the ROW_V1 layout. This array will be at minimum the size of the page,
      * but may be longer if the list of records cannot fit in the page.
      * @param records The records being encoded
+     * @param attributes The attributes to encode the records with
      * @return An array of bytes containing the data of the records
      * @throws IOException If there is an error encoding the data
      */
-    private byte[] encodeRecords(Collection<Record> records) throws IOException {
+    private byte[] encodeRecords(Collection<Record> records, ArrayList<Attribute> attributes) throws IOException {
         ByteArrayOutputStream outStream = new ByteArrayOutputStream();
         DataOutputStream out = new DataOutputStream(outStream);
         for (Record record : records) {
-            out.write(encodeRecord(record));
+            out.write(encodeRecord(record, attributes));
         }
-        byte[] recordData = new byte[tableSchema.pageSize - SIZE_OFFSET];
+        byte[] recordData = new byte[Math.max(tableSchema.pageSize - encodedHeaderSize(), outStream.size())];
         System.arraycopy(outStream.toByteArray(), 0, recordData, 0, outStream.size());
         return recordData;
     }
@@ -237,15 +1094,15 @@ public class Page extends Bufferable {
     /**
      * Encodes a single record to a binary array
      * @param record The record to encode
+     * @param attributes The attributes to encode the record with
      * @return The record's data stored as a byte array
      * @throws IOException If there is an error while encoding the record
      */
-    private byte[] encodeRecord(Record record) throws IOException {
+    private byte[] encodeRecord(Record record, ArrayList<Attribute> attributes) throws IOException {
         ByteArrayOutputStream outStream = new ByteArrayOutputStream();
         DataOutputStream out = new DataOutputStream(outStream);
-        ArrayList<Attribute> attributes = tableSchema.attributes;
         // Start with the null flags for all nullable attributes
-        int nullable = tableSchema.nullableAttributes();
+        int nullable = TableSchema.nullableAttributes(attributes);
         if (nullable > 0) {
             byte[] nullableBytes = new byte[(nullable + 7) / 8];
             int nullFlagBit = 0;
@@ -262,54 +1119,174 @@ public class Page extends Bufferable {
         }
         // Write out attributes
         for (int i = 0; i < attributes.size(); i++) {
-            Attribute attr = attributes.get(i);
             Object value = record.rowData.get(i);
             if (value == null) { continue; }  // Null values are not written to file
-            switch (attr.type) {
-                case INT -> out.writeInt((Integer) value);
-                case DOUBLE -> out.writeDouble((Double) value);
-                case BOOLEAN -> out.writeBoolean((Boolean) value);
-                case CHAR, VARCHAR -> out.writeUTF((String) value);
-                default -> throw new IOException("Invalid attribute type: " + attr.type);
-            }
+            writeValue(out, attributes.get(i), value);
         }
         return outStream.toByteArray();
     }
 
     /**
-     * Saves this Page to its corresponding table file
+     * Converts a collection of records into the minipages of a PAX page. The returned array starts with
+     * the offset of every minipage (relative to the start of the page) followed by the minipages themselves.
+     * Each minipage holds a null bitmap (nullable attributes only) followed by every non-null value of its attribute,
+     * stored with whichever ColumnEncoding takes up the least space.
+     * @param records The records being encoded
+     * @param attributes The attributes to encode the records with
+     * @return An array of bytes containing the data of the records
+     * @throws IOException If there is an error encoding the data
+     */
+    private byte[] encodeColumns(Collection<Record> records, ArrayList<Attribute> attributes) throws IOException {
+        ByteArrayOutputStream headerStream = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerStream);
+        ByteArrayOutputStream minipageStream = new ByteArrayOutputStream();
+        DataOutputStream minipages = new DataOutputStream(minipageStream);
+        int dataStart = encodedHeaderSize() + Integer.BYTES * attributes.size();
+        for (int a = 0; a < attributes.size(); a++) {
+            Attribute attr = attributes.get(a);
+            header.writeInt(dataStart + minipages.size());
+            if (attr.allowsNull()) {
+                byte[] nullFlags = new byte[(records.size() + 7) / 8];
+                int i = 0;
+                for (Record record : records) {
+                    if (record.rowData.get(a) == null) {
+                        nullFlags[i / 8] |= (byte) (1 << (i % 8));
+                    }
+                    i++;
+                }
+                minipages.write(nullFlags);
+            }
+            ArrayList<Object> values = columnValues(records, a);
+            ColumnEncoding.choose(attr, values).write(minipages, attr, values);
+        }
+        headerStream.write(minipageStream.toByteArray());
+        byte[] recordData = new byte[Math.max(tableSchema.pageSize - encodedHeaderSize(), headerStream.size())];
+        System.arraycopy(headerStream.toByteArray(), 0, recordData, 0, headerStream.size());
+        return recordData;
+    }
+
+    /**
+     * Writes a single non-null value to a stream
+     * @param out The stream to write to
+     * @param attr The attribute the value belongs to
+     * @param value The value being written
+     */
+    static void writeValue(DataOutputStream out, Attribute attr, Object value) throws IOException {
+        switch (attr.type) {
+            case INT -> out.writeInt((Integer) value);
+            case DOUBLE -> out.writeDouble((Double) value);
+            case BOOLEAN -> out.writeBoolean((Boolean) value);
+            case CHAR, VARCHAR -> out.writeUTF((String) value);
+        }
+    }
+
+    /**
+     * Saves this Page to its corresponding table file and updates its zone map. Pages whose records were never
+     * decoded cannot have been modified, so they are not rewritten. Pages written under an older version of the
+     * table's attributes are rewritten under the current one, unless their records no longer fit in the page once
+     * upgraded, in which case they are written back under the version they were read with
      * @throws IOException if there is an error writing the Page to file
      */
     public void save() throws IOException {
+        if (records == null) {
+            return;
+        }
         // Verify table exists
-        File tableFile = tableSchema.tableFile();
+        File tableFile = tableSchema.pageFile();
         if (!tableFile.exists()) {
             throw new IOException("Could not find table file `" + tableFile.getAbsolutePath() + "`");
         }
+        long offset = tableSchema.pageOffset(index);
+        if (offset == -1) {
+            throw new IOException("No space has been allocated for " + this);
+        }
         // Write data
         try (RandomAccessFile raf = new RandomAccessFile(tableFile, "rw")) {
-            long offset = Integer.BYTES + ((long) index * tableSchema.pageSize);  // Page count + pageIndex offset
             raf.seek(offset);
 
             // Create output byte array
             ByteArrayOutputStream bs = new ByteArrayOutputStream();
             DataOutputStream out = new DataOutputStream(bs);
-            out.writeInt(records.size()); // Writes the number of records
-            out.write(encodeRecords(records));    // Writes the record data
+            ArrayList<Record> records = getRecords();
+            int freeBytes = tableSchema.pageSize - measureRecords();
+            ArrayList<Record> encoded = records;
+            if (storedVersion != null && freeBytes < 0) {
+                encoded = downgradeRecords(records);
+            }
+            SchemaVersion version = (encoded == records) ? null : storedVersion;
+            ArrayList<Attribute> attributes = (version == null) ? tableSchema.attributes : version.attributes;
+            if (recordIds != null) {
+                out.writeInt(RECORD_IDS | records.size());  // Writes the number of records, then their IDs
+                for (int slot = 0; slot < slotCount(); slot++) {
+                    if (this.records.get(slot) == null) {
+                        continue;
+                    }
+                    if (recordIdSize() == Short.BYTES) {
+                        out.writeShort(recordIds[slot]);
+                    } else {
+                        out.writeInt(recordIds[slot]);
+                    }
+                }
+            } else if (deadSlots > 0) {
+                out.writeInt(-slotCount());  // Writes the number of slots, then which of them are tombstones
+                BitSet bitmap = new BitSet();
+                for (int slot = 0; slot < slotCount(); slot++) {
+                    if (this.records.get(slot) == null) {
+                        bitmap.set(slot);
+                    }
+                }
+                out.write(Arrays.copyOf(bitmap.toByteArray(), (slotCount() + 7) / 8));
+            } else {
+                out.writeInt(records.size()); // Writes the number of records
+            }
+            switch (tableSchema.layout) {
+                case ROW -> out.write(encodeSlots(encoded, (version == null) ? rowFormat() : storedFormat()));
+                case PAX -> out.write(encodeColumns(encoded, attributes));     // Writes the minipages
+                case ROW_V1 -> out.write(encodeRecords(encoded, attributes));  // Writes the record data
+            }
             byte[] pageData = bs.toByteArray();
             if (pageData.length > tableSchema.pageSize) {
-                System.err.println("Page data array exceeded pageSize while saving");
+                // Writing this would overwrite the start of the next page
+                throw new IOException("Page data array exceeded pageSize while saving " + this);
             }
             // Write output
             raf.write(pageData);
+            if (version == null) {
+                freeBytes = tableSchema.pageSize - pageData.length;
+                storedVersion = null;
+                storedFormat = null;
+                droppedValues = null;
+                tableSchema.setPageVersion(index, tableSchema.schemaVersion());
+            }
+            tableSchema.freeSpace().measure(index, freeBytes);
+            tableSchema.setZoneMap(index, ZoneMap.of(records, tableSchema));
         } catch (IOException ioe) {
             throw new IOException("Encountered problem while attempting to write to table file: " + ioe.getMessage());
         }
     }
 
+    /**
+     * Converts the records of a page read under an older version back to that version
+     * @param records The page's records, with the table's current attributes
+     * @return The records as they were read; the given records if any of them cannot be represented in the old
+     * version, because a value was given to an attribute added since or the values of a dropped one are not known
+     */
+    private ArrayList<Record> downgradeRecords(ArrayList<Record> records) {
+        ArrayList<Record> downgraded = new ArrayList<>(records.size());
+        for (Record record : records) {
+            Object[] dropped = (droppedValues == null) ? null : droppedValues.get(record);
+            Record stored = storedVersion.downgrade(record, tableSchema.attributes, dropped);
+            if (stored == null) {
+                return records;
+            }
+            downgraded.add(stored);
+        }
+        return downgraded;
+    }
+
     @Override
     public String toString() {
-        return tableSchema.name + " - Page #" + pageNumber +
+        return tableSchema.name + " - Page #" + pageNumber() +
                 " (index: " + index + ")" +
                 " | Records: " + recordCount();
     }
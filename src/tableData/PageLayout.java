@@ -0,0 +1,32 @@
+package tableData;
+
+/**
+ * The way records are arranged inside the pages of a table
+ */
+public enum PageLayout {
+    /// Records are stored one after another, with every attribute of a record stored together
+    ROW,
+    /// Each page is split into one "minipage" per attribute, with every value of an attribute stored together
+    PAX,
+    /// The row format used before records had a full null bitmap and fixed offsets. Only tables created by
+    /// older versions of the database use it, and it cannot be chosen for new tables
+    ROW_V1;
+
+    public static PageLayout fromString(String layoutName) throws IllegalArgumentException {
+        layoutName = layoutName.toUpperCase();
+        return switch (layoutName) {
+            case "ROW" -> ROW;
+            case "PAX", "COLUMN" -> PAX;
+            default -> throw new IllegalArgumentException("Invalid page layout: " + layoutName);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return switch (this) {
+            case ROW -> "row";
+            case PAX -> "pax";
+            case ROW_V1 -> "row (v1)";
+        };
+    }
+}
@@ -0,0 +1,266 @@
+package tableData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The logical order of a table's pages, mapping page numbers to page indices (the page's slot in the table file)
+ * and back. Pages are kept in an implicit treap keyed by their position, with one node per page index, so finding
+ * the page with a given number, finding the number of a page, inserting a page and removing a page are all
+ * O(log n). Inserting or removing a page shifts the numbers of every later page without touching them.
+ */
+public class PageOrder {
+
+    private static final int NONE = -1;
+
+    // Node arrays, indexed by page index
+    private int[] left;
+    private int[] right;
+    private int[] parent;
+    private int[] subtreeSize;  // 0 for page indices which are not in the order
+    private int[] priority;
+    private int root = NONE;
+    private int slots;  // One past the largest page index that has ever held a page
+    private final Random random = new Random();
+
+    /**
+     * Creates a PageOrder from a list mapping each page index to its page number
+     * @param numberMap The page number at every page index, with `-1` for page indices which hold no page
+     */
+    public PageOrder(List<Integer> numberMap) {
+        int capacity = Math.max(8, numberMap.size());
+        left = new int[capacity];
+        right = new int[capacity];
+        parent = new int[capacity];
+        subtreeSize = new int[capacity];
+        priority = new int[capacity];
+        slots = numberMap.size();
+        // Sort the page indices by page number, then append them in that order
+        ArrayList<Integer> byNumber = new ArrayList<>();
+        for (int pageIndex = 0; pageIndex < numberMap.size(); pageIndex++) {
+            if (numberMap.get(pageIndex) != -1) {
+                byNumber.add(pageIndex);
+            }
+        }
+        byNumber.sort(Comparator.comparingInt(numberMap::get));
+        for (int pageIndex : byNumber) {
+            root = merge(root, newNode(pageIndex));
+        }
+        if (root != NONE) {
+            parent[root] = NONE;
+        }
+    }
+
+    /**
+     * Gets the number of pages in the order
+     * @return The number of pages
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Gets the number of page indices that have ever held a page, including ones which are now empty
+     * @return One more than the largest page index used
+     */
+    public int slotCount() {
+        return slots;
+    }
+
+    /**
+     * Gets the page index of the page with a given number
+     * @param pageNumber The page number
+     * @return The index of the page; `-1` if there is no page with that number
+     */
+    public int indexAt(int pageNumber) {
+        if (pageNumber < 0 || pageNumber >= size()) {
+            return NONE;
+        }
+        int node = root;
+        while (true) {
+            int leftSize = size(left[node]);
+            if (pageNumber < leftSize) {
+                node = left[node];
+            } else if (pageNumber == leftSize) {
+                return node;
+            } else {
+                pageNumber -= leftSize + 1;
+                node = right[node];
+            }
+        }
+    }
+
+    /**
+     * Gets the page number of the page at a given index
+     * @param pageIndex The page index
+     * @return The number of the page; `-1` if no page is at that index
+     */
+    public int numberOf(int pageIndex) {
+        if (!contains(pageIndex)) {
+            return NONE;
+        }
+        int number = size(left[pageIndex]);
+        int node = pageIndex;
+        while (parent[node] != NONE) {
+            int up = parent[node];
+            if (right[up] == node) {
+                number += size(left[up]) + 1;
+            }
+            node = up;
+        }
+        return number;
+    }
+
+    /**
+     * Checks if a page index currently holds a page
+     * @param pageIndex The page index
+     * @return `true` if the index is part of the order
+     */
+    public boolean contains(int pageIndex) {
+        return pageIndex >= 0 && pageIndex < subtreeSize.length && subtreeSize[pageIndex] != 0;
+    }
+
+    /**
+     * Inserts a page into the order. Pages with a number greater than or equal to the new page's are shifted back
+     * @param pageNumber The number the new page will have
+     * @param pageIndex The index of the new page
+     */
+    public void insert(int pageNumber, int pageIndex) {
+        if (contains(pageIndex)) {
+            remove(pageIndex);
+        }
+        pageNumber = Math.clamp(pageNumber, 0, size());
+        int[] halves = split(root, pageNumber);
+        root = merge(merge(halves[0], newNode(pageIndex)), halves[1]);
+        parent[root] = NONE;
+        slots = Math.max(slots, pageIndex + 1);
+    }
+
+    /**
+     * Removes a page from the order. Pages with a greater number are shifted forward
+     * @param pageIndex The index of the page being removed
+     */
+    public void remove(int pageIndex) {
+        int pageNumber = numberOf(pageIndex);
+        if (pageNumber == NONE) {
+            return;
+        }
+        int[] before = split(root, pageNumber);
+        int[] after = split(before[1], 1);
+        root = merge(before[0], after[1]);
+        if (root != NONE) {
+            parent[root] = NONE;
+        }
+        subtreeSize[pageIndex] = 0;
+    }
+
+    /**
+     * Lists the page number of every page index, in the format the catalog stores it
+     * @return The page number at every page index up to slotCount(), with `-1` for indices which hold no page
+     */
+    public ArrayList<Integer> toNumberMap() {
+        Integer[] numbers = new Integer[slots];
+        Arrays.fill(numbers, -1);
+        // Iterative in-order traversal
+        int[] stack = new int[size() + 1];
+        int depth = 0;
+        int node = root;
+        int number = 0;
+        while (node != NONE || depth > 0) {
+            while (node != NONE) {
+                stack[depth++] = node;
+                node = left[node];
+            }
+            node = stack[--depth];
+            numbers[node] = number++;
+            node = right[node];
+        }
+        return new ArrayList<>(Arrays.asList(numbers));
+    }
+
+    //region Treap ========================================================================
+
+    private int size(int node) {
+        return (node == NONE) ? 0 : subtreeSize[node];
+    }
+
+    private int newNode(int pageIndex) {
+        if (pageIndex >= left.length) {
+            int capacity = Math.max(pageIndex + 1, left.length * 2);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            subtreeSize = Arrays.copyOf(subtreeSize, capacity);
+            priority = Arrays.copyOf(priority, capacity);
+        }
+        left[pageIndex] = NONE;
+        right[pageIndex] = NONE;
+        parent[pageIndex] = NONE;
+        subtreeSize[pageIndex] = 1;
+        priority[pageIndex] = random.nextInt();
+        return pageIndex;
+    }
+
+    /**
+     * Recomputes a node's size and points its children back at it
+     */
+    private void update(int node) {
+        subtreeSize[node] = 1 + size(left[node]) + size(right[node]);
+        if (left[node] != NONE) {
+            parent[left[node]] = node;
+        }
+        if (right[node] != NONE) {
+            parent[right[node]] = node;
+        }
+    }
+
+    /**
+     * Splits a subtree into its first `count` pages and the rest
+     * @return The roots of the two halves
+     */
+    private int[] split(int node, int count) {
+        if (node == NONE) {
+            return new int[] {NONE, NONE};
+        }
+        if (size(left[node]) < count) {
+            int[] halves = split(right[node], count - size(left[node]) - 1);
+            right[node] = halves[0];
+            update(node);
+            parent[node] = NONE;
+            return new int[] {node, halves[1]};
+        } else {
+            int[] halves = split(left[node], count);
+            left[node] = halves[1];
+            update(node);
+            parent[node] = NONE;
+            return new int[] {halves[0], node};
+        }
+    }
+
+    /**
+     * Joins two subtrees, with every page of the first coming before every page of the second
+     * @return The root of the joined subtree
+     */
+    private int merge(int first, int second) {
+        if (first == NONE) {
+            return second;
+        }
+        if (second == NONE) {
+            return first;
+        }
+        if (priority[first] > priority[second]) {
+            right[first] = merge(right[first], second);
+            update(first);
+            return first;
+        } else {
+            left[second] = merge(first, left[second]);
+            update(second);
+            return second;
+        }
+    }
+
+    //endregion
+}
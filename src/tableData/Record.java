@@ -103,14 +103,8 @@ public class Record {
      * numerically greater than the argument record (signed comparison)
      */
     public boolean greaterThan(Record other, TableSchema schema, int attrIndex) {
-        return switch (schema.attributes.get(attrIndex).type) {
-            case INT -> ((Integer) rowData.get(attrIndex)).compareTo(((Integer) other.rowData.get(attrIndex))) >= 0;
-            case DOUBLE -> ((Double) rowData.get(attrIndex)).compareTo(((Double) other.rowData.get(attrIndex))) >= 0;
-            case CHAR, VARCHAR ->
-                    ((String) rowData.get(attrIndex)).compareTo(((String) other.rowData.get(attrIndex))) >= 0;
-            case BOOLEAN ->
-                    ((Boolean) rowData.get(attrIndex)).compareTo(((Boolean) other.rowData.get(attrIndex))) >= 0;
-        };
+        return KeyNormalizer.compare(KeyNormalizer.normalize(rowData.get(attrIndex)),
+                KeyNormalizer.normalize(other.rowData.get(attrIndex))) >= 0;
     }
 
     @Override
@@ -0,0 +1,375 @@
+package tableData;
+
+import exceptions.CustomExceptions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Describes where each attribute of a record is stored inside an encoded ROW layout record.
+ * Every record is laid out as:
+ * <ol>
+ *     <li>A null bitmap with one bit for every attribute</li>
+ *     <li>The fixed width attributes (INT, DOUBLE, BOOLEAN, and CHAR padded to its full length) in schema order.
+ *     Null values still take up their full width so every fixed attribute is at the same offset in every record</li>
+ *     <li>The end offset of each VARCHAR attribute's data, relative to the start of the record</li>
+ *     <li>The UTF-8 bytes of each VARCHAR attribute, back to back</li>
+ * </ol>
+ * This lets any single attribute be read directly from the page data without decoding the rest of the record.
+ * VARCHAR values larger than the overflow threshold are moved to the table's overflow file. In their place, the
+ * record holds the first overflow page of the value, its length in bytes, and the first few bytes of the value,
+ * and the highest bit of the value's end offset is set
+ */
+class RowFormat {
+
+    private final ArrayList<Attribute> attributes;
+    private final int nullBytes;
+    private final int[] fixedOffsets;  // Offset of each fixed attribute from the start of the record; -1 if variable
+    private final int[] varIndices;    // Position of each variable attribute in the offset table; -1 if fixed
+    private final int varCount;
+    private final int varTableStart;
+    /// Number of bytes used by record slots and VARCHAR offsets
+    public final int offsetSize;
+    private final int overflowFlag;       // Set in a VARCHAR's end offset if the value is in the overflow file
+    private final int overflowThreshold;  // VARCHARs longer than this many bytes are moved to the overflow file
+    private final OverflowStore overflow;
+
+    /// Number of leading bytes of an overflowed value which are kept in the record
+    private static final int PREFIX_BYTES = 16;
+    /// Size of an overflowed value in the record: its first overflow page, its length, and its prefix
+    private static final int OVERFLOW_SIZE = Integer.BYTES + Integer.BYTES + PREFIX_BYTES;
+
+    /**
+     * Stores an overflowed value somewhere and returns the first overflow page of the chain holding it
+     */
+    interface OverflowWriter {
+        int store(String value, byte[] bytes) throws IOException;
+    }
+
+    /**
+     * Computes the record layout for a table
+     * @param schema The schema of the table
+     */
+    public RowFormat(TableSchema schema) {
+        this(schema, schema.attributes);
+    }
+
+    /**
+     * Computes the record layout for a table as of an earlier version of its attributes
+     * @param schema The schema of the table
+     * @param attributes The attributes the records were encoded with
+     */
+    public RowFormat(TableSchema schema, ArrayList<Attribute> attributes) {
+        this.attributes = attributes;
+        // The highest bit of an offset is reserved for the overflow flag
+        this.offsetSize = schema.pageSize > 0x7FFF ? Integer.BYTES : Short.BYTES;
+        this.overflowFlag = offsetSize == Short.BYTES ? 0x8000 : 0x80000000;
+        this.overflowThreshold = Math.max(schema.pageSize / 4, OVERFLOW_SIZE);
+        this.overflow = new OverflowStore(schema);
+        nullBytes = (attributes.size() + 7) / 8;
+        fixedOffsets = new int[attributes.size()];
+        varIndices = new int[attributes.size()];
+        int offset = nullBytes;
+        int vars = 0;
+        for (int i = 0; i < attributes.size(); i++) {
+            int width = fixedWidth(attributes.get(i));
+            if (width == -1) {
+                fixedOffsets[i] = -1;
+                varIndices[i] = vars++;
+            } else {
+                fixedOffsets[i] = offset;
+                varIndices[i] = -1;
+                offset += width;
+            }
+        }
+        varCount = vars;
+        varTableStart = offset;
+    }
+
+    /**
+     * Gets the number of bytes an attribute always takes up in the fixed width part of a record
+     * @param attr The attribute
+     * @return The width in bytes; `-1` if the attribute is variable width
+     */
+    private static int fixedWidth(Attribute attr) {
+        return switch (attr.type) {
+            case INT -> Integer.BYTES;
+            case DOUBLE -> Double.BYTES;
+            case BOOLEAN -> 1;
+            case CHAR -> Character.BYTES * attr.length;
+            case VARCHAR -> -1;
+        };
+    }
+
+    /**
+     * Gets the number of bytes a record takes up once encoded, not counting its slot in the page
+     * @param record The record being measured
+     * @return The number of bytes
+     */
+    public int recordSize(Record record) {
+        int size = varTableStart + offsetSize * varCount;
+        for (int i = 0; i < attributes.size(); i++) {
+            Object value = record.rowData.get(i);
+            if (varIndices[i] != -1 && value != null) {
+                int length = utf8Length((String) value);
+                size += (length > overflowThreshold) ? OVERFLOW_SIZE : length;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Encodes a record
+     * @param record The record to encode
+     * @param overflowWriter Stores any values which need to be moved to the overflow file
+     * @return The encoded record
+     * @throws IOException If a value does not fit in its attribute, or an overflowed value could not be stored
+     */
+    public byte[] encode(Record record, OverflowWriter overflowWriter) throws IOException {
+        byte[] nullFlags = new byte[nullBytes];
+        ByteArrayOutputStream fixedStream = new ByteArrayOutputStream(varTableStart);
+        DataOutputStream fixed = new DataOutputStream(fixedStream);
+        ByteArrayOutputStream varStream = new ByteArrayOutputStream();
+        int[] varEnds = new int[varCount];
+        int varDataStart = varTableStart + offsetSize * varCount;
+        for (int i = 0; i < attributes.size(); i++) {
+            Attribute attr = attributes.get(i);
+            Object value = record.rowData.get(i);
+            if (value == null) {
+                nullFlags[i / 8] |= (byte) (1 << (i % 8));
+            }
+            if (varIndices[i] != -1) {
+                int flag = 0;
+                if (value != null) {
+                    byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                    if (bytes.length > overflowThreshold) {
+                        DataOutputStream var = new DataOutputStream(varStream);
+                        var.writeInt(overflowWriter.store((String) value, bytes));
+                        var.writeInt(bytes.length);
+                        var.write(bytes, 0, PREFIX_BYTES);
+                        flag = overflowFlag;
+                    } else {
+                        varStream.write(bytes);
+                    }
+                }
+                varEnds[varIndices[i]] = (varDataStart + varStream.size()) | flag;
+                continue;
+            }
+            if (value == null) {
+                fixed.write(new byte[fixedWidth(attr)]);
+                continue;
+            }
+            switch (attr.type) {
+                case INT -> fixed.writeInt((Integer) value);
+                case DOUBLE -> fixed.writeDouble((Double) value);
+                case BOOLEAN -> fixed.writeBoolean((Boolean) value);
+                case CHAR -> {
+                    String s = (String) value;
+                    if (s.length() > attr.length) {
+                        throw new IOException("Value `" + s + "` exceeds the length of CHAR(" + attr.length + ")");
+                    }
+                    fixed.writeChars(s);
+                    fixed.write(new byte[Character.BYTES * (attr.length - s.length())]);  // Pad with '\0'
+                }
+                default -> throw new IllegalStateException("Unexpected fixed width type " + attr.type);
+            }
+        }
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream(varDataStart + varStream.size());
+        DataOutputStream out = new DataOutputStream(outStream);
+        out.write(nullFlags);
+        out.write(fixedStream.toByteArray());
+        for (int end : varEnds) {
+            writeOffset(out, end);
+        }
+        out.write(varStream.toByteArray());
+        return outStream.toByteArray();
+    }
+
+    /**
+     * Decodes a record, or a subset of its attributes
+     * @param data The byte array the record is stored in
+     * @param start The offset of the record in the array
+     * @param columns A flag for every attribute that should be decoded; `null` to decode every attribute.
+     *                Attributes that are not decoded are left as `null`
+     * @return The decoded record
+     * @throws IOException If the record's offsets point outside of it, or an overflowed value could not be read
+     */
+    public Record decode(byte[] data, int start, boolean[] columns) throws IOException {
+        ArrayList<Object> rowData = new ArrayList<>(attributes.size());
+        for (int i = 0; i < attributes.size(); i++) {
+            rowData.add((columns == null || columns[i]) ? readField(data, start, i) : null);
+        }
+        return new Record(rowData);
+    }
+
+    /**
+     * Reads a single attribute of an encoded record without reading any other attribute
+     * @param data The byte array the record is stored in
+     * @param start The offset of the record in the array
+     * @param column The index of the attribute to read
+     * @return The attribute's value
+     * @throws IOException If the record's offsets point outside of it, or an overflowed value could not be read
+     */
+    public Object readField(byte[] data, int start, int column) throws IOException {
+        if (isNull(data, start, column)) {
+            return null;
+        }
+        Attribute attr = attributes.get(column);
+        if (varIndices[column] != -1) {
+            int[] bounds = varBounds(data, start, column);
+            if (bounds[2] != 0) {
+                int firstPage = readInt(data, start + bounds[0]);
+                int length = readInt(data, start + bounds[0] + Integer.BYTES);
+                return new String(overflow.read(firstPage, length), StandardCharsets.UTF_8);
+            }
+            return new String(data, start + bounds[0], bounds[1] - bounds[0], StandardCharsets.UTF_8);
+        }
+        int offset = start + fixedOffsets[column];
+        return switch (attr.type) {
+            case INT -> readInt(data, offset);
+            case DOUBLE -> Double.longBitsToDouble(((long) readInt(data, offset) << 32) |
+                    (readInt(data, offset + Integer.BYTES) & 0xFFFFFFFFL));
+            case BOOLEAN -> data[offset] != 0;
+            case CHAR -> {
+                StringBuilder sb = new StringBuilder(attr.length);
+                for (int i = 0; i < attr.length; i++) {
+                    char c = (char) (((data[offset + 2 * i] & 0xFF) << 8) | (data[offset + 2 * i + 1] & 0xFF));
+                    if (c == '\0') {
+                        break;  // Start of padding
+                    }
+                    sb.append(c);
+                }
+                yield sb.toString();
+            }
+            default -> throw new IllegalStateException("Unexpected fixed width type " + attr.type);
+        };
+    }
+
+    /**
+     * Checks if an attribute of an encoded record is equal to a value. Overflowed values are only read from the
+     * overflow file if their length and prefix match the value
+     * @param data The byte array the record is stored in
+     * @param start The offset of the record in the array
+     * @param column The index of the attribute to compare
+     * @param value The value to compare against
+     * @return `true` if the attribute is equal to the value
+     * @throws IOException If the record's offsets point outside of it, or an overflowed value could not be read
+     */
+    public boolean fieldEquals(byte[] data, int start, int column, Object value) throws IOException {
+        if (value == null || isNull(data, start, column)) {
+            return value == null && isNull(data, start, column);
+        }
+        if (varIndices[column] != -1 && value instanceof String s) {
+            int[] bounds = varBounds(data, start, column);
+            if (bounds[2] != 0) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                int prefixStart = start + bounds[0] + 2 * Integer.BYTES;
+                if (readInt(data, start + bounds[0] + Integer.BYTES) != bytes.length ||
+                        !Arrays.equals(data, prefixStart, prefixStart + PREFIX_BYTES, bytes, 0, PREFIX_BYTES)) {
+                    return false;
+                }
+            }
+        }
+        return value.equals(readField(data, start, column));
+    }
+
+    /**
+     * Gets the first overflow page of an attribute's value
+     * @param data The byte array the record is stored in
+     * @param start The offset of the record in the array
+     * @param column The index of the attribute
+     * @return The first page of the value's overflow chain; `-1` if the value is not stored in the overflow file
+     * @throws CorruptedDataException If the record's offsets point outside of it
+     */
+    public int overflowPage(byte[] data, int start, int column) throws CorruptedDataException {
+        if (varIndices[column] == -1 || isNull(data, start, column)) {
+            return -1;
+        }
+        int[] bounds = varBounds(data, start, column);
+        return (bounds[2] != 0) ? readInt(data, start + bounds[0]) : -1;
+    }
+
+    /**
+     * Checks if the null flag of an attribute is set
+     */
+    private static boolean isNull(byte[] data, int start, int column) {
+        return (data[start + column / 8] & (1 << (column % 8))) != 0;
+    }
+
+    /**
+     * Finds where a VARCHAR attribute's bytes are stored in a record
+     * @return The start and end of the bytes relative to the start of the record, followed by a non-zero
+     * value if those bytes are an overflow pointer
+     */
+    private int[] varBounds(byte[] data, int start, int column) throws CorruptedDataException {
+        int varIndex = varIndices[column];
+        int end = readOffset(data, start + varTableStart + offsetSize * varIndex);
+        int begin = (varIndex == 0) ? varTableStart + offsetSize * varCount :
+                readOffset(data, start + varTableStart + offsetSize * (varIndex - 1)) & ~overflowFlag;
+        int overflowed = end & overflowFlag;
+        end &= ~overflowFlag;
+        if (begin > end || start + end > data.length || (overflowed != 0 && end - begin != OVERFLOW_SIZE)) {
+            throw new CorruptedDataException("Invalid offsets [" + begin + ", " + end + ") for attribute `" +
+                    attributes.get(column).name + "`");
+        }
+        return new int[] {begin, end, overflowed};
+    }
+
+    /**
+     * Writes a record slot or VARCHAR offset
+     * @param out The stream to write to
+     * @param offset The offset being written
+     */
+    public void writeOffset(DataOutputStream out, int offset) throws IOException {
+        if (offsetSize == Short.BYTES) {
+            out.writeShort(offset);
+        } else {
+            out.writeInt(offset);
+        }
+    }
+
+    /**
+     * Reads a record slot or VARCHAR offset
+     * @param data The array to read from
+     * @param position The position of the offset in the array
+     * @return The offset
+     */
+    public int readOffset(byte[] data, int position) {
+        if (offsetSize == Short.BYTES) {
+            return ((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF);
+        }
+        return readInt(data, position);
+    }
+
+    private static int readInt(byte[] data, int position) {
+        return ((data[position] & 0xFF) << 24) | ((data[position + 1] & 0xFF) << 16) |
+                ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+    }
+
+    /**
+     * Gets the number of bytes a String takes up when encoded as UTF-8
+     * @param s The string being measured
+     * @return The number of bytes
+     */
+    private static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c <= 0x007F) {
+                length += 1;
+            } else if (c <= 0x07FF) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
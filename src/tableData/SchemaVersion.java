@@ -0,0 +1,127 @@
+package tableData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The attributes a table had before one of its attributes was added or dropped. Altering a table does not rewrite
+ * its pages. Each page is tagged with the version of the schema it was last written under, and the records of pages
+ * written under an older version are upgraded to the current attributes as they are decoded: attributes added since
+ * are filled with their default value, and attributes dropped since are left out.
+ * <br>
+ * SchemaVersions are never modified once created, so tables that are duplicated can share them.
+ */
+public class SchemaVersion {
+
+    public final ArrayList<Attribute> attributes;  // The attributes records of this version were encoded with
+    private final int[] currentColumns;  // The current index of each attribute; `-1` for attributes since dropped
+
+    /**
+     * Creates a SchemaVersion
+     * @param attributes The attributes of the table as of this version
+     * @param currentColumns The index of each of those attributes in the table's current attributes, with `-1` for
+     *                       attributes which have been dropped
+     */
+    public SchemaVersion(ArrayList<Attribute> attributes, int[] currentColumns) {
+        this.attributes = attributes;
+        this.currentColumns = currentColumns;
+    }
+
+    /**
+     * Creates the SchemaVersion for a table's current attributes, just before they are altered
+     * @param attributes The table's current attributes
+     * @return A version mapping every attribute to itself
+     */
+    static SchemaVersion of(ArrayList<Attribute> attributes) {
+        int[] currentColumns = new int[attributes.size()];
+        for (int i = 0; i < currentColumns.length; i++) {
+            currentColumns[i] = i;
+        }
+        return new SchemaVersion(new ArrayList<>(attributes), currentColumns);
+    }
+
+    /**
+     * Gets the index an attribute of this version has in the table's current attributes
+     * @param column The index of the attribute in this version
+     * @return The attribute's current index; `-1` if it has been dropped
+     */
+    public int currentColumn(int column) {
+        return currentColumns[column];
+    }
+
+    /**
+     * Checks if any attribute of this version has since been dropped
+     * @return `true` if records of this version hold values the current attributes do not
+     */
+    public boolean hasDroppedColumns() {
+        return Arrays.stream(currentColumns).anyMatch(column -> column == -1);
+    }
+
+    /**
+     * Creates the version that results from one of the table's current attributes being dropped
+     * @param droppedColumn The current index of the dropped attribute
+     * @return A copy of this version with its attributes remapped
+     */
+    SchemaVersion afterDrop(int droppedColumn) {
+        int[] remapped = new int[currentColumns.length];
+        for (int i = 0; i < remapped.length; i++) {
+            int column = currentColumns[i];
+            remapped[i] = (column == droppedColumn) ? -1 : (column > droppedColumn) ? column - 1 : column;
+        }
+        return new SchemaVersion(attributes, remapped);
+    }
+
+    /**
+     * Converts a record written under this version to the table's current attributes
+     * @param record The record, holding a value for every attribute of this version
+     * @param current The table's current attributes
+     * @return A new record holding a value for every current attribute
+     */
+    public Record upgrade(Record record, List<Attribute> current) {
+        ArrayList<Object> rowData = new ArrayList<>(current.size());
+        for (Attribute attr : current) {
+            rowData.add(attr.defaultValue);
+        }
+        for (int i = 0; i < currentColumns.length; i++) {
+            if (currentColumns[i] != -1) {
+                rowData.set(currentColumns[i], record.get(i));
+            }
+        }
+        return new Record(rowData);
+    }
+
+    /**
+     * Converts a record with the table's current attributes back to this version, which is only possible if every
+     * attribute added since still has its default value
+     * @param record The record, holding a value for every current attribute
+     * @param current The table's current attributes
+     * @param dropped The values the record had for the attributes of this version which have since been dropped,
+     *                indexed by their column in this version. May be `null` if this version has no dropped attributes
+     * @return A new record holding a value for every attribute of this version; `null` if the record cannot be
+     * represented in this version
+     */
+    public Record downgrade(Record record, List<Attribute> current, Object[] dropped) {
+        boolean[] kept = new boolean[current.size()];
+        ArrayList<Object> rowData = new ArrayList<>(currentColumns.length);
+        for (int i = 0; i < currentColumns.length; i++) {
+            int column = currentColumns[i];
+            if (column == -1) {
+                if (dropped == null) {
+                    return null;
+                }
+                rowData.add(dropped[i]);
+            } else {
+                rowData.add(record.get(column));
+                kept[column] = true;
+            }
+        }
+        for (int column = 0; column < kept.length; column++) {
+            if (!kept[column] && !Objects.equals(record.get(column), current.get(column).defaultValue)) {
+                return null;
+            }
+        }
+        return new Record(rowData);
+    }
+}
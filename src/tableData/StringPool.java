@@ -0,0 +1,44 @@
+package tableData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of canonical String instances for a single column. Strings decoded from pages are swapped
+ * for an equal String already in the pool, so a value repeated across many records and pages is only held in
+ * memory once. When the pool is full, the least recently used String is evicted.
+ */
+public class StringPool {
+
+    /// The number of Strings each column's pool holds. `0` disables interning
+    public static int capacity = 1024;
+    /// Strings longer than this are never interned, since they are unlikely to repeat
+    public static final int MAX_LENGTH = 64;
+
+    private final LinkedHashMap<String, String> pool;
+
+    /**
+     * Creates an empty pool
+     */
+    public StringPool() {
+        pool = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the canonical instance of a String, adding it to the pool if it is not already present
+     * @param value The String to intern
+     * @return A String equal to value. If interning is disabled or the value is too long, value itself
+     */
+    public String intern(String value) {
+        if (capacity <= 0 || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        String canonical = pool.putIfAbsent(value, value);
+        return (canonical == null) ? value : canonical;
+    }
+}
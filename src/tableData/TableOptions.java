@@ -0,0 +1,65 @@
+package tableData;
+
+/**
+ * The storage options of a table, given as `<option> <value>` pairs after the attribute list of a `create table`
+ * statement. Every option has a default, so a table created without options behaves like one from before
+ * options existed.
+ * <ul>
+ *     <li>`layout`: How records are arranged inside the table's pages (`row` or `pax`)</li>
+ *     <li>`pagesize`: The size of the table's pages and B+ tree nodes, in bytes</li>
+ *     <li>`fillfactor`: The percent of a page inserts fill before the page is split</li>
+ *     <li>`splitratio`: The percent of a split page or node's data which stays in the original</li>
+ *     <li>`organization`: `sorted` to keep records in primary key order, or `heap` to keep them in the order
+ *     they were inserted</li>
+ * </ul>
+ */
+public class TableOptions {
+
+    public static final int DEFAULT_FILL_FACTOR = 100;
+    public static final int DEFAULT_SPLIT_RATIO = 50;
+    /// Smaller pages could not hold a B+ tree node with room for a split
+    public static final int MIN_PAGE_SIZE = 64;
+
+    public PageLayout layout = PageLayout.ROW;
+    public int pageSize = 0;  // `0` to use the database's page size
+    public int fillFactor = DEFAULT_FILL_FACTOR;
+    public int splitRatio = DEFAULT_SPLIT_RATIO;
+    public boolean heap = false;
+
+    /**
+     * Sets an option from the strings of a `create table` statement
+     * @param option The name of the option
+     * @param value The value of the option
+     * @throws IllegalArgumentException If the option does not exist or the value is not valid for it
+     */
+    public void set(String option, String value) throws IllegalArgumentException {
+        switch (option) {
+            case "layout" -> layout = PageLayout.fromString(value);
+            case "pagesize" -> pageSize = parse(option, value, MIN_PAGE_SIZE, Integer.MAX_VALUE);
+            case "fillfactor" -> fillFactor = parse(option, value, 10, 100);
+            case "splitratio" -> splitRatio = parse(option, value, 10, 90);
+            case "organization" -> heap = switch (value.toLowerCase()) {
+                case "heap" -> true;
+                case "sorted" -> false;
+                default -> throw new IllegalArgumentException("Invalid table organization: " + value);
+            };
+            default -> throw new IllegalArgumentException("Unknown table option `" + option + "`");
+        }
+    }
+
+    private static int parse(String option, String value, int min, int max) throws IllegalArgumentException {
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("Table option `" + option + "` must be an integer, not `" + value + "`");
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException("Table option `" + option + "` must be at least " + min);
+        }
+        if (parsed > max) {
+            throw new IllegalArgumentException("Table option `" + option + "` must be at most " + max);
+        }
+        return parsed;
+    }
+}
@@ -2,6 +2,7 @@ package tableData;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
 
 public class TableSchema {
 
@@ -9,9 +10,24 @@ public class TableSchema {
     public int primaryKey = -1;
     public int rootIndex; // The location of page 0 in the table, as a number of pageSize chunks
     public int treeRoot;  // The location of the root of its BPlus tree
-    public ArrayList<Integer> numberMap;
+    public int indexSize = -1;  // The number of nodes allocated in the BPlus tree file. -1 until it is first checked
+    private Tablespace tablespace;  // `null` if the table has its own files
+    private ArrayList<Integer> pageExtents = new ArrayList<>();  // Extents holding the table's pages in the tablespace
+    private ArrayList<Integer> nodeExtents = new ArrayList<>();  // Extents holding the table's nodes in the tablespace
+    private PageOrder pageOrder;  // Maps page numbers to page indices and back
+    private ArrayList<ZoneMap> zoneMaps = new ArrayList<>();  // Indexed by page index
+    private FreeSpaceMap freeSpaceMap;
+    private ArrayList<SchemaVersion> schemaVersions = new ArrayList<>();  // Every earlier version of the attributes
+    private ArrayList<Integer> pageVersions = new ArrayList<>();  // Schema version of each page, indexed by page index
     public ArrayList<Attribute> attributes;
+    public PageLayout layout = PageLayout.ROW;
+    public int fillFactor = TableOptions.DEFAULT_FILL_FACTOR;  // Percent of a page inserts fill before splitting it
+    public int splitRatio = TableOptions.DEFAULT_SPLIT_RATIO;  // Percent of a split page's data kept in the original
+    public boolean heap = false;  // Records are kept in the order they were inserted instead of primary key order
+    private UniqueKeys uniqueKeys;  // Only built for non-indexed tables that need it, the first time a record is inserted
+    private ArrayList<IndexSchema> indexes = new ArrayList<>();  // Secondary indexes on the table's attributes
     private final String fileDir;
+    private StringPool[] stringPools;  // One per attribute, created the first time a String is interned
     private int recordCount;
     private int pageCount;
     public final int pageSize;
@@ -35,12 +51,13 @@ public class TableSchema {
         this.name = name;
         this.rootIndex = rootIndex;
         this.treeRoot = treeRoot;
-        this.numberMap = numberMap;
+        this.pageOrder = new PageOrder(numberMap);
         this.attributes = attributeArrayList;
         this.fileDir = fileDir;
         this.recordCount = recordCount;
         this.pageCount = pageCount;
         this.pageSize = pageSize;
+        this.freeSpaceMap = new FreeSpaceMap(pageSize, numberMap);
         // Verify the attribute names are distinct and there is at least one primary key
         ArrayList<String> attributeNames = new ArrayList<>();
         for (int i = 0; i < attributeArrayList.size(); i++) {
@@ -93,6 +110,80 @@ public class TableSchema {
         return new Attribute(attributes.get(primaryKey));
     }
 
+    /**
+     * Gets the storage options of this table, so tables which replace it can be created with the same ones
+     * @return A copy of the table's options
+     */
+    public TableOptions options() {
+        TableOptions options = new TableOptions();
+        options.layout = layout;
+        options.pageSize = pageSize;
+        options.fillFactor = fillFactor;
+        options.splitRatio = splitRatio;
+        options.heap = heap;
+        return options;
+    }
+
+    /**
+     * Gets the values of this table's primary key and unique attributes, if they have been loaded
+     * @return The table's UniqueKeys; `null` if they have not been built yet
+     */
+    public UniqueKeys uniqueKeys() {
+        return uniqueKeys;
+    }
+
+    /**
+     * Sets the values of this table's primary key and unique attributes once they have been built
+     * @param uniqueKeys The table's UniqueKeys
+     */
+    public void setUniqueKeys(UniqueKeys uniqueKeys) {
+        this.uniqueKeys = uniqueKeys;
+    }
+
+    /**
+     * Gets the secondary indexes on this table's attributes
+     * @return The table's indexes, which can be modified
+     */
+    public ArrayList<IndexSchema> indexes() {
+        return indexes;
+    }
+
+    /**
+     * Finds one of this table's secondary indexes by name
+     * @param indexName The name of the index
+     * @return The index's schema; `null` if the table has no index with that name
+     */
+    public IndexSchema getIndexSchema(String indexName) {
+        for (IndexSchema index : indexes) {
+            if (index.indexName.equals(indexName)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the unique index backing one of this table's attributes
+     * @param column The index of the attribute
+     * @return The index's schema; `null` if the attribute has no unique index
+     */
+    public IndexSchema getUniqueIndex(int column) {
+        for (IndexSchema index : indexes) {
+            if (index.unique && index.column == column) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of bytes inserts may fill a page of this table to before it is split
+     * @return The page size scaled by the table's fill factor
+     */
+    public int fillBytes() {
+        return (int) ((long) pageSize * fillFactor / 100);
+    }
+
     /**
      * Gets the number of records stored in this table
      * @return The number of records
@@ -173,11 +264,135 @@ public class TableSchema {
         return new File(fileDir + name + ".bpt");
     }
 
+    /**
+     * Gets the directory this table's files are kept in
+     * @return The directory's path, ending with a separator
+     */
+    String fileDir() {
+        return fileDir;
+    }
+
+    /**
+     * Stores this table in a tablespace instead of its own table and index files
+     * @param tablespace The tablespace
+     * @param pageExtents The extents holding the table's pages, in order
+     * @param nodeExtents The extents holding the table's B+ tree nodes, in order
+     */
+    void useTablespace(Tablespace tablespace, ArrayList<Integer> pageExtents, ArrayList<Integer> nodeExtents) {
+        this.tablespace = tablespace;
+        this.pageExtents = pageExtents;
+        this.nodeExtents = nodeExtents;
+        tablespace.claim(pageExtents);
+        tablespace.claim(nodeExtents);
+    }
+
+    /**
+     * Gets the tablespace this table is stored in
+     * @return The tablespace; `null` if the table has its own files
+     */
+    public Tablespace tablespace() {
+        return tablespace;
+    }
+
+    /**
+     * Gets the extents holding this table's pages. Empty if the table has its own files
+     * @return The chain of extents, which can be modified
+     */
+    public ArrayList<Integer> pageExtents() {
+        return pageExtents;
+    }
+
+    /**
+     * Gets the extents holding this table's B+ tree nodes. Empty if the table has its own files
+     * @return The chain of extents, which can be modified
+     */
+    public ArrayList<Integer> nodeExtents() {
+        return nodeExtents;
+    }
+
+    /**
+     * Returns the file this table's pages are read from and written to
+     * @return The tablespace file if the table is in one; otherwise the table file
+     */
+    public File pageFile() {
+        return (tablespace == null) ? tableFile() : tablespace.file();
+    }
+
+    /**
+     * Gets the byte offset of one of this table's pages within pageFile()
+     * @param pageIndex The index of the page
+     * @return The page's offset; `-1` if no space has been allocated for that page index
+     */
+    public long pageOffset(int pageIndex) {
+        if (tablespace == null) {
+            return Integer.BYTES + ((long) pageIndex * pageSize);  // Page count + pageIndex offset
+        }
+        return tablespace.offset(pageExtents, pageIndex);
+    }
+
+    /**
+     * Returns the file this table's B+ tree nodes are read from and written to
+     * @return The tablespace file if the table is in one; otherwise the index file
+     */
+    public File nodeFile() {
+        return (tablespace == null) ? indexFile() : tablespace.file();
+    }
+
+    /**
+     * Gets the byte offset of one of this table's B+ tree nodes within nodeFile()
+     * @param nodeIndex The index of the node
+     * @return The node's offset; `-1` if no space has been allocated for that node index
+     */
+    public long nodeOffset(int nodeIndex) {
+        if (tablespace == null) {
+            return (long) nodeIndex * pageSize;
+        }
+        return tablespace.offset(nodeExtents, nodeIndex);
+    }
+
+    /**
+     * Swaps a value decoded from one of this table's pages for the canonical instance of that value, so
+     * repeated Strings in a column share one object. Non-String values are returned unchanged
+     * @param column The index of the attribute the value belongs to
+     * @param value The decoded value
+     * @return A value equal to the given one
+     */
+    public Object intern(int column, Object value) {
+        if (!(value instanceof String s)) {
+            return value;
+        }
+        if (stringPools == null || stringPools.length != attributes.size()) {
+            stringPools = new StringPool[attributes.size()];
+        }
+        if (stringPools[column] == null) {
+            stringPools[column] = new StringPool();
+        }
+        return stringPools[column].intern(s);
+    }
+
+    /**
+     * Returns a File object matching the overflow file for this table, which holds VARCHAR values too large
+     * to be stored in their record
+     * @return The overflow File object
+     */
+    public File overflowFile(){
+        return new File(fileDir + name + ".ovf");
+    }
+
     /**
      * Returns the number of attributes in this table that are can be null
      * @return The number of nullable attributes
      */
     public int nullableAttributes() {
+        return nullableAttributes(attributes);
+    }
+
+    /**
+     * Returns the number of attributes in a list that can be null
+     * @param attributes The attributes
+     * @return The number of nullable attributes
+     */
+    public static int nullableAttributes(List<Attribute> attributes) {
         int count = 0;
         for (Attribute attribute : attributes) {
             if (!attribute.notNull && !attribute.primaryKey) {
@@ -189,60 +404,238 @@ public class TableSchema {
 
 
     /**
-     * Returns the file offset of the page with a given page number. This is O(n).
-     * When possible, use getPageNumber() instead
+     * Returns the file offset of the page with a given page number. This is O(log n)
      * @param pageNumber The page number to look for
-     * @return The offset into the page file for this page number in this table
+     * @return The offset into the page file for this page number in this table; `-1` if page does not exist
      */
     public int getIndex(int pageNumber) {
-        return numberMap.lastIndexOf(pageNumber);
+        return pageOrder.indexAt(pageNumber);
     }
 
     /**
-     * Gets the page number of the page at a given index
+     * Gets the page number of the page at a given index. This is O(log n)
      * @param pageIndex The offset being searched for
      * @return The page number corresponding to the given offset; `-1` if page does not exist
      */
     public int getPageNumber(int pageIndex) {
-        if (pageIndex < 0 || pageIndex >= numberMap.size()) {
-            return -1;
-        }
-        return numberMap.get(pageIndex);
+        return pageOrder.numberOf(pageIndex);
     }
 
     /**
-     * Inserts a new page of a given number into a table's numberMap. All existing pages
-     * with a greater number will be incremented by one to preserve order
+     * Inserts a new page of a given number into the table's page order. All existing pages
+     * with an equal or greater number are shifted back by one to preserve order
      * @param pageNumber The page number being added
      * @param atIndex The index the page was inserted at
      */
     public void insertPage(int pageNumber, int atIndex) {
-        // Increment all pages of equal or greater pageNumber
-        for (int i = 0; i < numberMap.size(); i++) {
-            int currMap = numberMap.get(i);
-            if (currMap >= pageNumber) {
-                numberMap.set(i, currMap + 1);
-            }
-        }
-        // Insert pageNumber
-        numberMap.add(atIndex, pageNumber);
+        pageOrder.insert(pageNumber, atIndex);
+        freeSpaceMap.markUsed(atIndex);
+        setPageVersion(atIndex, schemaVersion());
     }
 
     /**
-     * Removes the mapping of a page's number from table's numberMap. All remaining pages
-     * with a greater number will be decremented by one to preserve order
+     * Removes a page from the table's page order. All remaining pages
+     * with a greater number are shifted forward by one to preserve order
      * @param pageNumber The page number being removed
      */
     public void removePage(int pageNumber) {
-        // Increment all pages of equal or greater pageNumber
-        for (int i = 0; i < numberMap.size(); i++) {
-            int mappedNumber = numberMap.get(i);
-            if (mappedNumber == pageNumber) {
-                numberMap.set(i, -1);  // Remove number
-            } else if (mappedNumber > pageNumber) {
-                numberMap.set(i, mappedNumber + 1);  // Decrement subsequent pages
+        int pageIndex = pageOrder.indexAt(pageNumber);
+        if (pageIndex == -1) {
+            return;
+        }
+        pageOrder.remove(pageIndex);
+        freeSpaceMap.markUnused(pageIndex);
+    }
+
+    /**
+     * Gets the number of page indices in the table file that have ever held a page. Pages at higher indices
+     * are past the end of the table's allocated pages
+     * @return One more than the largest page index used
+     */
+    public int slotCount() {
+        return pageOrder.slotCount();
+    }
+
+    /**
+     * Lists the page number of every page index in the table file, which is how the catalog stores
+     * the page order. This is O(n)
+     * @return The page number at every page index, with `-1` for indices that hold no page
+     */
+    public ArrayList<Integer> numberMap() {
+        return pageOrder.toNumberMap();
+    }
+
+    /**
+     * Gets the zone map of the page at a given index
+     * @param pageIndex The index of the page
+     * @return The page's zone map; `null` if the page has changed since it was last saved, or it does not exist
+     */
+    public ZoneMap getZoneMap(int pageIndex) {
+        if (pageIndex < 0 || pageIndex >= zoneMaps.size()) {
+            return null;
+        }
+        return zoneMaps.get(pageIndex);
+    }
+
+    /**
+     * Sets the zone map of the page at a given index
+     * @param pageIndex The index of the page
+     * @param zoneMap The page's new zone map. `null` marks the zone map of the page as unknown
+     */
+    public void setZoneMap(int pageIndex, ZoneMap zoneMap) {
+        if (pageIndex < 0) {
+            return;
+        }
+        while (zoneMaps.size() <= pageIndex) {
+            zoneMaps.add(null);
+        }
+        zoneMaps.set(pageIndex, zoneMap);
+    }
+
+    /**
+     * Gets the version of this table's attributes. Every added or dropped attribute is a new version
+     * @return The current schema version, starting from 0
+     */
+    public int schemaVersion() {
+        return schemaVersions.size();
+    }
+
+    /**
+     * Gets the attributes of an earlier version of this table
+     * @param version The schema version
+     * @return The version's attributes and how they map to the current ones; `null` if it is the current version
+     */
+    public SchemaVersion getSchemaVersion(int version) {
+        return (version < schemaVersions.size()) ? schemaVersions.get(version) : null;
+    }
+
+    /**
+     * Gets the schema version the page at a given index was last written under
+     * @param pageIndex The index of the page
+     * @return The page's schema version. Pages which have not been written since the table was first altered are
+     * version 0
+     */
+    public int getPageVersion(int pageIndex) {
+        if (pageIndex < 0 || pageIndex >= pageVersions.size()) {
+            return 0;
+        }
+        return pageVersions.get(pageIndex);
+    }
+
+    /**
+     * Sets the schema version the page at a given index was written under
+     * @param pageIndex The index of the page
+     * @param version The page's schema version
+     */
+    public void setPageVersion(int pageIndex, int version) {
+        if (pageIndex < 0 || (version == 0 && pageIndex >= pageVersions.size())) {
+            return;
+        }
+        while (pageVersions.size() <= pageIndex) {
+            pageVersions.add(0);
+        }
+        pageVersions.set(pageIndex, version);
+    }
+
+    /**
+     * Replaces the earlier schema versions of this table and the version of every page. Used while loading the
+     * catalog
+     * @param versions Every earlier version of the attributes, oldest first
+     * @param pageVersions The schema version of each page, indexed by page index
+     */
+    void setSchemaVersions(ArrayList<SchemaVersion> versions, ArrayList<Integer> pageVersions) {
+        this.schemaVersions = versions;
+        this.pageVersions = pageVersions;
+    }
+
+    /**
+     * Gets the earlier schema versions of this table, so they can be written to the catalog
+     * @return Every earlier version of the attributes, oldest first
+     */
+    ArrayList<SchemaVersion> schemaVersions() {
+        return schemaVersions;
+    }
+
+    /**
+     * Gets the schema version of every page, so they can be written to the catalog
+     * @return The schema version of each page, indexed by page index
+     */
+    ArrayList<Integer> pageVersions() {
+        return pageVersions;
+    }
+
+    /**
+     * Adds an attribute to the end of this table without rewriting any pages. Records written before this are
+     * given the attribute's default value when they are read. None of the table's pages can be in the buffer
+     * @param attribute The new attribute
+     */
+    public void addAttribute(Attribute attribute) {
+        schemaVersions.add(SchemaVersion.of(attributes));
+        ArrayList<Attribute> newAttributes = new ArrayList<>(attributes);
+        newAttributes.add(attribute);
+        attributes = newAttributes;
+        for (int i = 0; i < zoneMaps.size(); i++) {
+            if (zoneMaps.get(i) != null) {
+                zoneMaps.set(i, zoneMaps.get(i).withColumn(attribute, attribute.defaultValue));
             }
         }
+        // Every existing record gets bigger, so no page is known to have room for anything anymore
+        freeSpaceMap.forgetFreeSpace();
+        stringPools = null;
+        uniqueKeys = null;
+    }
+
+    /**
+     * Drops an attribute from this table without rewriting any pages. The attribute's values are left in the
+     * pages written before this until they are next rewritten. None of the table's pages can be in the buffer
+     * @param column The index of the attribute being dropped. This must not be the primary key, or have an index
+     */
+    public void dropAttribute(int column) {
+        schemaVersions.add(SchemaVersion.of(attributes));
+        schemaVersions.replaceAll(version -> version.afterDrop(column));
+        ArrayList<Attribute> newAttributes = new ArrayList<>(attributes);
+        newAttributes.remove(column);
+        attributes = newAttributes;
+        for (int i = 0; i < zoneMaps.size(); i++) {
+            if (zoneMaps.get(i) != null) {
+                zoneMaps.set(i, zoneMaps.get(i).withoutColumn(column));
+            }
+        }
+        if (primaryKey > column) {
+            primaryKey -= 1;
+        }
+        for (IndexSchema index : indexes) {
+            if (index.column > column) {
+                index.column -= 1;
+            }
+        }
+        stringPools = null;
+        uniqueKeys = null;
+    }
+
+    /**
+     * Forgets the earlier schema versions of this table once every page has been rewritten under the current one
+     */
+    void pruneSchemaVersions() {
+        if (schemaVersions.isEmpty()) {
+            return;
+        }
+        ArrayList<Integer> numberMap = numberMap();
+        for (int pageIndex = 0; pageIndex < numberMap.size(); pageIndex++) {
+            if (numberMap.get(pageIndex) != -1 && getPageVersion(pageIndex) != schemaVersion()) {
+                return;
+            }
+        }
+        schemaVersions = new ArrayList<>();
+        pageVersions = new ArrayList<>();
+    }
+
+    /**
+     * Gets the map of how much free space each of this table's pages has
+     * @return The table's FreeSpaceMap
+     */
+    public FreeSpaceMap freeSpace() {
+        return freeSpaceMap;
     }
 
     /**
@@ -251,7 +644,7 @@ public class TableSchema {
      * @return The smallest unoccupied pageIndex; `-1` if page file has no gaps
      */
     public int getFirstPageGap() {
-        return numberMap.indexOf(-1);
+        return freeSpaceMap.firstUnused();
     }
 
     /**
@@ -267,12 +660,23 @@ public class TableSchema {
      * @return The duplicated TableSchema
      */
     public TableSchema duplicate(String tableName) {
-        ArrayList<Integer> duplicateNumberMap = new ArrayList<>(numberMap);
+        ArrayList<Integer> duplicateNumberMap = numberMap();
         ArrayList<Attribute> duplicateAttributes = new ArrayList<>();
         for (Attribute attr : attributes) {
             duplicateAttributes.add(new Attribute(attr));
         }
-        return new TableSchema(tableName, rootIndex, treeRoot, duplicateNumberMap, duplicateAttributes, fileDir, pageCount, recordCount, pageSize);
+        TableSchema duplicate = new TableSchema(tableName, rootIndex, treeRoot, duplicateNumberMap, duplicateAttributes, fileDir, pageCount, recordCount, pageSize);
+        duplicate.layout = layout;
+        duplicate.fillFactor = fillFactor;
+        duplicate.splitRatio = splitRatio;
+        duplicate.heap = heap;
+        duplicate.zoneMaps = new ArrayList<>(zoneMaps);  // Zone maps are never modified, only replaced
+        duplicate.schemaVersions = new ArrayList<>(schemaVersions);  // As are schema versions
+        duplicate.pageVersions = new ArrayList<>(pageVersions);
+        duplicate.tablespace = tablespace;  // Duplicates share the original's extents, which they never allocate
+        duplicate.pageExtents = pageExtents;
+        duplicate.nodeExtents = nodeExtents;
+        return duplicate;
     }
 
     @Override
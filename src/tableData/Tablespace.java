@@ -0,0 +1,118 @@
+package tableData;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A single file holding the pages and B+ tree nodes of every table in the database, divided into extents of a fixed
+ * number of pages. Each table owns one chain of extents for its pages and one for its nodes, and page `i` of a chain
+ * is page `i % extentPages` of the chain's extent number `i / extentPages`. Creating and dropping a table only
+ * changes which extents are in use, so it does not create, rename or delete any files.
+ * <br>
+ * Which extents are in use is not stored. It is rebuilt from the tables' chains whenever the catalog is loaded.
+ */
+public class Tablespace {
+
+    private final File file;
+    private final int pageSize;
+    private final int extentPages;
+    private final BitSet usedExtents = new BitSet();
+
+    /**
+     * Creates a Tablespace for a file. The file is created the first time an extent is allocated
+     * @param file The file holding the tablespace
+     * @param pageSize The size of each page
+     * @param extentPages The number of pages in each extent
+     */
+    public Tablespace(File file, int pageSize, int extentPages) {
+        this.file = file;
+        this.pageSize = pageSize;
+        this.extentPages = extentPages;
+    }
+
+    /**
+     * Gets the file holding the tablespace
+     * @return The tablespace's file
+     */
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Gets the number of pages in each extent
+     * @return The extent size in pages
+     */
+    public int extentPages() {
+        return extentPages;
+    }
+
+    /**
+     * Gets the byte offset of a page within the tablespace file
+     * @param chain The chain of extents the page belongs to
+     * @param pageIndex The index of the page within the chain
+     * @return The page's offset; `-1` if the chain does not reach that page
+     */
+    public long offset(List<Integer> chain, int pageIndex) {
+        if (pageIndex < 0 || pageIndex / extentPages >= chain.size()) {
+            return -1;
+        }
+        int extent = chain.get(pageIndex / extentPages);
+        return ((long) extent * extentPages + pageIndex % extentPages) * pageSize;
+    }
+
+    /**
+     * Marks the extents of a chain as in use. Used while loading the catalog
+     * @param chain The chain of extents
+     */
+    void claim(List<Integer> chain) {
+        for (int extent : chain) {
+            usedExtents.set(extent);
+        }
+    }
+
+    /**
+     * Allocates the lowest free extent, growing the tablespace file if every extent in it is in use
+     * @return The number of the allocated extent
+     * @throws IOException If the tablespace file could not be grown
+     */
+    public int allocateExtent() throws IOException {
+        int extent = usedExtents.nextClearBit(0);
+        long extentEnd = ((long) extent + 1) * extentPages * pageSize;
+        if (file.length() < extentEnd) {
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                long length = out.length();
+                out.seek(length);
+                out.write(new byte[(int) (extentEnd - length)]);
+            } catch (FileNotFoundException fnf) {
+                throw new IOException("Could not open tablespace file `" + file.getAbsolutePath() + "`");
+            }
+        }
+        usedExtents.set(extent);
+        return extent;
+    }
+
+    /**
+     * Returns an extent to the free list
+     * @param extent The number of the extent
+     */
+    public void freeExtent(int extent) {
+        usedExtents.clear(extent);
+    }
+
+    /**
+     * Cuts off any free extents at the end of the tablespace file
+     * @throws IOException If the file could not be shortened
+     */
+    public void trim() throws IOException {
+        long usedLength = (long) usedExtents.length() * extentPages * pageSize;
+        if (file.exists() && file.length() > usedLength) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(usedLength);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package tableData;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * The values of every primary key and unique attribute in a table without an index, so inserts can check
+ * uniqueness with a hash lookup instead of scanning the table. Heap tables use them for every insert, and primary
+ * key sorted tables use them for unique attributes other than the primary key. They are only kept in memory, and
+ * are rebuilt from the table's records the first time they are needed after the database is opened. `null` values
+ * are never stored, since they do not have to be unique.
+ */
+public class UniqueKeys {
+
+    private final int[] columns;            // The indices of the primary key and unique attributes
+    private final ArrayList<HashSet<Object>> values;  // The values of each attribute in `columns`
+
+    /**
+     * Creates an empty UniqueKeys for a table
+     * @param schema The schema of the table
+     */
+    public UniqueKeys(TableSchema schema) {
+        ArrayList<Integer> uniqueColumns = new ArrayList<>();
+        for (int i = 0; i < schema.attributes.size(); i++) {
+            Attribute attr = schema.attributes.get(i);
+            if (attr.unique || attr.primaryKey) {
+                uniqueColumns.add(i);
+            }
+        }
+        columns = uniqueColumns.stream().mapToInt(Integer::intValue).toArray();
+        values = new ArrayList<>();
+        for (int ignored : columns) {
+            values.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Finds an attribute of a record whose value is already used by another record in the table
+     * @param record The record being checked
+     * @return The index of the first attribute with a duplicate value; `-1` if every value is unique
+     */
+    public int conflict(Record record) {
+        for (int i = 0; i < columns.length; i++) {
+            Object value = record.get(columns[i]);
+            if (value != null && values.get(i).contains(value)) {
+                return columns[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the values of a record which was inserted into the table
+     * @param record The record
+     */
+    public void add(Record record) {
+        for (int i = 0; i < columns.length; i++) {
+            Object value = record.get(columns[i]);
+            if (value != null) {
+                values.get(i).add(value);
+            }
+        }
+    }
+
+    /**
+     * Removes the values of a record which was removed from the table
+     * @param record The record
+     */
+    public void remove(Record record) {
+        for (int i = 0; i < columns.length; i++) {
+            Object value = record.get(columns[i]);
+            if (value != null) {
+                values.get(i).remove(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package tableData;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The smallest value, largest value and number of nulls of every attribute in a single page, as of the last time
+ * the page was saved. Scans use these to skip pages which cannot contain a record passing their where clause,
+ * without reading the page from disk.
+ */
+public class ZoneMap {
+
+    /// Strings longer than this are not used as bounds, so zone maps stay small in the catalog
+    public static final int MAX_STRING_LENGTH = 32;
+
+    private final int recordCount;
+    private final int[] nullCounts;
+    // `null` for an attribute whose bounds are unknown, either because every value is null or a String was too long
+    private final Object[] minValues;
+    private final Object[] maxValues;
+
+    private ZoneMap(int recordCount, int[] nullCounts, Object[] minValues, Object[] maxValues) {
+        this.recordCount = recordCount;
+        this.nullCounts = nullCounts;
+        this.minValues = minValues;
+        this.maxValues = maxValues;
+    }
+
+    /**
+     * Builds the zone map of a page's records
+     * @param records The records in the page
+     * @param schema The schema of the table the page belongs to
+     * @return The zone map of the records
+     */
+    @SuppressWarnings("unchecked")
+    static ZoneMap of(Collection<Record> records, TableSchema schema) {
+        int attributeCount = schema.attributes.size();
+        int[] nullCounts = new int[attributeCount];
+        Object[] minValues = new Object[attributeCount];
+        Object[] maxValues = new Object[attributeCount];
+        boolean[] unbounded = new boolean[attributeCount];
+        for (Record record : records) {
+            for (int i = 0; i < attributeCount; i++) {
+                Object value = record.get(i);
+                if (value == null) {
+                    nullCounts[i]++;
+                    continue;
+                }
+                if (unbounded[i]) {
+                    continue;
+                }
+                if (value instanceof String s && s.length() > MAX_STRING_LENGTH) {
+                    unbounded[i] = true;
+                    minValues[i] = null;
+                    maxValues[i] = null;
+                    continue;
+                }
+                Comparable<Object> comparable = (Comparable<Object>) value;
+                if (minValues[i] == null || comparable.compareTo(minValues[i]) < 0) {
+                    minValues[i] = value;
+                }
+                if (maxValues[i] == null || comparable.compareTo(maxValues[i]) > 0) {
+                    maxValues[i] = value;
+                }
+            }
+        }
+        return new ZoneMap(records.size(), nullCounts, minValues, maxValues);
+    }
+
+    /**
+     * Gets the number of records in the page
+     * @return The number of records
+     */
+    public int recordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Gets the number of null values an attribute has in the page
+     * @param column The index of the attribute
+     * @return The number of nulls
+     */
+    public int nullCount(int column) {
+        return nullCounts[column];
+    }
+
+    /**
+     * Checks if the smallest and largest value of an attribute in the page are known
+     * @param column The index of the attribute
+     * @return `true` if min() and max() can be used for the attribute
+     */
+    public boolean hasBounds(int column) {
+        return minValues[column] != null;
+    }
+
+    /**
+     * Gets the smallest non-null value of an attribute in the page
+     * @param column The index of the attribute
+     * @return The smallest value; `null` if the bounds of the attribute are not known
+     */
+    public Object min(int column) {
+        return minValues[column];
+    }
+
+    /**
+     * Gets the largest non-null value of an attribute in the page
+     * @param column The index of the attribute
+     * @return The largest value; `null` if the bounds of the attribute are not known
+     */
+    public Object max(int column) {
+        return maxValues[column];
+    }
+
+    /**
+     * Creates the zone map this page would have if an attribute was added to the end of every record
+     * @param attr The attribute being added
+     * @param value The value every record has for the attribute
+     * @return A copy of this zone map with the new attribute
+     */
+    ZoneMap withColumn(Attribute attr, Object value) {
+        int columns = nullCounts.length;
+        int[] newNullCounts = Arrays.copyOf(nullCounts, columns + 1);
+        Object[] newMinValues = Arrays.copyOf(minValues, columns + 1);
+        Object[] newMaxValues = Arrays.copyOf(maxValues, columns + 1);
+        if (value == null) {
+            newNullCounts[columns] = recordCount;
+        } else if (!(value instanceof String s && s.length() > MAX_STRING_LENGTH)) {
+            newMinValues[columns] = value;
+            newMaxValues[columns] = value;
+        }
+        return new ZoneMap(recordCount, newNullCounts, newMinValues, newMaxValues);
+    }
+
+    /**
+     * Creates the zone map this page would have if an attribute was removed from every record
+     * @param column The index of the attribute being removed
+     * @return A copy of this zone map without the attribute
+     */
+    ZoneMap withoutColumn(int column) {
+        return new ZoneMap(recordCount, remove(nullCounts, column), remove(minValues, column),
+                remove(maxValues, column));
+    }
+
+    private static int[] remove(int[] array, int index) {
+        int[] removed = new int[array.length - 1];
+        System.arraycopy(array, 0, removed, 0, index);
+        System.arraycopy(array, index + 1, removed, index, removed.length - index);
+        return removed;
+    }
+
+    private static Object[] remove(Object[] array, int index) {
+        Object[] removed = new Object[array.length - 1];
+        System.arraycopy(array, 0, removed, 0, index);
+        System.arraycopy(array, index + 1, removed, index, removed.length - index);
+        return removed;
+    }
+
+    /**
+     * Writes this zone map to a stream
+     * @param out The stream to write to
+     * @param schema The schema of the table the zone map belongs to
+     * @throws IOException If there is an error writing to the stream
+     */
+    void write(DataOutputStream out, TableSchema schema) throws IOException {
+        out.writeInt(recordCount);
+        for (int i = 0; i < nullCounts.length; i++) {
+            out.writeInt(nullCounts[i]);
+            out.writeBoolean(hasBounds(i));
+            if (hasBounds(i)) {
+                Page.writeValue(out, schema.attributes.get(i), minValues[i]);
+                Page.writeValue(out, schema.attributes.get(i), maxValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a zone map written by write()
+     * @param in The stream to read from
+     * @param attributes The attributes of the table the zone map belongs to
+     * @return The zone map that was read
+     * @throws IOException If there is an error reading from the stream
+     */
+    static ZoneMap read(DataInputStream in, List<Attribute> attributes) throws IOException {
+        int recordCount = in.readInt();
+        int[] nullCounts = new int[attributes.size()];
+        Object[] minValues = new Object[attributes.size()];
+        Object[] maxValues = new Object[attributes.size()];
+        for (int i = 0; i < attributes.size(); i++) {
+            nullCounts[i] = in.readInt();
+            if (in.readBoolean()) {
+                minValues[i] = Page.readValue(in, attributes.get(i));
+                maxValues[i] = Page.readValue(in, attributes.get(i));
+            }
+        }
+        return new ZoneMap(recordCount, nullCounts, minValues, maxValues);
+    }
+}
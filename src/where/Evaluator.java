@@ -1,11 +1,15 @@
 package where;
 import exceptions.CustomExceptions;
+import tableData.Page;
 import tableData.TableSchema;
 import tableData.Record;
+import tableData.ZoneMap;
 import java.util.ArrayList;
 
 public class Evaluator {
     private final EvaluatorNode root;
+    private final int attributeCount;
+    private final TableSchema schema;
 
     /**
      * Builds an Evaluator object from a where clause. The `where` should not be included in the clause
@@ -13,6 +17,8 @@ public class Evaluator {
      * @param schema The schema for the table being evaluated
      */
     public Evaluator(ArrayList<String> clause, TableSchema schema) {
+        attributeCount = schema.attributes.size();
+        this.schema = schema;
         // If the where clause is empty, do nothing
         if (clause.isEmpty()) {
             root = null;
@@ -88,6 +94,7 @@ public class Evaluator {
             throw new CustomExceptions.WhereSyntaxError("Dangling argument in where clause (" + valueStack.size() + ")");
         }
         root = valueStack.removeFirst();
+        root.internConstants(schema);
     }
 
     /**
@@ -99,6 +106,53 @@ public class Evaluator {
         return this.root == null || (boolean) root.evaluate(r);
     }
 
+    /**
+     * Checks if a page can be skipped entirely because none of its records could pass the where clause.
+     * Only dictionary encoded PAX minipages can currently rule a page out
+     * @param page The page being checked
+     * @return `true` if no record in the page matches the where clause
+     */
+    public boolean canSkip(Page page) {
+        return this.root != null && !root.mayMatch(page);
+    }
+
+    /**
+     * Checks if a page can be skipped without reading it because its zone map shows that none of its records
+     * could pass the where clause
+     * @param zoneMap The zone map of the page being checked. May be `null` if the page has no zone map
+     * @return `true` if no record in the page matches the where clause
+     */
+    public boolean canSkip(ZoneMap zoneMap) {
+        return this.root != null && zoneMap != null && !root.mayMatch(zoneMap);
+    }
+
+    /**
+     * Returns which attributes of a record are read while evaluating the where clause. Any attribute
+     * which is not flagged can be left undecoded in records passed to evaluateRecord()
+     * @return A flag for every attribute in the table, set to `true` if the where clause reads that attribute
+     */
+    public boolean[] referencedAttributes() {
+        boolean[] columns = new boolean[attributeCount];
+        if (root != null) {
+            root.collectAttributes(columns);
+        }
+        return columns;
+    }
+
+    /**
+     * Finds the range of values an attribute must be in for a record to pass the where clause, from the
+     * comparisons of the attribute against constants which every passing record must satisfy
+     * @param column The index of the attribute
+     * @return The range. It is not bounded if the where clause does not limit the attribute that way
+     */
+    public KeyRange keyRange(int column) {
+        KeyRange range = new KeyRange(schema.attributes.get(column).type.javaClass());
+        if (root != null) {
+            root.narrowRange(column, range);
+        }
+        return range;
+    }
+
     /**
      * Checks if a string represents a double (i.e. numeric with a decimal). Even better,
      * <a href="https://stackoverflow.com/questions/1102891/how-to-check-if-a-string-is-numeric-in-java">it's stolen!</a>
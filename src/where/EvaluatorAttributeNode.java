@@ -22,4 +22,17 @@ public class EvaluatorAttributeNode extends EvaluatorNode {
     public Object evaluate(Record r) {
         return r.get(attrIndex);
     }
+
+    /**
+     * Gets the index of the attribute this node reads
+     * @return The attribute index
+     */
+    public int attrIndex() {
+        return attrIndex;
+    }
+
+    @Override
+    public void collectAttributes(boolean[] columns) {
+        columns[attrIndex] = true;
+    }
 }
@@ -1,8 +1,51 @@
 package where;
 
+import tableData.Page;
 import tableData.Record;
+import tableData.TableSchema;
+import tableData.ZoneMap;
 
 public abstract class EvaluatorNode {
     public abstract Object evaluate(Record r);
-}
 
+    /**
+     * Flags every attribute that this node (or any node beneath it) reads when evaluating a record
+     * @param columns A flag for every attribute of the table being evaluated
+     */
+    public void collectAttributes(boolean[] columns) {}
+
+    /**
+     * Swaps String constants compared against an attribute for the canonical instance from that attribute's
+     * StringPool, so they can be matched against decoded values by reference
+     * @param schema The schema of the table being evaluated
+     */
+    public void internConstants(TableSchema schema) {}
+
+    /**
+     * Checks if any record in a page could cause this node to evaluate to `true`, without decoding the page.
+     * Nodes which cannot tell always return `true`
+     * @param page The page being checked
+     * @return `false` if no record in the page can pass this node
+     */
+    public boolean mayMatch(Page page) {
+        return true;
+    }
+
+    /**
+     * Checks if any record in a page could cause this node to evaluate to `true`, using only the page's zone map.
+     * Nodes which cannot tell always return `true`
+     * @param zoneMap The zone map of the page being checked
+     * @return `false` if no record in the page can pass this node
+     */
+    public boolean mayMatch(ZoneMap zoneMap) {
+        return true;
+    }
+
+    /**
+     * Narrows a range to the values of an attribute which records must have for this node to evaluate to `true`.
+     * Nodes which cannot tell leave the range as it is
+     * @param column The index of the attribute
+     * @param range The range being narrowed
+     */
+    public void narrowRange(int column, KeyRange range) {}
+}
@@ -1,7 +1,10 @@
 package where;
 
 import exceptions.CustomExceptions;
+import tableData.Page;
 import tableData.Record;
+import tableData.TableSchema;
+import tableData.ZoneMap;
 
 /**
  * An EvaluatorNode which contains an operator that works on two operands
@@ -32,9 +35,80 @@ public class EvaluatorOperatorNode extends EvaluatorNode {
 
     @Override
     public Object evaluate(Record r) {
-        Object leftResult = left.evaluate(r);
-        Object rightResult = right.evaluate(r);
+        return apply(left.evaluate(r), right.evaluate(r));
+    }
+
+    @Override
+    public boolean mayMatch(Page page) {
+        if (operator == EvaluatorOperator.AND) {
+            return left.mayMatch(page) && right.mayMatch(page);
+        } else if (operator == EvaluatorOperator.OR) {
+            return left.mayMatch(page) || right.mayMatch(page);
+        }
+        // Comparisons against a constant can be checked against every distinct value of the attribute in the page
+        if (!(left instanceof EvaluatorAttributeNode attrNode) || !(right instanceof EvaluatorValueNode)) {
+            return true;
+        }
+        Object[] dictionary = page.dictionary(attrNode.attrIndex());
+        if (dictionary == null) {
+            return true;
+        }
+        Object rightResult = right.evaluate(null);
+        for (Object value : dictionary) {
+            if ((boolean) apply(value, rightResult)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean mayMatch(ZoneMap zoneMap) {
+        if (operator == EvaluatorOperator.AND) {
+            return left.mayMatch(zoneMap) && right.mayMatch(zoneMap);
+        } else if (operator == EvaluatorOperator.OR) {
+            return left.mayMatch(zoneMap) || right.mayMatch(zoneMap);
+        }
+        // Comparisons against a constant can be checked against the range of the attribute in the page
+        if (!(left instanceof EvaluatorAttributeNode attrNode) || !(right instanceof EvaluatorValueNode)) {
+            return true;
+        }
+        int column = attrNode.attrIndex();
+        if (zoneMap.nullCount(column) == zoneMap.recordCount()) {
+            return false;  // Null values never pass a comparison
+        }
+        if (!zoneMap.hasBounds(column)) {
+            return true;
+        }
+        Object min = zoneMap.min(column);
+        Object max = zoneMap.max(column);
+        Object rightResult = right.evaluate(null);
+        if (!validated) {
+            validate(min, rightResult);
+            validated = true;
+        }
+        return switch (operator) {
+            case EQUALS -> ((Comparable<Object>) min).compareTo(rightResult) <= 0 &&
+                    ((Comparable<Object>) max).compareTo(rightResult) >= 0;
+            case NOT_EQUAL -> !min.equals(rightResult) || !max.equals(rightResult);
+            case GREATER_THAN, GREATER_OR_EQUAL -> (boolean) apply(max, rightResult);
+            case LESS_THAN, LESS_OR_EQUAL -> (boolean) apply(min, rightResult);
+            default -> true;
+        };
+    }
+
+    /**
+     * Applies this node's operator to a pair of already evaluated operands
+     * @param leftResult The left operand
+     * @param rightResult The right operand
+     * @return The result of the operation
+     */
+    private Object apply(Object leftResult, Object rightResult) {
+        // Only attribute values can be null, and a comparison with a null value is never true
+        if (leftResult == null || rightResult == null) {
+            return false;
+        }
         // Make sure that the operator and operands are all compatible. Only needs to be performed once
         if (!validated) {
             validate(leftResult, rightResult);
@@ -53,10 +127,11 @@ public class EvaluatorOperatorNode extends EvaluatorNode {
         }
 
         // Equality operators
+        // Strings decoded from pages are interned, so equal values are usually the same object
         if (operator == EvaluatorOperator.EQUALS) {
-            return leftResult.equals(rightResult);
+            return leftResult == rightResult || leftResult.equals(rightResult);
         } else if (operator == EvaluatorOperator.NOT_EQUAL) {
-            return !leftResult.equals(rightResult);
+            return leftResult != rightResult && !leftResult.equals(rightResult);
         }
 
         // Numeric only operators
@@ -83,6 +158,33 @@ public class EvaluatorOperatorNode extends EvaluatorNode {
         }
     }
 
+    @Override
+    public void narrowRange(int column, KeyRange range) {
+        // Both sides of an `and` must pass, but either side of an `or` could be the one that does
+        if (operator == EvaluatorOperator.AND) {
+            left.narrowRange(column, range);
+            right.narrowRange(column, range);
+        } else if (left instanceof EvaluatorAttributeNode attrNode && attrNode.attrIndex() == column &&
+                right instanceof EvaluatorValueNode) {
+            range.narrow(operator, right.evaluate(null));
+        }
+    }
+
+    @Override
+    public void collectAttributes(boolean[] columns) {
+        left.collectAttributes(columns);
+        right.collectAttributes(columns);
+    }
+
+    @Override
+    public void internConstants(TableSchema schema) {
+        if (left instanceof EvaluatorAttributeNode attrNode && right instanceof EvaluatorValueNode valueNode) {
+            valueNode.intern(schema, attrNode.attrIndex());
+        }
+        left.internConstants(schema);
+        right.internConstants(schema);
+    }
+
     /**
      * Make sure that the left and right operand are compatible, both with each other and the operator itself.
      * This action only needs to be performed once, as all subsequent evaluations will be of the same type
@@ -1,13 +1,14 @@
 package where;
 
 import tableData.Record;
+import tableData.TableSchema;
 
 /**
  * An Evaluator node which contains the value of an attribute
  */
 public class EvaluatorValueNode extends EvaluatorNode {
 
-    private final Object value;
+    private Object value;
 
     /**
      * Creates an evaluator node which represents a constant value. This should be a leaf
@@ -22,5 +23,14 @@ public class EvaluatorValueNode extends EvaluatorNode {
     public Object evaluate(Record r) {
         return value;
     }
+
+    /**
+     * Replaces this node's value with the canonical instance of it for an attribute
+     * @param schema The schema of the table being evaluated
+     * @param column The index of the attribute this value is compared against
+     */
+    public void intern(TableSchema schema, int column) {
+        value = schema.intern(column, value);
+    }
 }
 
@@ -0,0 +1,116 @@
+package where;
+
+/**
+ * The range of values an attribute can have in the records which pass a where clause, found from the comparisons of
+ * that attribute against constants which are joined to the rest of the clause by `and`. Comparisons beneath an
+ * `or` do not narrow the range. Records in the range may still fail the rest of the where clause, but records
+ * outside of it never pass.
+ */
+public class KeyRange {
+
+    private final Class<?> type;    // The class of the attribute's values. Constants of other classes are ignored
+    private Object low;             // The lowest value in the range; `null` if it has no lower bound
+    private boolean lowInclusive;
+    private Object high;            // The highest value in the range; `null` if it has no upper bound
+    private boolean highInclusive;
+
+    /**
+     * Creates a range holding every value
+     * @param type The class of the attribute's values
+     */
+    KeyRange(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * Narrows the range to the values which pass a comparison against a constant
+     * @param operator The operator of the comparison, with the attribute on its left
+     * @param value The constant on the right of the comparison
+     */
+    void narrow(EvaluatorOperator operator, Object value) {
+        if (!type.isInstance(value)) {
+            return;
+        }
+        switch (operator) {
+            case EQUALS -> {
+                raiseLow(value, true);
+                lowerHigh(value, true);
+            }
+            case GREATER_THAN -> raiseLow(value, false);
+            case GREATER_OR_EQUAL -> raiseLow(value, true);
+            case LESS_THAN -> lowerHigh(value, false);
+            case LESS_OR_EQUAL -> lowerHigh(value, true);
+            default -> {}
+        }
+    }
+
+    private void raiseLow(Object value, boolean inclusive) {
+        int comparison = (low == null) ? 1 : compare(value, low);
+        if (comparison > 0 || (comparison == 0 && !inclusive)) {
+            low = value;
+            lowInclusive = inclusive;
+        }
+    }
+
+    private void lowerHigh(Object value, boolean inclusive) {
+        int comparison = (high == null) ? -1 : compare(value, high);
+        if (comparison < 0 || (comparison == 0 && !inclusive)) {
+            high = value;
+            highInclusive = inclusive;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object first, Object second) {
+        return ((Comparable<Object>) first).compareTo(second);
+    }
+
+    /**
+     * Checks if the range rules out any value
+     * @return `true` if the range has a lower or upper bound
+     */
+    public boolean isBounded() {
+        return low != null || high != null;
+    }
+
+    /**
+     * Checks if no value is in the range, because its bounds contradict each other
+     * @return `true` if the range is empty
+     */
+    public boolean isEmpty() {
+        if (low == null || high == null) {
+            return false;
+        }
+        int comparison = compare(low, high);
+        return comparison > 0 || (comparison == 0 && !(lowInclusive && highInclusive));
+    }
+
+    /**
+     * Gets the lower bound of the range
+     * @return The lowest value in the range; `null` if it has no lower bound
+     */
+    public Object low() {
+        return low;
+    }
+
+    /**
+     * Checks if the lower bound is itself in the range
+     * @return `true` if the range holds its lower bound; `false` if it only holds values greater than it
+     */
+    public boolean includesLow() {
+        return lowInclusive;
+    }
+
+    /**
+     * Checks if a value is not past the upper bound of the range
+     * @param value A value of the attribute
+     * @return `true` if the value is not greater than the upper bound, or the range has no upper bound
+     */
+    public boolean belowHigh(Object value) {
+        if (high == null) {
+            return true;
+        }
+        int comparison = compare(value, high);
+        return comparison < 0 || (comparison == 0 && highInclusive);
+    }
+}